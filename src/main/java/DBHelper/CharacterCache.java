@@ -0,0 +1,299 @@
+package DBHelper;
+
+import FFPackage.PCharacter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, read-through cache of {@link PCharacter}s keyed by numeric ID.
+ * <p>
+ * Once attached with {@link PCharacters#setCache(CharacterCache)}, lookups by ID
+ * ({@link PCharacters#selectById(long)}, {@link PCharacters#idExists(long)}) are answered
+ * from memory when possible, and every insert, update and delete made through the DAO
+ * invalidates the affected entries. Entries are dropped when they are older than the
+ * time-to-live, or when the cache is full and they are the least recently used.
+ * <p>
+ * The cache stores and hands out copies, so callers that modify a returned character
+ * cannot corrupt the cached value. Changes made to the database by other processes are
+ * only picked up once the entry expires.
+ * <p>
+ * Hit, miss, eviction and expiration counters are kept so the effect of the cache can be checked.
+ */
+public class CharacterCache {
+
+    /** Default maximum number of cached characters. */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /** Default time-to-live of an entry, in milliseconds. */
+    public static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    /** Maximum number of entries kept. */
+    private final int maxEntries;
+
+    /** Time-to-live of an entry in nanoseconds; {@code 0} means entries never expire. */
+    private final long ttlNanos;
+
+    /** Time source, in nanoseconds; replaceable for tests. */
+    private final LongSupplier clock;
+
+    /** Cached characters in access order, so the eldest entry is the least recently used. */
+    private final LinkedHashMap<Long, Entry> entries;
+
+    /**
+     * Incremented by every invalidation. A loader only stores its result if no invalidation
+     * happened since it started reading, so a slow read cannot re-insert a stale row
+     * right after a write removed it.
+     */
+    private long generation;
+
+    /** Lookups answered from the cache. */
+    private long hits;
+
+    /** Lookups that had to go to the database. */
+    private long misses;
+
+    /** Entries dropped because the cache was full. */
+    private long evictions;
+
+    /** Entries dropped because they were older than the time-to-live. */
+    private long expirations;
+
+    /**
+     * A cached character and the time it was loaded.
+     */
+    private static final class Entry {
+
+        /** Copy of the loaded character. */
+        final PCharacter character;
+
+        /** Clock value when it was loaded. */
+        final long loadedAt;
+
+        Entry(PCharacter character, long loadedAt) {
+            this.character = character;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_ENTRIES} entries and a
+     * {@link #DEFAULT_TTL_MILLIS} time-to-live.
+     */
+    public CharacterCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Creates a cache with the given limits.
+     *
+     * @param maxEntries maximum number of cached characters (at least 1)
+     * @param ttlMillis  how long an entry stays valid, in milliseconds; {@code 0} disables expiry
+     * @throws IllegalArgumentException if {@code maxEntries} is less than 1 or {@code ttlMillis} is negative
+     */
+    public CharacterCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache with the given limits and time source.
+     *
+     * @param maxEntries maximum number of cached characters (at least 1)
+     * @param ttlMillis  how long an entry stays valid, in milliseconds; {@code 0} disables expiry
+     * @param clock      returns the current time in nanoseconds
+     * @throws IllegalArgumentException if {@code maxEntries} is less than 1 or {@code ttlMillis} is negative
+     */
+    CharacterCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Cache TTL cannot be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > CharacterCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the cached character, counting a hit or a miss.
+     *
+     * @param id the character ID
+     * @return a copy of the cached character, or {@code null} if it is not cached or has expired
+     */
+    synchronized PCharacter get(long id) {
+        Entry entry = lookup(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new PCharacter(entry.character);
+    }
+
+    /**
+     * Checks whether a character is cached, counting a hit or a miss.
+     * <p>
+     * Only present characters are cached, so {@code false} means "ask the database".
+     *
+     * @param id the character ID
+     * @return {@code true} if a valid entry exists
+     */
+    synchronized boolean contains(long id) {
+        if (lookup(id) == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        return true;
+    }
+
+    /**
+     * Returns the current invalidation generation; pass it to {@link #put} after loading.
+     *
+     * @return the generation counter
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores a copy of a character loaded from the database, unless an invalidation
+     * happened since {@code generation} was read.
+     *
+     * @param id         the character ID
+     * @param character  the loaded character
+     * @param generation value of {@link #generation()} taken before the database read
+     */
+    synchronized void put(long id, PCharacter character, long generation) {
+        if (generation == this.generation) {
+            entries.put(id, new Entry(new PCharacter(character), clock.getAsLong()));
+        }
+    }
+
+    /**
+     * Drops the entry for one character, if any.
+     *
+     * @param id the character ID
+     */
+    synchronized void invalidate(long id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    /**
+     * Drops every entry, e.g. after a write whose affected rows are unknown.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Finds a valid entry, removing it if it has expired.
+     *
+     * @param id the character ID
+     * @return the entry, or {@code null}
+     */
+    private Entry lookup(long id) {
+        Entry entry = entries.get(id);
+        if (entry != null && ttlNanos > 0 && clock.getAsLong() - entry.loadedAt >= ttlNanos) {
+            entries.remove(id);
+            expirations++;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Drops every expired entry now instead of on the next lookup.
+     */
+    public synchronized void purgeExpired() {
+        if (ttlNanos == 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().loadedAt >= ttlNanos) {
+                it.remove();
+                expirations++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached entries, including expired ones not yet purged.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     *
+     * @return the capacity
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that went to the database.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries dropped because the cache was full.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries dropped because they had expired.
+     *
+     * @return the expiration count
+     */
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * Returns the counters in one line, e.g. for the CLI.
+     */
+    @Override
+    public synchronized String toString() {
+        return "CharacterCache[size=" + entries.size() + "/" + maxEntries
+                + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", expirations=" + expirations + "]";
+    }
+}
@@ -0,0 +1,153 @@
+package DBHelper;
+
+import FFPackage.Job;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A set of conditions on the {@code characters} table, evaluated by SQLite instead of in Java.
+ * <p>
+ * Conditions are combined with {@code AND}; conditions that are never set are ignored.
+ * Setters return {@code this}, so a filter can be built inline:
+ * <pre>
+ * db.select(new CharacterFilter().job("Dragoon").active(true).minLevel(50));
+ * </pre>
+ * Every combination of job, party flag and level range can be answered from the
+ * {@code (job, isActive, level)} index or the {@code level} index created by
+ * {@link PCharacters}. As with {@link CharacterPatch}, there is one SQL string per
+ * combination of set conditions, so each is prepared once per pooled connection.
+ */
+public class CharacterFilter {
+
+    /** Bit for {@link #job(String)} in the condition mask. */
+    private static final int JOB = 1;
+
+    /** Bit for {@link #active(boolean)} in the condition mask. */
+    private static final int ACTIVE = 1 << 1;
+
+    /** Bit for {@link #minLevel(int)} in the condition mask. */
+    private static final int MIN_LEVEL = 1 << 2;
+
+    /** Bit for {@link #maxLevel(int)} in the condition mask. */
+    private static final int MAX_LEVEL = 1 << 3;
+
+    /** {@code WHERE} terms in bit order; index {@code i} matches bit {@code 1 << i}. */
+    private static final String[] TERMS = {"job = ?", "isActive = ?", "level >= ?", "level <= ?"};
+
+    /** {@code SELECT} statements built so far, indexed by condition mask. */
+    private static final String[] SQL_BY_MASK = new String[1 << TERMS.length];
+
+    /** Required job; only used if {@link #JOB} is set. */
+    private String job;
+
+    /** Required party flag; only used if {@link #ACTIVE} is set. */
+    private boolean active;
+
+    /** Lowest accepted level; only used if {@link #MIN_LEVEL} is set. */
+    private int minLevel;
+
+    /** Highest accepted level; only used if {@link #MAX_LEVEL} is set. */
+    private int maxLevel;
+
+    /** Which conditions have been set, as a combination of the condition bits. */
+    private int mask;
+
+    /**
+     * Only matches characters with this job.
+     * <p>
+     * The name is translated to its stored {@link Job} code, ignoring case, and compared as
+     * an integer so that it can use the index. A name that is not a valid job matches nothing.
+     *
+     * @param job the job to match
+     * @return this filter
+     */
+    public CharacterFilter job(String job) {
+        this.job = job;
+        mask |= JOB;
+        return this;
+    }
+
+    /**
+     * Only matches characters that are (or are not) in the party.
+     *
+     * @param active {@code true} for party members, {@code false} for the reserve
+     * @return this filter
+     */
+    public CharacterFilter active(boolean active) {
+        this.active = active;
+        mask |= ACTIVE;
+        return this;
+    }
+
+    /**
+     * Only matches characters at or above this level.
+     *
+     * @param minLevel the lowest accepted level (inclusive)
+     * @return this filter
+     */
+    public CharacterFilter minLevel(int minLevel) {
+        this.minLevel = minLevel;
+        mask |= MIN_LEVEL;
+        return this;
+    }
+
+    /**
+     * Only matches characters at or below this level.
+     *
+     * @param maxLevel the highest accepted level (inclusive)
+     * @return this filter
+     */
+    public CharacterFilter maxLevel(int maxLevel) {
+        this.maxLevel = maxLevel;
+        mask |= MAX_LEVEL;
+        return this;
+    }
+
+    /**
+     * Returns the {@code SELECT} statement for this filter's set of conditions.
+     * Matching rows are returned in ID order.
+     *
+     * @return SQL of the form {@code SELECT * FROM characters WHERE a = ? AND b >= ? ORDER BY id}
+     */
+    String toSql() {
+        String sql = SQL_BY_MASK[mask];
+        if (sql == null) {
+            StringBuilder sb = new StringBuilder("SELECT * FROM characters");
+            String separator = " WHERE ";
+            for (int i = 0; i < TERMS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    sb.append(separator).append(TERMS[i]);
+                    separator = " AND ";
+                }
+            }
+            sql = sb.append(" ORDER BY id").toString();
+            SQL_BY_MASK[mask] = sql;
+        }
+        return sql;
+    }
+
+    /**
+     * Binds the set conditions, in term order, starting at parameter 1.
+     *
+     * @param pstmt a statement prepared from {@link #toSql()}
+     * @throws SQLException if a value cannot be bound
+     */
+    void bind(PreparedStatement pstmt) throws SQLException {
+        int index = 1;
+        if ((mask & JOB) != 0) pstmt.setInt(index++, jobCodeOrNone(job));
+        if ((mask & ACTIVE) != 0) pstmt.setInt(index++, active ? 1 : 0);
+        if ((mask & MIN_LEVEL) != 0) pstmt.setInt(index++, minLevel);
+        if ((mask & MAX_LEVEL) != 0) pstmt.setInt(index, maxLevel);
+    }
+
+    /**
+     * Returns the stored code of a job name, or {@code 0} (used by no job) if it is not valid.
+     *
+     * @param job the job name
+     * @return the job code, or {@code 0}
+     */
+    private static int jobCodeOrNone(String job) {
+        Job known = Job.lookup(job);
+        return known != null ? known.getCode() : 0;
+    }
+}
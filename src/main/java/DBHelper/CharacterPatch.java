@@ -0,0 +1,256 @@
+package DBHelper;
+
+import FFPackage.Job;
+import FFPackage.PCharacter;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A partial update for one character: only the fields that were set are written.
+ * <p>
+ * Setters return {@code this}, so a patch can be built inline:
+ * <pre>
+ * db.update(id, new CharacterPatch().level(42).hp(5100));
+ * </pre>
+ * {@link PCharacters#update(long, CharacterPatch)} turns a patch into a single
+ * {@code UPDATE characters SET a=?, b=? WHERE id=?} with each value bound by its
+ * native type. There is one SQL string per combination of set fields, so each
+ * combination is prepared once per pooled connection and then reused.
+ */
+public class CharacterPatch {
+
+    /** Bit for {@link #name(String)} in {@link #columnMask()}. */
+    static final int NAME = 1;
+
+    /** Bit for {@link #job(String)} in {@link #columnMask()}. */
+    static final int JOB = 1 << 1;
+
+    /** Bit for {@link #level(int)} in {@link #columnMask()}. */
+    static final int LEVEL = 1 << 2;
+
+    /** Bit for {@link #hp(int)} in {@link #columnMask()}. */
+    static final int HP = 1 << 3;
+
+    /** Bit for {@link #mp(int)} in {@link #columnMask()}. */
+    static final int MP = 1 << 4;
+
+    /** Bit for {@link #active(boolean)} in {@link #columnMask()}. */
+    static final int ACTIVE = 1 << 5;
+
+    /** Column names in bit order; index {@code i} matches bit {@code 1 << i}. */
+    private static final String[] COLUMNS = {"name", "job", "level", "hp", "mp", "isActive"};
+
+    /** {@code UPDATE} statements built so far, indexed by column mask. */
+    private static final String[] SQL_BY_MASK = new String[1 << COLUMNS.length];
+
+    /** New name; only used if {@link #NAME} is set. */
+    private String name;
+
+    /** New job; only used if {@link #JOB} is set. */
+    private Job job;
+
+    /** New level; only used if {@link #LEVEL} is set. */
+    private int level;
+
+    /** New HP; only used if {@link #HP} is set. */
+    private int hp;
+
+    /** New MP; only used if {@link #MP} is set. */
+    private int mp;
+
+    /** New active flag; only used if {@link #ACTIVE} is set. */
+    private boolean active;
+
+    /** Which fields have been set, as a combination of the column bits. */
+    private int mask;
+
+    /**
+     * Sets the new name.
+     *
+     * @param name the new name (trimmed; {@code null} becomes an empty string)
+     * @return this patch
+     */
+    public CharacterPatch name(String name) {
+        this.name = name != null ? name.trim() : "";
+        mask |= NAME;
+        return this;
+    }
+
+    /**
+     * Sets the new job. It is checked here, so an invalid job fails the caller at once
+     * instead of failing later when the patch is written (possibly by a background flush).
+     *
+     * @param job the new job, in any case (see {@link Job#lookup(String)})
+     * @return this patch
+     * @throws IllegalArgumentException if {@code job} is not a valid job
+     */
+    public CharacterPatch job(String job) {
+        Job resolved = Job.lookup(job);
+        if (resolved == null) {
+            throw new IllegalArgumentException("Invalid job: " + job);
+        }
+        this.job = resolved;
+        mask |= JOB;
+        return this;
+    }
+
+    /**
+     * Sets the new level. Like the other numeric fields, it is checked here with the same
+     * rules as the {@link PCharacter} constructor, so a bad value never reaches the database.
+     *
+     * @param level the new level (between 1 and 99)
+     * @return this patch
+     * @throws IllegalArgumentException if {@code level} is outside 1-99
+     */
+    public CharacterPatch level(int level) {
+        if (level < 1 || level > 99) {
+            throw new IllegalArgumentException("Level must be 1-99");
+        }
+        this.level = level;
+        mask |= LEVEL;
+        return this;
+    }
+
+    /**
+     * Sets the new HP.
+     *
+     * @param hp the new hit points (at least 0)
+     * @return this patch
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public CharacterPatch hp(int hp) {
+        if (hp < 0) {
+            throw new IllegalArgumentException("HP cannot be negative");
+        }
+        this.hp = hp;
+        mask |= HP;
+        return this;
+    }
+
+    /**
+     * Sets the new MP.
+     *
+     * @param mp the new magic points (at least 0)
+     * @return this patch
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public CharacterPatch mp(int mp) {
+        if (mp < 0) {
+            throw new IllegalArgumentException("MP cannot be negative");
+        }
+        this.mp = mp;
+        mask |= MP;
+        return this;
+    }
+
+    /**
+     * Sets the new party flag.
+     *
+     * @param active {@code true} if the character is in the party
+     * @return this patch
+     */
+    public CharacterPatch active(boolean active) {
+        this.active = active;
+        mask |= ACTIVE;
+        return this;
+    }
+
+    /**
+     * Indicates whether no field has been set.
+     *
+     * @return {@code true} if applying this patch would change nothing
+     */
+    public boolean isEmpty() {
+        return mask == 0;
+    }
+
+    /**
+     * Copies every field set on {@code later} into this patch, overriding values already set.
+     * Used to coalesce several patches for the same character into one.
+     *
+     * @param later the newer patch
+     * @return this patch
+     */
+    CharacterPatch mergeFrom(CharacterPatch later) {
+        if ((later.mask & NAME) != 0) name(later.name);
+        if ((later.mask & JOB) != 0) {
+            job = later.job;
+            mask |= JOB;
+        }
+        if ((later.mask & LEVEL) != 0) level(later.level);
+        if ((later.mask & HP) != 0) hp(later.hp);
+        if ((later.mask & MP) != 0) mp(later.mp);
+        if ((later.mask & ACTIVE) != 0) active(later.active);
+        return this;
+    }
+
+    /**
+     * Applies the set fields to an in-memory character, without touching the database.
+     *
+     * @param pc the character to modify
+     */
+    void applyTo(PCharacter pc) {
+        if ((mask & NAME) != 0) pc.setName(name);
+        if ((mask & JOB) != 0) pc.setJob(job.getDisplayName());
+        if ((mask & LEVEL) != 0) pc.setLevel(level);
+        if ((mask & HP) != 0) pc.setHp(hp);
+        if ((mask & MP) != 0) pc.setMp(mp);
+        if ((mask & ACTIVE) != 0) pc.setActive(active);
+    }
+
+    /**
+     * Returns which fields are set, as a combination of the column bits.
+     *
+     * @return the column mask
+     */
+    int columnMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the {@code UPDATE} statement for this patch's set of columns.
+     * <p>
+     * The string for each combination is built once and shared, so the per-connection
+     * statement cache sees the exact same SQL every time.
+     *
+     * @return SQL of the form {@code UPDATE characters SET a=?, b=? WHERE id=?}
+     * @throws IllegalStateException if the patch is empty
+     */
+    String toSql() {
+        if (mask == 0) {
+            throw new IllegalStateException("Empty patch");
+        }
+        String sql = SQL_BY_MASK[mask];
+        if (sql == null) {
+            StringBuilder sb = new StringBuilder("UPDATE characters SET ");
+            String separator = "";
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    sb.append(separator).append(COLUMNS[i]).append("=?");
+                    separator = ", ";
+                }
+            }
+            sql = sb.append(" WHERE id=?").toString();
+            SQL_BY_MASK[mask] = sql;
+        }
+        return sql;
+    }
+
+    /**
+     * Binds the set values, in column order, starting at parameter 1.
+     *
+     * @param pstmt a statement prepared from {@link #toSql()}
+     * @return the index of the next unbound parameter (the {@code id} placeholder)
+     * @throws SQLException if a value cannot be bound
+     */
+    int bind(PreparedStatement pstmt) throws SQLException {
+        int index = 1;
+        if ((mask & NAME) != 0) pstmt.setString(index++, name);
+        if ((mask & JOB) != 0) pstmt.setInt(index++, job.getCode());
+        if ((mask & LEVEL) != 0) pstmt.setInt(index++, level);
+        if ((mask & HP) != 0) pstmt.setInt(index++, hp);
+        if ((mask & MP) != 0) pstmt.setInt(index++, mp);
+        if ((mask & ACTIVE) != 0) pstmt.setInt(index++, active ? 1 : 0);
+        return index;
+    }
+}
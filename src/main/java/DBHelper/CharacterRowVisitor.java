@@ -0,0 +1,25 @@
+package DBHelper;
+
+/**
+ * Receives the raw column values of {@code characters} rows, without a {@link FFPackage.PCharacter}
+ * being built for each one.
+ * <p>
+ * Used by {@link PCharacters#forEachRow(CharacterRowVisitor)} for bulk reads that copy the
+ * values into their own structures, such as column arrays.
+ */
+@FunctionalInterface
+public interface CharacterRowVisitor {
+
+    /**
+     * Handles one row.
+     *
+     * @param id       the character ID
+     * @param name     the name as UTF-8 bytes; a new array the visitor may keep
+     * @param jobCode  the stored {@link FFPackage.Job} code
+     * @param level    the level
+     * @param hp       the hit points
+     * @param mp       the magic points
+     * @param isActive the party flag
+     */
+    void row(long id, byte[] name, int jobCode, int level, int hp, int mp, boolean isActive);
+}
@@ -0,0 +1,68 @@
+package DBHelper;
+
+/**
+ * What {@link PCharacters#upsertBatch(java.util.Collection, ConflictPolicy)} does when a row's
+ * ID is already taken.
+ * <p>
+ * Every policy is a single {@code INSERT ... ON CONFLICT(id) DO ...} statement. The update
+ * policies only touch a row when something actually changes, so re-importing the same roster
+ * writes (and journals) nothing for unchanged characters.
+ */
+public enum ConflictPolicy {
+
+    /** Keep the stored character; the imported row is ignored. */
+    SKIP("DO NOTHING"),
+
+    /** Replace every column of the stored character with the imported values. */
+    OVERWRITE("DO UPDATE SET "
+            + "name=excluded.name, job=excluded.job, level=excluded.level, "
+            + "hp=excluded.hp, mp=excluded.mp, isActive=excluded.isActive "
+            + "WHERE characters.name IS NOT excluded.name OR characters.job IS NOT excluded.job "
+            + "OR characters.level IS NOT excluded.level OR characters.hp IS NOT excluded.hp "
+            + "OR characters.mp IS NOT excluded.mp OR characters.isActive IS NOT excluded.isActive"),
+
+    /**
+     * Take the imported values, but never lower the level: the stored character keeps
+     * the higher of the two levels.
+     */
+    MERGE_MAX_LEVEL("DO UPDATE SET "
+            + "name=excluded.name, job=excluded.job, level=MAX(characters.level, excluded.level), "
+            + "hp=excluded.hp, mp=excluded.mp, isActive=excluded.isActive "
+            + "WHERE characters.name IS NOT excluded.name OR characters.job IS NOT excluded.job "
+            + "OR characters.level < excluded.level OR characters.hp IS NOT excluded.hp "
+            + "OR characters.mp IS NOT excluded.mp OR characters.isActive IS NOT excluded.isActive");
+
+    /** The complete upsert statement for this policy. */
+    private final String sql;
+
+    /**
+     * Builds the upsert statement for one policy.
+     *
+     * @param onConflict the {@code ON CONFLICT(id)} action
+     */
+    ConflictPolicy(String onConflict) {
+        this.sql = "INSERT INTO characters (id,name,job,level,hp,mp,isActive) VALUES (?,?,?,?,?,?,?) "
+                + "ON CONFLICT(id) " + onConflict;
+    }
+
+    /**
+     * Returns the upsert statement; its parameters are the seven columns in table order.
+     *
+     * @return the SQL
+     */
+    String sql() {
+        return sql;
+    }
+
+    /**
+     * Looks up a policy by name, ignoring case and accepting {@code -} for {@code _}
+     * (e.g. {@code "merge-max-level"}).
+     *
+     * @param name the policy name
+     * @return the matching policy
+     * @throws IllegalArgumentException if no policy has that name
+     */
+    public static ConflictPolicy forName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,212 @@
+package DBHelper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Small fixed-size pool of persistent SQLite connections.
+ * <p>
+ * Connections are opened lazily, up to {@link #getSize()}, and are kept open until
+ * {@link #close()} is called. A caller that finds every connection busy waits until
+ * one is returned. Each connection carries its own prepared-statement cache
+ * (see {@link PooledConnection}), so repeated queries are parsed only once per connection,
+ * and is tuned with the pool's {@link SQLiteProfile} right after it is opened.
+ * <p>
+ * A pool can be read-only: its connections are then opened with {@code SQLITE_OPEN_READONLY},
+ * so they can never take the write lock and, under WAL, read from a snapshot while a
+ * writer is active.
+ */
+class ConnectionPool implements AutoCloseable {
+
+    /** How often a caller waiting for a connection checks whether the pool was closed, in milliseconds. */
+    private static final long CLOSE_CHECK_MILLIS = 100;
+
+    /** JDBC connection string used to open new connections. */
+    private final String connectionString;
+
+    /** Pragmas applied to every connection this pool opens. */
+    private final SQLiteProfile profile;
+
+    /** Whether connections are opened with {@code SQLITE_OPEN_READONLY}. */
+    private final boolean readOnly;
+
+    /** Maximum number of physical connections this pool will open. */
+    private final int size;
+
+    /** Connections that are open and currently not borrowed. */
+    private final BlockingQueue<PooledConnection> idle;
+
+    /** Every connection this pool has opened; its size is capped at {@link #size}. */
+    private final List<PooledConnection> opened = new ArrayList<>();
+
+    /** Set once {@link #close()} has been called. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool for the given database. No connection is opened until first use.
+     *
+     * @param connectionString JDBC connection string, e.g. {@code jdbc:sqlite:/path/to/ffgame.db}
+     * @param size             maximum number of connections (must be at least 1)
+     * @param profile          tuning pragmas applied to each new connection
+     * @throws IllegalArgumentException if {@code size} is less than 1
+     */
+    ConnectionPool(String connectionString, int size, SQLiteProfile profile) {
+        this(connectionString, size, profile, false);
+    }
+
+    /**
+     * Creates a pool for the given database, optionally read-only. No connection is opened until first use.
+     *
+     * @param connectionString JDBC connection string, e.g. {@code jdbc:sqlite:/path/to/ffgame.db}
+     * @param size             maximum number of connections (must be at least 1)
+     * @param profile          tuning pragmas applied to each new connection
+     * @param readOnly         {@code true} to open every connection with {@code SQLITE_OPEN_READONLY};
+     *                         the database file must already exist
+     * @throws IllegalArgumentException if {@code size} is less than 1
+     */
+    ConnectionPool(String connectionString, int size, SQLiteProfile profile, boolean readOnly) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.connectionString = connectionString;
+        this.profile = profile;
+        this.readOnly = readOnly;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Borrows a connection, opening a new one if the pool has not reached its size yet,
+     * or waiting for one to be released otherwise.
+     * <p>
+     * A caller that is waiting notices within {@link #CLOSE_CHECK_MILLIS} when the pool is
+     * closed, instead of waiting forever for a connection that will never come back.
+     * The returned connection must be given back with {@link PooledConnection#close()}.
+     *
+     * @return a connection reserved for the caller
+     * @throws SQLException if the pool is closed, a connection cannot be opened,
+     *                      or the calling thread is interrupted while waiting
+     */
+    PooledConnection borrow() throws SQLException {
+        while (true) {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+
+            PooledConnection conn = idle.poll();
+            if (conn == null) {
+                synchronized (opened) {
+                    if (!closed && opened.size() < size) {
+                        conn = new PooledConnection(open(), this);
+                        opened.add(conn);
+                        return conn;
+                    }
+                }
+
+                try {
+                    // Every connection is busy: wait for another caller to return one
+                    conn = idle.poll(CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection", e);
+                }
+                if (conn == null) {
+                    continue;
+                }
+            }
+
+            if (closed) {
+                // Released just as the pool closed: close() may already have drained the queue
+                conn.closePhysical();
+                throw new SQLException("Connection pool is closed");
+            }
+            return conn;
+        }
+    }
+
+    /**
+     * Opens a new physical connection and applies the pool's {@link SQLiteProfile}.
+     *
+     * @return the tuned connection
+     * @throws SQLException if the connection cannot be opened or tuned
+     */
+    private Connection open() throws SQLException {
+        Connection connection;
+        if (readOnly) {
+            SQLiteConfig config = new SQLiteConfig();
+            config.setReadOnly(true);
+            connection = DriverManager.getConnection(connectionString, config.toProperties());
+        } else {
+            connection = DriverManager.getConnection(connectionString);
+        }
+        try {
+            profile.apply(connection, readOnly);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Returns a borrowed connection to the pool. Called by {@link PooledConnection#close()}.
+     *
+     * @param conn the connection being returned
+     */
+    void release(PooledConnection conn) {
+        if (closed) {
+            conn.closePhysical();
+            return;
+        }
+        idle.offer(conn);
+        if (closed) {
+            // close() ran between the check and the offer and may have missed this connection
+            closeIdle();
+        }
+    }
+
+    /**
+     * Returns the maximum number of connections this pool will open.
+     *
+     * @return the pool size
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Indicates whether this pool hands out read-only connections.
+     *
+     * @return {@code true} if connections are opened with {@code SQLITE_OPEN_READONLY}
+     */
+    boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Closes every idle connection and marks the pool as closed.
+     * Connections still borrowed are closed as soon as they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    /**
+     * Closes every connection currently in the idle queue.
+     */
+    private void closeIdle() {
+        PooledConnection conn;
+        while ((conn = idle.poll()) != null) {
+            conn.closePhysical();
+        }
+    }
+}
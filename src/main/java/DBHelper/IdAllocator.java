@@ -0,0 +1,30 @@
+package DBHelper;
+
+/**
+ * Strategy for handing out unique character IDs without asking the database
+ * whether each candidate is already taken.
+ * <p>
+ * Implementations must be thread-safe: the same allocator may be shared by the
+ * CLI, the GUI and background imports.
+ *
+ * @see SequenceIdAllocator
+ */
+public interface IdAllocator {
+
+    /**
+     * Returns an ID that no other call to this allocator has returned and that is
+     * not used by any character known to the allocator.
+     *
+     * @return a fresh, unique character ID
+     * @throws IllegalStateException if the allocator's ID space is exhausted
+     */
+    long nextId();
+
+    /**
+     * Tells the allocator that an ID chosen outside of it (e.g. a character inserted
+     * with an explicit ID) is now in use, so it will never be handed out.
+     *
+     * @param id the ID that was just stored
+     */
+    void observe(long id);
+}
@@ -0,0 +1,95 @@
+package DBHelper;
+
+/**
+ * How far an import of one particular file has been committed.
+ * <p>
+ * Stored in the {@code import_checkpoints} table, keyed by a fingerprint of the file's
+ * content, and written in the same transaction as the rows it covers (see
+ * {@link PCharacters#insertBatch(java.util.Collection, ImportCheckpoint)}). After a crash,
+ * an import of the same file can therefore skip exactly the bytes that were committed.
+ * <p>
+ * The fingerprint only samples the file, so the checkpoint also records the file's
+ * modification time; a checkpoint whose time does not match the file is stale and must not
+ * be resumed from.
+ */
+public final class ImportCheckpoint {
+
+    /** Identifies the file, independently of its name or location. */
+    private final String fingerprint;
+
+    /** Offset just past the last line whose rows are committed. */
+    private final long byteOffset;
+
+    /** Number of lines before {@link #byteOffset}, so line numbers stay right on resume. */
+    private final long lineNumber;
+
+    /** Modification time of the file in milliseconds, or {@code 0} if unknown. */
+    private final long fileModified;
+
+    /**
+     * Creates a checkpoint without a file modification time.
+     *
+     * @param fingerprint identifies the file
+     * @param byteOffset  offset just past the last committed line (at least 0)
+     * @param lineNumber  number of lines before {@code byteOffset} (at least 0)
+     * @throws IllegalArgumentException if an offset or count is negative
+     */
+    public ImportCheckpoint(String fingerprint, long byteOffset, long lineNumber) {
+        this(fingerprint, byteOffset, lineNumber, 0);
+    }
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param fingerprint identifies the file
+     * @param byteOffset  offset just past the last committed line (at least 0)
+     * @param lineNumber  number of lines before {@code byteOffset} (at least 0)
+     * @param fileModified modification time of the file in milliseconds, or {@code 0} if unknown
+     * @throws IllegalArgumentException if an offset or count is negative
+     */
+    public ImportCheckpoint(String fingerprint, long byteOffset, long lineNumber, long fileModified) {
+        if (byteOffset < 0 || lineNumber < 0) {
+            throw new IllegalArgumentException("Checkpoint position cannot be negative");
+        }
+        this.fingerprint = fingerprint;
+        this.byteOffset = byteOffset;
+        this.lineNumber = lineNumber;
+        this.fileModified = fileModified;
+    }
+
+    /**
+     * Returns the file fingerprint.
+     *
+     * @return the file fingerprint
+     */
+    public String getFingerprint() { return fingerprint; }
+
+    /**
+     * Returns the offset just past the last committed line.
+     *
+     * @return the offset just past the last committed line
+     */
+    public long getByteOffset() { return byteOffset; }
+
+    /**
+     * Returns the number of lines before {@link #getByteOffset()}.
+     *
+     * @return the number of lines before {@link #getByteOffset()}
+     */
+    public long getLineNumber() { return lineNumber; }
+
+    /**
+     * Returns the modification time of the file in milliseconds, or {@code 0} if unknown.
+     *
+     * @return the modification time of the file in milliseconds, or {@code 0} if unknown
+     */
+    public long getFileModified() { return fileModified; }
+
+    /**
+     * Returns e.g. {@code "3f9a…@1048576 (line 25000)"}.
+     */
+    @Override
+    public String toString() {
+        return fingerprint + "@" + byteOffset + " (line " + lineNumber + ")";
+    }
+}
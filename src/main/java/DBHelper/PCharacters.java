@@ -1,9 +1,25 @@
 package DBHelper;
 
+import FFPackage.Job;
 import FFPackage.PCharacter;
 import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Data access object (DAO) for {@link PCharacter} records stored in a SQLite database.
@@ -14,258 +30,1733 @@ import java.util.ArrayList;
  *     <li>Inserting, updating, deleting character rows</li>
  *     <li>Querying characters by ID or retrieving all characters</li>
  * </ul>
+ * Connections are kept open in a small {@link ConnectionPool} and each one caches its
+ * prepared statements, so individual calls no longer pay for opening the database file
+ * or re-parsing SQL. Call {@link #close()} when the DAO is no longer needed.
+ * <p>
+ * Writes are not run on the caller's thread: they are queued to a {@link SingleWriter},
+ * which owns the only write connection and commits whatever is queued together
+ * (group commit). Concurrent writers therefore wait in line instead of failing with
+ * {@code SQLITE_BUSY}. Synchronous methods wait for their commit; the {@code ...Async}
+ * variants return a {@link CompletableFuture} instead, whose callbacks run on a separate
+ * callback thread, never the writer's, so they may freely call back into this DAO.
+ * <p>
+ * Every connection is tuned with a {@link SQLiteProfile} (WAL journal, sync level, caches);
+ * {@link SQLiteProfile#BALANCED} is used unless another profile is passed in.
  */
-public class PCharacters {
+public class PCharacters implements AutoCloseable {
+
+    /**
+     * Number of read-only pooled connections used when no pool size is given:
+     * one per core, between 2 and 8, so concurrent readers can run in parallel.
+     */
+    public static final int DEFAULT_POOL_SIZE =
+            Math.min(8, Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Number of rows sent to SQLite per {@code executeBatch} call when no chunk size is given.
+     */
+    public static final int DEFAULT_BATCH_CHUNK_SIZE = 1000;
+
+    /**
+     * JDBC fetch size hint used by the streaming reads ({@link #forEach(Consumer)}, {@link #stream()}).
+     */
+    public static final int STREAM_FETCH_SIZE = 512;
+
+    /**
+     * Time between periodic write-behind flushes, in milliseconds, when none is given.
+     */
+    public static final long DEFAULT_WRITE_BEHIND_INTERVAL_MILLIS = 200;
+
+    /**
+     * Number of characters with pending write-behind changes that triggers an early flush,
+     * when none is given.
+     */
+    public static final int DEFAULT_WRITE_BEHIND_MAX_PENDING = 1000;
+
+    /**
+     * Version of the database schema this class reads and writes, stored in
+     * SQLite's {@code PRAGMA user_version}.
+     * <ul>
+     *     <li>0 – original layout, {@code id TEXT PRIMARY KEY}</li>
+     *     <li>1 – never written; skipped by the change to integer IDs, and kept unused because
+     *         databases at 2 already exist. {@link #migrate} treats it like 0 and 2.</li>
+     *     <li>2 – {@code id INTEGER PRIMARY KEY} (rowid alias)</li>
+     *     <li>3 – {@code job} stored as a {@link Job} code, named in the {@code jobs} table</li>
+     * </ul>
+     */
+    public static final int SCHEMA_VERSION = 3;
+
+    /**
+     * Sizes of the {@code IN (...)} lists used by {@link #selectByIds(Collection)};
+     * the largest one is also the chunk size.
+     */
+    private static final int[] IN_LIST_SIZES = {1, 8, 64, 512};
+
+    /** Position of {@code id} in a {@code SELECT *} row; must match {@link #charactersTableSql(String)}. */
+    private static final int COL_ID = 1;
+
+    /** Position of {@code name} in a {@code SELECT *} row. */
+    private static final int COL_NAME = 2;
+
+    /** Position of {@code job} in a {@code SELECT *} row. */
+    private static final int COL_JOB = 3;
+
+    /** Position of {@code level} in a {@code SELECT *} row. */
+    private static final int COL_LEVEL = 4;
+
+    /** Position of {@code hp} in a {@code SELECT *} row. */
+    private static final int COL_HP = 5;
+
+    /** Position of {@code mp} in a {@code SELECT *} row. */
+    private static final int COL_MP = 6;
+
+    /** Position of {@code isActive} in a {@code SELECT *} row. */
+    private static final int COL_ACTIVE = 7;
+
+    /**
+     * Statement used by every plain insert.
+     */
+    private static final String INSERT_SQL =
+            "INSERT INTO characters (id,name,job,level,hp,mp,isActive) VALUES (?,?,?,?,?,?,?)";
+
+    /**
+     * JDBC connection string pointing to the SQLite database file.
+     * <p>
+     * Example: {@code jdbc:sqlite:C:\path\to\project\ffgame.db}
+     */
+    private final String CONNECTION_STRING;
+
+    /**
+     * Pool of long-lived read-only connections used by every query.
+     */
+    private final ConnectionPool pool;
+
+    /**
+     * Thread that owns the write connection; every insert, update and delete goes through it.
+     */
+    private final SingleWriter writer;
+
+    /**
+     * Tuning pragmas applied to every pooled connection.
+     */
+    private final SQLiteProfile profile;
+
+    /**
+     * Optional read-through cache for lookups by ID; {@code null} when caching is off.
+     */
+    private volatile CharacterCache cache;
+
+    /**
+     * Buffer holding patches not yet written; {@code null} unless write-behind is enabled.
+     */
+    private volatile WriteBehindBuffer writeBehind;
+
+    /**
+     * Default constructor – uses a SQLite database named {@code ffgame.db}
+     * in the project root directory.
+     */
+    public PCharacters() {
+        this(defaultDatabasePath(), DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Constructor that allows passing a custom database path.
+     * <p>
+     * This is useful for tests or when you want to use a different DB file
+     * than the default one in the project root.
+     *
+     * @param databasePath full path to the SQLite database file
+     */
+    public PCharacters(String databasePath) {
+        this(databasePath, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Constructor that allows passing a custom database path and read pool size.
+     *
+     * @param databasePath full path to the SQLite database file
+     * @param poolSize     maximum number of read connections kept open (at least 1)
+     * @throws IllegalArgumentException if {@code poolSize} is less than 1
+     */
+    public PCharacters(String databasePath, int poolSize) {
+        this(databasePath, poolSize, SQLiteProfile.BALANCED);
+    }
+
+    /**
+     * Constructor that allows passing a custom database path and tuning profile.
+     * <p>
+     * Example: {@code new PCharacters(path, SQLiteProfile.forName("bulk-load"))} before a large import.
+     *
+     * @param databasePath full path to the SQLite database file
+     * @param profile      pragmas applied to every connection
+     */
+    public PCharacters(String databasePath, SQLiteProfile profile) {
+        this(databasePath, DEFAULT_POOL_SIZE, profile);
+    }
+
+    /**
+     * Constructor that allows passing a custom database path, read pool size
+     * and tuning profile.
+     * <p>
+     * Reads use up to {@code poolSize} connections opened with {@code SQLITE_OPEN_READONLY};
+     * under WAL each read sees a consistent snapshot and never waits for the writer.
+     * Writes use one separate connection owned by a {@link SingleWriter}.
+     *
+     * @param databasePath full path to the SQLite database file
+     * @param poolSize     maximum number of read connections kept open (at least 1)
+     * @param profile      pragmas applied to every connection
+     * @throws IllegalArgumentException if {@code poolSize} is less than 1
+     */
+    public PCharacters(String databasePath, int poolSize, SQLiteProfile profile) {
+        this.CONNECTION_STRING = "jdbc:sqlite:" + databasePath;
+        this.profile = profile;
+        this.pool = new ConnectionPool(CONNECTION_STRING, poolSize, profile, true);
+        try {
+            initializeDatabase();
+        } catch (RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+        this.writer = new SingleWriter(CONNECTION_STRING, profile);
+    }
+
+    /**
+     * Resolves the default database location.
+     *
+     * @return absolute path of {@code ffgame.db} in the project root, or under
+     *         {@code src/main} when it does not exist in the root
+     */
+    private static String defaultDatabasePath() {
+        String projectRoot = System.getProperty("user.dir");
+
+        // Try /app/ffgame.db first (Docker environment)
+        File dbFile = new File(projectRoot + File.separator + "ffgame.db");
+
+        // Fall back to local development path
+        if (!dbFile.exists()) {
+            dbFile = new File(projectRoot + File.separator + "src"
+                    + File.separator + "main"
+                    + File.separator + "ffgame.db");
+        }
+
+        return dbFile.getAbsolutePath();
+    }
+
+    /**
+     * Returns the maximum number of read connections this DAO keeps open
+     * (the writer's connection comes on top of these).
+     *
+     * @return the read pool size
+     */
+    public int getPoolSize() {
+        return pool.getSize();
+    }
+
+    /**
+     * Returns the tuning profile applied to this DAO's connections.
+     *
+     * @return the SQLite profile
+     */
+    public SQLiteProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Attaches a read-through cache for lookups by ID, or detaches it.
+     * <p>
+     * While a cache is attached, {@link #selectById(long)} and {@link #idExists(long)} are
+     * answered from it when possible, and every write made through this DAO invalidates
+     * the affected entries. Writes made by other processes are only seen once entries expire.
+     *
+     * @param cache the cache to use, or {@code null} to turn caching off
+     */
+    public void setCache(CharacterCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the attached read-through cache.
+     *
+     * @return the cache, or {@code null} if caching is off
+     */
+    public CharacterCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Closes every pooled connection and its cached statements.
+     * <p>
+     * The DAO must not be used after this call.
+     */
+    @Override
+    public void close() {
+        try {
+            disableWriteBehind();
+        } finally {
+            writer.close();
+            pool.close();
+        }
+    }
+
+    /**
+     * Turns on write-behind mode with {@link #DEFAULT_WRITE_BEHIND_INTERVAL_MILLIS} and
+     * {@link #DEFAULT_WRITE_BEHIND_MAX_PENDING}.
+     *
+     * @see #enableWriteBehind(long, int)
+     */
+    public void enableWriteBehind() {
+        enableWriteBehind(DEFAULT_WRITE_BEHIND_INTERVAL_MILLIS, DEFAULT_WRITE_BEHIND_MAX_PENDING);
+    }
+
+    /**
+     * Turns on write-behind mode for {@link #update(long, CharacterPatch)}.
+     * <p>
+     * Patches are then kept in memory, merged per character, and written in a single
+     * transaction every {@code flushIntervalMillis}, once {@code maxPending} characters
+     * are waiting, on {@link #flush()}, on {@link #close()} or at JVM shutdown.
+     * {@link #selectById(long)} still returns the latest values, and scans, filters and
+     * other kinds of writes flush first, so reads never see older data than before.
+     * Changes not yet flushed are lost if the process is killed.
+     *
+     * @param flushIntervalMillis time between periodic flushes, in milliseconds
+     * @param maxPending          number of pending characters that triggers a flush
+     * @throws IllegalArgumentException if a limit is less than 1
+     */
+    public void enableWriteBehind(long flushIntervalMillis, int maxPending) {
+        WriteBehindBuffer buffer = new WriteBehindBuffer(this, flushIntervalMillis, maxPending);
+        disableWriteBehind();
+        writeBehind = buffer;
+    }
+
+    /**
+     * Turns write-behind mode off, writing every pending change first.
+     * Does nothing if write-behind is not enabled.
+     *
+     * @throws RuntimeException if the pending changes cannot be written
+     */
+    public void disableWriteBehind() {
+        WriteBehindBuffer buffer = writeBehind;
+        if (buffer != null) {
+            writeBehind = null;
+            buffer.close();
+        }
+    }
+
+    /**
+     * Indicates whether write-behind mode is on.
+     *
+     * @return {@code true} if patches are buffered instead of written immediately
+     */
+    public boolean isWriteBehindEnabled() {
+        return writeBehind != null;
+    }
+
+    /**
+     * Returns how many buffered patches were dropped because the database rejected them
+     * when they were flushed (e.g. by a constraint or trigger). Such a patch is never retried,
+     * so a non-zero count means updates were lost.
+     *
+     * @return the number of dropped patches since write-behind was last enabled,
+     *         or {@code 0} if it is off
+     */
+    public long getDroppedWriteBehindPatches() {
+        WriteBehindBuffer buffer = writeBehind;
+        return buffer != null ? buffer.getDroppedPatches() : 0;
+    }
+
+    /**
+     * Writes every buffered write-behind change now, in a single transaction.
+     *
+     * @return the number of characters written (0 if nothing was pending or write-behind is off)
+     * @throws RuntimeException if the transaction fails; the changes stay buffered
+     */
+    public int flush() {
+        WriteBehindBuffer buffer = writeBehind;
+        return buffer != null ? buffer.flush() : 0;
+    }
+
+    /**
+     * Flushes buffered patches before an operation that reads or writes rows directly,
+     * so it neither misses nor is later overwritten by them.
+     */
+    private void flushPending() {
+        WriteBehindBuffer buffer = writeBehind;
+        if (buffer != null && buffer.hasPending()) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Ensures that the {@code characters} and {@code id_sequences} tables exist in the database
+     * and use the current schema.
+     * <p>
+     * If a table does not exist, it will be created. A {@code characters} table written by an
+     * older version (e.g. with {@code TEXT} IDs) is migrated in place, inside one transaction.
+     * The schema version is tracked in SQLite's {@code PRAGMA user_version}.
+     *
+     * @throws RuntimeException if an existing database cannot be migrated
+     *                          (e.g. it contains non-numeric IDs)
+     */
+    public void initializeDatabase() {
+        // The read pool is read-only, so the schema is set up on a short-lived writable connection
+        try (ConnectionPool setup = new ConnectionPool(CONNECTION_STRING, 1, profile);
+             PooledConnection conn = setup.borrow()) {
+            int version;
+            boolean hasCharacters;
+            try (Statement stmt = conn.connection().createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+                    version = rs.next() ? rs.getInt(1) : 0;
+                }
+                try (ResultSet rs = stmt.executeQuery(
+                        "SELECT 1 FROM sqlite_master WHERE type='table' AND name='characters'")) {
+                    hasCharacters = rs.next();
+                }
+            }
+
+            // Names for the job codes; rewritten every time so new jobs appear in old databases
+            execute(conn, "CREATE TABLE IF NOT EXISTS jobs (" +
+                    "code INTEGER PRIMARY KEY, " +
+                    "name TEXT NOT NULL UNIQUE)");
+            writeJobNames(conn);
+
+            if (hasCharacters && version < SCHEMA_VERSION) {
+                try {
+                    migrate(conn, version);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    throw new RuntimeException("Failed to migrate database: " + e.getMessage());
+                }
+            }
+
+            execute(conn, charactersTableSql("characters"));
+
+            // Secondary indexes backing keyset pagination (see SortColumn)
+            execute(conn, "CREATE INDEX IF NOT EXISTS idx_characters_name ON characters (name)");
+            execute(conn, "CREATE INDEX IF NOT EXISTS idx_characters_level ON characters (level)");
+
+            // Secondary indexes backing CharacterFilter; the composite one also serves job-only lookups
+            execute(conn, "CREATE INDEX IF NOT EXISTS idx_characters_job_active_level "
+                    + "ON characters (job, isActive, level)");
+            execute(conn, "CREATE INDEX IF NOT EXISTS idx_characters_active ON characters (isActive)");
+
+            // Readable form of the table, with job names instead of codes, for ad-hoc queries
+            execute(conn, "CREATE VIEW IF NOT EXISTS characters_view AS " +
+                    "SELECT c.id, c.name, j.name AS job, c.level, c.hp, c.mp, c.isActive " +
+                    "FROM characters c JOIN jobs j ON j.code = c.job");
+
+            // Persisted counters used by SequenceIdAllocator
+            execute(conn, "CREATE TABLE IF NOT EXISTS id_sequences (" +
+                    "name TEXT PRIMARY KEY, " +
+                    "next_id INTEGER NOT NULL)");
+
+            // Progress of file imports, so an interrupted one can resume (see ImportCheckpoint)
+            execute(conn, "CREATE TABLE IF NOT EXISTS import_checkpoints (" +
+                    "fingerprint TEXT PRIMARY KEY, " +
+                    "byte_offset INTEGER NOT NULL, " +
+                    "line_number INTEGER NOT NULL, " +
+                    "file_modified INTEGER NOT NULL DEFAULT 0, " +
+                    "updated_at INTEGER NOT NULL)");
+            if (!hasColumn(conn, "import_checkpoints", "file_modified")) {
+                // Checkpoints written before file_modified existed never match a file, so they are discarded
+                execute(conn, "ALTER TABLE import_checkpoints ADD COLUMN file_modified INTEGER NOT NULL DEFAULT 0");
+            }
+
+            execute(conn, "PRAGMA user_version = " + SCHEMA_VERSION);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to open database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the {@code CREATE TABLE} statement for the current {@code characters} schema.
+     * <p>
+     * {@code id} is an {@code INTEGER PRIMARY KEY}, i.e. an alias for SQLite's rowid, so rows
+     * are stored in ID order in the table B-tree itself and no separate ID index is needed.
+     * {@code job} holds a {@link Job#getCode()}, which keeps rows and the job index small and
+     * makes job comparisons integer comparisons.
+     * <p>
+     * Rows are read back by column position (see {@link #toCharacter(ResultSet)}), so the
+     * column order here must not change.
+     *
+     * @param table name of the table to create
+     * @return the SQL statement
+     */
+    private static String charactersTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                "id INTEGER PRIMARY KEY, " +
+                "name TEXT NOT NULL, " +
+                "job INTEGER NOT NULL, " +
+                "level INTEGER NOT NULL, " +
+                "hp INTEGER NOT NULL, " +
+                "mp INTEGER NOT NULL, " +
+                "isActive INTEGER NOT NULL)";
+    }
+
+    /**
+     * Upgrades an existing database from {@code fromVersion} to {@link #SCHEMA_VERSION}.
+     * <p>
+     * Version 0 is the original layout with {@code id TEXT PRIMARY KEY}, version 2 has integer
+     * IDs; both store the job as text. Their rows are copied into the current table: SQLite
+     * converts numeric text IDs on the way, and job names are replaced by their codes through
+     * the {@code jobs} table, ignoring case. An ID that is not an integer or a job that is not
+     * valid rolls back the whole migration. The file is vacuumed afterwards to drop the old
+     * pages.
+     *
+     * @param conn        the connection to migrate on
+     * @param fromVersion the database's current {@code user_version}
+     * @throws SQLException if any step fails; the database is left unchanged in that case
+     */
+    private void migrate(PooledConnection conn, int fromVersion) throws SQLException {
+        Connection connection = conn.connection();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            // 0, 1 (never written, see SCHEMA_VERSION) and 2 all store the job as text
+            if (fromVersion < 3) {
+                stmt.execute(charactersTableSql("characters_v3"));
+                // An unknown job yields NULL, which the NOT NULL constraint rejects
+                stmt.execute("INSERT INTO characters_v3 (id,name,job,level,hp,mp,isActive) " +
+                        "SELECT c.id, c.name, " +
+                        "(SELECT j.code FROM jobs j WHERE j.name = TRIM(c.job) COLLATE NOCASE), " +
+                        "c.level, c.hp, c.mp, c.isActive FROM characters c");
+                stmt.execute("DROP TABLE characters");
+                stmt.execute("ALTER TABLE characters_v3 RENAME TO characters");
+            }
+            stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("VACUUM");
+        }
+    }
+
+    /**
+     * Writes the name of every {@link Job} into the {@code jobs} table.
+     *
+     * @param conn the connection to write on
+     * @throws SQLException if a row cannot be written
+     */
+    private static void writeJobNames(PooledConnection conn) throws SQLException {
+        // Not cached on the connection: an open statement would block the VACUUM after a migration
+        try (PreparedStatement pstmt = conn.connection().prepareStatement(
+                "INSERT INTO jobs (code, name) VALUES (?, ?) ON CONFLICT(code) DO UPDATE SET name = excluded.name")) {
+            for (Job job : Job.values()) {
+                pstmt.setInt(1, job.getCode());
+                pstmt.setString(2, job.getDisplayName());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Returns the code stored in {@code characters.job} for a job name.
+     *
+     * @param job the job name, in any case
+     * @return its {@link Job#getCode()}
+     * @throws IllegalArgumentException if {@code job} is not a valid job
+     */
+    static int jobCode(String job) {
+        Job known = Job.lookup(job);
+        if (known == null) {
+            throw new IllegalArgumentException("Invalid job: " + job);
+        }
+        return known.getCode();
+    }
+
+    /**
+     * Executes a SQL statement that does not return a result set
+     * (e.g. CREATE TABLE, ALTER TABLE).
+     *
+     * @param conn the connection to run it on
+     * @param sql  the SQL string to execute
+     */
+    private static void execute(PooledConnection conn, String sql) {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            // For infrastructure-style methods, logging the stack trace is usually enough
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tells whether a table has a column, for additive changes to tables that are not migrated.
+     *
+     * @param conn   the connection
+     * @param table  the table name
+     * @param column the column name
+     * @return {@code true} if the column exists
+     * @throws SQLException if the table cannot be inspected
+     */
+    private static boolean hasColumn(PooledConnection conn, String table, String column) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts a new character row into the {@code characters} table.
+     *
+     * @param id       unique identifier for the character (numeric string)
+     * @param name     character name
+     * @param job      character job (e.g. "Warrior", "Mage")
+     * @param level    character level
+     * @param hp       hit points
+     * @param mp       magic points
+     * @param isActive whether this character is currently active
+     * @throws IllegalArgumentException if {@code id} is not a valid numeric ID
+     * @throws RuntimeException         if the insert fails for any reason
+     */
+    public void insert(String id, String name, String job, int level, int hp, int mp, boolean isActive) {
+        insert(requireId(id), name, job, level, hp, mp, isActive);
+    }
+
+    /**
+     * Inserts a new character row into the {@code characters} table.
+     *
+     * @param id       unique identifier for the character
+     * @param name     character name
+     * @param job      character job (e.g. "Warrior", "Mage")
+     * @param level    character level
+     * @param hp       hit points
+     * @param mp       magic points
+     * @param isActive whether this character is currently active
+     * @throws RuntimeException if the insert fails for any reason
+     */
+    public void insert(long id, String name, String job, int level, int hp, int mp, boolean isActive) {
+        try {
+            await(submit(id, conn -> {
+                PreparedStatement pstmt = conn.prepare(INSERT_SQL);
+                bindRow(pstmt, id, name, job, level, hp, mp, isActive);
+                return pstmt.executeUpdate();
+            }));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // Bubble up as unchecked so callers can choose whether to catch it
+            throw new RuntimeException("Failed to insert character: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queues the insert of a new character and returns immediately.
+     *
+     * @param pc the character to insert; its ID must be numeric and not taken yet
+     * @return a future completed once the row is committed, or failed (e.g. duplicate ID)
+     * @throws IllegalArgumentException if the character's ID is not numeric
+     */
+    public CompletableFuture<Void> insertAsync(PCharacter pc) {
+        long id = requireId(pc.getId());
+        return writer.handOff(submit(id, conn -> {
+            PreparedStatement pstmt = conn.prepare(INSERT_SQL);
+            bindRow(pstmt, id, pc.getName(), pc.getJob(), pc.getLevel(), pc.getHp(), pc.getMp(), pc.isActive());
+            pstmt.executeUpdate();
+            return null;
+        }));
+    }
+
+    /**
+     * Inserts a character unless a row with the same ID already exists.
+     * <p>
+     * This lets callers try a caller-chosen ID without a separate {@link #idExists(String)} query.
+     *
+     * @param pc the character to insert
+     * @return {@code true} if the row was inserted, {@code false} if the ID was already taken
+     * @throws IllegalArgumentException if the character's ID is not numeric
+     * @throws RuntimeException         if the insert fails for any other reason
+     */
+    public boolean insertIfAbsent(PCharacter pc) {
+        String sql = "INSERT OR IGNORE INTO characters (id,name,job,level,hp,mp,isActive) VALUES (?,?,?,?,?,?,?)";
+        long id = requireId(pc.getId());
+        try {
+            return await(submit(id, conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                bindRow(pstmt, id, pc.getName(), pc.getJob(), pc.getLevel(), pc.getHp(), pc.getMp(), pc.isActive());
+                return pstmt.executeUpdate() == 1;
+            }));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to insert character: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts many characters in a single transaction, using
+     * {@link #DEFAULT_BATCH_CHUNK_SIZE} rows per JDBC batch.
+     *
+     * @param characters the characters to insert; their IDs must not exist yet
+     * @return the number of rows inserted
+     * @throws RuntimeException if any insert fails; in that case nothing is inserted
+     * @see #insertBatch(Collection, int)
+     */
+    public int insertBatch(Collection<PCharacter> characters) {
+        return insertBatch(characters, DEFAULT_BATCH_CHUNK_SIZE);
+    }
+
+    /**
+     * Inserts many characters in a single transaction.
+     * <p>
+     * Rows are added with {@link PreparedStatement#addBatch()} and flushed with
+     * {@link PreparedStatement#executeBatch()} every {@code chunkSize} rows, so the
+     * whole collection costs one commit (and one fsync) instead of one per row.
+     *
+     * @param characters the characters to insert; their IDs must not exist yet
+     * @param chunkSize  number of rows per {@code executeBatch} call (at least 1)
+     * @return the number of rows inserted
+     * @throws IllegalArgumentException if {@code chunkSize} is less than 1 or an ID is not numeric
+     * @throws RuntimeException         if any insert fails; in that case nothing is inserted
+     */
+    public int insertBatch(Collection<PCharacter> characters, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        if (characters.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            int inserted = await(writer.submit(conn -> insertRows(conn, characters, chunkSize)));
+            invalidate(characters);
+            return inserted;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to insert characters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts many characters and records an import checkpoint in the same transaction,
+     * using {@link #DEFAULT_BATCH_CHUNK_SIZE} rows per JDBC batch.
+     * <p>
+     * Either the rows and the checkpoint are both committed or neither is, so an import that
+     * resumes from the stored checkpoint never inserts a row twice. The checkpoint is written
+     * even if {@code characters} is empty.
+     *
+     * @param characters the characters to insert; their IDs must not exist yet
+     * @param checkpoint how far the import will have been committed with these rows
+     * @return the number of rows inserted
+     * @throws IllegalArgumentException if an ID is not numeric
+     * @throws RuntimeException         if the write fails; in that case nothing is written
+     */
+    public int insertBatch(Collection<PCharacter> characters, ImportCheckpoint checkpoint) {
+        try {
+            int inserted = await(writer.submit(conn -> {
+                int rows = insertRows(conn, characters, DEFAULT_BATCH_CHUNK_SIZE);
+
+                PreparedStatement pstmt = conn.prepare(
+                        "INSERT INTO import_checkpoints "
+                                + "(fingerprint,byte_offset,line_number,file_modified,updated_at) "
+                                + "VALUES (?,?,?,?,?) ON CONFLICT(fingerprint) DO UPDATE SET "
+                                + "byte_offset=excluded.byte_offset, line_number=excluded.line_number, "
+                                + "file_modified=excluded.file_modified, updated_at=excluded.updated_at");
+                pstmt.setString(1, checkpoint.getFingerprint());
+                pstmt.setLong(2, checkpoint.getByteOffset());
+                pstmt.setLong(3, checkpoint.getLineNumber());
+                pstmt.setLong(4, checkpoint.getFileModified());
+                pstmt.setLong(5, System.currentTimeMillis());
+                pstmt.executeUpdate();
+                return rows;
+            }));
+            invalidate(characters);
+            return inserted;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to insert characters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the batched inserts of {@link #insertBatch(Collection, int)} on the writer's connection.
+     *
+     * @param conn       the writer's connection
+     * @param characters the characters to insert
+     * @param chunkSize  number of rows per {@code executeBatch} call
+     * @return the number of rows inserted
+     * @throws SQLException if an insert fails
+     */
+    private static int insertRows(PooledConnection conn, Collection<PCharacter> characters, int chunkSize)
+            throws SQLException {
+        PreparedStatement pstmt = conn.prepare(INSERT_SQL);
+        try {
+            int pending = 0;
+            for (PCharacter pc : characters) {
+                bindRow(pstmt, requireId(pc.getId()), pc.getName(), pc.getJob(),
+                        pc.getLevel(), pc.getHp(), pc.getMp(), pc.isActive());
+                pstmt.addBatch();
+
+                if (++pending == chunkSize) {
+                    pstmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                pstmt.executeBatch();
+            }
+            return characters.size();
+        } catch (SQLException | RuntimeException e) {
+            // The statement is cached, so don't leave half a batch queued on it
+            pstmt.clearBatch();
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the cached copies of characters that were just written in bulk.
+     *
+     * @param characters the characters written
+     */
+    private void invalidate(Collection<PCharacter> characters) {
+        CharacterCache c = cache;
+        if (c != null) {
+            for (PCharacter pc : characters) {
+                c.invalidate(pc.getNumericId());
+            }
+        }
+    }
+
+    /**
+     * Returns the stored checkpoint of an interrupted import.
+     *
+     * @param fingerprint identifies the file being imported
+     * @return the checkpoint, or {@code null} if there is none
+     */
+    public ImportCheckpoint getImportCheckpoint(String fingerprint) {
+        String sql = "SELECT byte_offset, line_number, file_modified FROM import_checkpoints WHERE fingerprint = ?";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setString(1, fingerprint);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new ImportCheckpoint(fingerprint, rs.getLong(1), rs.getLong(2), rs.getLong(3));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to read import checkpoint: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the checkpoint of an import, typically once it has finished or failed, or
+     * when it no longer matches the file.
+     *
+     * @param fingerprint identifies the imported file
+     */
+    public void deleteImportCheckpoint(String fingerprint) {
+        try {
+            await(writer.submit(conn -> {
+                PreparedStatement pstmt = conn.prepare("DELETE FROM import_checkpoints WHERE fingerprint = ?");
+                pstmt.setString(1, fingerprint);
+                return pstmt.executeUpdate();
+            }));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to delete import checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts or updates many characters by ID in a single transaction, using
+     * {@link #DEFAULT_BATCH_CHUNK_SIZE} rows per JDBC batch.
+     * <p>
+     * Rows whose ID is free are inserted. Rows whose ID is taken are handled by {@code policy}:
+     * skipped, overwritten, or merged keeping the higher level. Rows that would not change
+     * the stored character are not written at all.
+     *
+     * @param characters the characters to write; their IDs must be numeric
+     * @param policy     what to do with IDs that already exist
+     * @return the number of rows actually inserted or changed
+     * @throws IllegalArgumentException if an ID is not numeric
+     * @throws RuntimeException         if the write fails; in that case nothing is written
+     */
+    public int upsertBatch(Collection<PCharacter> characters, ConflictPolicy policy) {
+        if (characters.isEmpty()) {
+            return 0;
+        }
+        flushPending();
+
+        try {
+            int written = await(writer.submit(conn -> {
+                PreparedStatement pstmt = conn.prepare(policy.sql());
+                try {
+                    int changed = 0;
+                    int pending = 0;
+                    for (PCharacter pc : characters) {
+                        bindRow(pstmt, requireId(pc.getId()), pc.getName(), pc.getJob(),
+                                pc.getLevel(), pc.getHp(), pc.getMp(), pc.isActive());
+                        pstmt.addBatch();
+
+                        if (++pending == DEFAULT_BATCH_CHUNK_SIZE) {
+                            changed += countChanges(pstmt.executeBatch());
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        changed += countChanges(pstmt.executeBatch());
+                    }
+                    return changed;
+                } catch (SQLException | RuntimeException e) {
+                    pstmt.clearBatch();
+                    throw e;
+                }
+            }));
+            invalidate(characters);
+            return written;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to upsert characters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds up the update counts of a JDBC batch (rows skipped by a conflict clause count 0).
+     *
+     * @param counts the result of {@link PreparedStatement#executeBatch()}
+     * @return the number of rows changed
+     */
+    private static int countChanges(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Updates a single column in the {@code characters} table for rows matching the given condition.
+     * <p>
+     * Note: {@code field} and {@code whereField} are interpolated directly into the SQL,
+     * so they should only come from trusted sources (e.g. constants, not user input).
+     * Values are still parameterized. Job names, in either position, are translated to
+     * their stored codes; a {@code WHERE job=} condition with an unknown job matches nothing.
+     *
+     * @param field      name of the column to update
+     * @param value      new value to set
+     * @param whereField column used in the WHERE clause
+     * @param whereValue value used in the WHERE clause
+     */
+    public void update(String field, String value, String whereField, String whereValue) {
+        flushPending();
+        String sql = "UPDATE characters SET " + field + "=? WHERE " + whereField + "=?";
+        try {
+            await(writer.submit(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                if (isJobColumn(field)) {
+                    pstmt.setInt(1, jobCode(value));
+                } else {
+                    pstmt.setString(1, value);
+                }
+                bindWhereValue(pstmt, 2, whereField, whereValue);
+                return pstmt.executeUpdate();
+            }).whenComplete((count, e) -> invalidate(whereField, whereValue)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // In a real app you might want to log and/or propagate this
+        }
+    }
+
+    /**
+     * Applies a {@link CharacterPatch} to one character in a single {@code UPDATE}.
+     * <p>
+     * Only the columns set on the patch are written, each bound with its native type
+     * (integers as integers, not strings).
+     * <p>
+     * In write-behind mode (see {@link #enableWriteBehind(long, int)}) the patch is only
+     * queued; the method then returns {@code true} without checking that the ID exists,
+     * and a patch for an unknown ID updates nothing when it is flushed.
+     *
+     * @param id    ID of the character to update
+     * @param patch the fields to change
+     * @return {@code true} if a row was updated (or the patch was queued), {@code false} if
+     *         no character has that ID or the patch is empty
+     */
+    public boolean update(long id, CharacterPatch patch) {
+        try {
+            return await(queueUpdate(id, patch));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Queues a {@link CharacterPatch} for one character and returns immediately.
+     * <p>
+     * In write-behind mode the patch is buffered and the future is already complete.
+     *
+     * @param id    ID of the character to update
+     * @param patch the fields to change; later changes to this object are not picked up
+     * @return a future completed with {@code true} once the row is committed (or the patch
+     *         was buffered), or {@code false} if no character has that ID or the patch is empty
+     */
+    public CompletableFuture<Boolean> updateAsync(long id, CharacterPatch patch) {
+        return writer.handOff(queueUpdate(id, patch));
+    }
+
+    /**
+     * Queues a {@link CharacterPatch}; the future may complete on the writer thread.
+     *
+     * @param id    ID of the character to update
+     * @param patch the fields to change
+     * @return the write's future
+     * @see #updateAsync(long, CharacterPatch)
+     */
+    private CompletableFuture<Boolean> queueUpdate(long id, CharacterPatch patch) {
+        if (patch.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        WriteBehindBuffer buffer = writeBehind;
+        if (buffer != null) {
+            buffer.add(id, patch);
+            return CompletableFuture.completedFuture(true);
+        }
+        CharacterPatch snapshot = new CharacterPatch().mergeFrom(patch);
+        return submit(id, conn -> {
+            PreparedStatement pstmt = conn.prepare(snapshot.toSql());
+
+            int idIndex = snapshot.bind(pstmt);
+            pstmt.setLong(idIndex, id);
+            return pstmt.executeUpdate() > 0;
+        });
+    }
+
+    /**
+     * Writes a set of patches in one transaction. Used by {@link WriteBehindBuffer}.
+     * <p>
+     * Each patch runs in its own savepoint. A patch the database rejects (e.g. through a
+     * constraint or trigger) is rolled back and returned, and the others are still written;
+     * retrying it would only fail again, so it is up to the caller to report and drop it.
+     *
+     * @param patches the patches to apply, by character ID
+     * @return the patches that were rejected, by character ID, with the reason; empty if all were written
+     * @throws RuntimeException if the transaction itself fails; in that case nothing is written
+     */
+    Map<Long, Exception> applyPatches(Map<Long, CharacterPatch> patches) {
+        Map<Long, Exception> rejected;
+        try {
+            rejected = await(writer.submit(conn -> {
+                Map<Long, Exception> failed = new LinkedHashMap<>();
+                for (Map.Entry<Long, CharacterPatch> entry : patches.entrySet()) {
+                    CharacterPatch patch = entry.getValue();
+                    conn.prepare("SAVEPOINT patch").execute();
+                    try {
+                        PreparedStatement pstmt = conn.prepare(patch.toSql());
+                        pstmt.setLong(patch.bind(pstmt), entry.getKey());
+                        pstmt.executeUpdate();
+                    } catch (SQLException | RuntimeException e) {
+                        conn.prepare("ROLLBACK TO patch").execute();
+                        failed.put(entry.getKey(), e);
+                    }
+                    conn.prepare("RELEASE patch").execute();
+                }
+                return failed;
+            }));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to write buffered updates: " + e.getMessage());
+        }
+
+        CharacterCache c = cache;
+        if (c != null) {
+            for (Long id : patches.keySet()) {
+                c.invalidate(id);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Deletes rows from the {@code characters} table where the given column
+     * matches the specified value.
+     * <p>
+     * As with {@link #update(String, String, String, String)}, {@code whereField}
+     * should come from a trusted source to avoid SQL injection.
+     *
+     * @param whereField the column name to use in the WHERE clause
+     * @param whereValue the value to match for deletion
+     */
+    public void delete(String whereField, String whereValue) {
+        flushPending();
+        String sql = "DELETE FROM characters WHERE " + whereField + "=?";
+        try {
+            await(writer.submit(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                bindWhereValue(pstmt, 1, whereField, whereValue);
+                return pstmt.executeUpdate();
+            }).whenComplete((count, e) -> invalidate(whereField, whereValue)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reserves a block of IDs from a persisted sequence and returns the first one.
+     * <p>
+     * The sequence row is created on first use. The block always starts after the
+     * highest ID already in {@code characters} within {@code [minId, maxId]} (a cheap rowid
+     * range lookup), and the sequence is advanced past the block in the same transaction, so
+     * two callers (even in different processes) never receive overlapping blocks. Rows stored
+     * with explicit IDs outside the range do not move the sequence, so one far-out ID cannot
+     * use up the whole range. The block is cut off at {@code maxId}.
+     *
+     * @param sequence  name of the sequence row
+     * @param blockSize number of IDs to reserve
+     * @param minId     smallest ID the sequence may start from
+     * @param maxId     largest ID the sequence may hand out
+     * @return the first ID of the reserved block, or a value greater than {@code maxId} if the
+     *         range is used up (the sequence is then left unchanged)
+     * @throws RuntimeException if the reservation fails
+     */
+    public long reserveIdBlock(String sequence, int blockSize, long minId, long maxId) {
+        try {
+            return await(writer.submit(conn -> {
+                // Writing first takes the write lock up front, so the reads below can't go stale
+                PreparedStatement create = conn.prepare(
+                        "INSERT INTO id_sequences (name,next_id) VALUES (?,?) ON CONFLICT(name) DO NOTHING");
+                create.setString(1, sequence);
+                create.setLong(2, minId);
+                create.executeUpdate();
+
+                long start = minId;
+                PreparedStatement current = conn.prepare("SELECT next_id FROM id_sequences WHERE name = ?");
+                current.setString(1, sequence);
+                try (ResultSet rs = current.executeQuery()) {
+                    if (rs.next()) {
+                        start = Math.max(start, rs.getLong(1));
+                    }
+                }
+
+                PreparedStatement highest = conn.prepare("SELECT MAX(id) FROM characters WHERE id BETWEEN ? AND ?");
+                highest.setLong(1, minId);
+                highest.setLong(2, maxId);
+                try (ResultSet rs = highest.executeQuery()) {
+                    if (rs.next() && rs.getObject(1) != null) {
+                        start = Math.max(start, rs.getLong(1) + 1);
+                    }
+                }
+
+                if (start > maxId) {
+                    return start;
+                }
+                PreparedStatement advance = conn.prepare("UPDATE id_sequences SET next_id = ? WHERE name = ?");
+                advance.setLong(1, Math.min(start + blockSize, maxId + 1));
+                advance.setString(2, sequence);
+                advance.executeUpdate();
+
+                return start;
+            }));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to reserve IDs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether a character with the given ID exists in the database.
+     *
+     * @param id the character ID to look for
+     * @return {@code true} if a row with that ID exists, {@code false} otherwise
+     *         (including when {@code id} is not numeric)
+     */
+    public boolean idExists(String id) {
+        long numericId = PCharacter.parseId(id);
+        return numericId >= 0 && idExists(numericId);
+    }
+
+    /**
+     * Checks whether a character with the given numeric ID exists in the database.
+     *
+     * @param id the character ID to look for
+     * @return {@code true} if a row with that ID exists, {@code false} otherwise
+     */
+    public boolean idExists(long id) {
+        CharacterCache c = cache;
+        if (c != null && c.contains(id)) {
+            return true;
+        }
+        String sql = "SELECT 1 FROM characters WHERE id = ?";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+
+            pstmt.setLong(1, id);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // rs.next() will be true if at least one row is returned
+                return rs.next();
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Retrieves a single {@link PCharacter} from the database by ID.
+     *
+     * @param id the ID of the character to fetch
+     * @return a {@link PCharacter} instance if found, or {@code null} if not found
+     *         (including when {@code id} is not numeric)
+     */
+    public PCharacter selectById(String id) {
+        long numericId = PCharacter.parseId(id);
+        return numericId >= 0 ? selectById(numericId) : null;
+    }
+
+    /**
+     * Retrieves a single {@link PCharacter} from the database by numeric ID.
+     * <p>
+     * This is a direct rowid lookup in the table B-tree, skipped entirely when the
+     * character is in the attached {@link CharacterCache}.
+     *
+     * @param id the ID of the character to fetch
+     * @return a {@link PCharacter} instance if found, or {@code null} if not found
+     */
+    public PCharacter selectById(long id) {
+        CharacterCache c = cache;
+        long generation = 0;
+        if (c != null) {
+            PCharacter cached = c.get(id);
+            if (cached != null) {
+                return withPendingChanges(cached);
+            }
+            generation = c.generation();
+        }
+        return load(id, c, generation);
+    }
+
+    /**
+     * Retrieves a single {@link PCharacter} straight from the database, ignoring the
+     * attached {@link CharacterCache}.
+     * <p>
+     * Meant for read-modify-write code (e.g. adding levels to the stored level): another
+     * process may have changed the row since it was cached, and writing back a value
+     * computed from a stale copy would silently undo that change. The fresh row replaces
+     * the cached one. Changes still buffered in write-behind mode are applied, as they
+     * are newer than the row.
+     *
+     * @param id the ID of the character to fetch
+     * @return a {@link PCharacter} instance if found, or {@code null} if not found
+     */
+    public PCharacter selectByIdFresh(long id) {
+        CharacterCache c = cache;
+        return load(id, c, c != null ? c.generation() : 0);
+    }
+
+    /**
+     * Reads one character from the database and, if a cache is given, stores it there.
+     *
+     * @param id         the ID of the character to fetch
+     * @param c          the cache to fill, or {@code null}
+     * @param generation the cache generation read before the query (see {@link CharacterCache#put})
+     * @return the character with any buffered changes applied, or {@code null} if not found
+     */
+    private PCharacter load(long id, CharacterCache c, long generation) {
+        String sql = "SELECT * FROM characters WHERE id = ?";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+
+            pstmt.setLong(1, id);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    PCharacter pc = toCharacter(rs);
+                    if (c != null) {
+                        c.put(id, pc, generation);
+                    }
+                    return withPendingChanges(pc);
+                }
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        // Null here means "not found" or "error" – caller should handle accordingly
+        return null;
+    }
 
     /**
-     * JDBC connection string pointing to the SQLite database file.
+     * Retrieves many characters at once.
      * <p>
-     * Example: {@code jdbc:sqlite:C:\path\to\project\ffgame.db}
+     * IDs are looked up with {@code WHERE id IN (...)} queries of a few fixed sizes (see
+     * {@link #IN_LIST_SIZES}), the last one padded by repeating an ID, so a thousand IDs cost
+     * two round-trips and every query shape is prepared only once per connection.
+     * Characters already in the attached {@link CharacterCache} are not queried at all.
+     *
+     * @param ids the IDs to fetch; duplicates and non-numeric IDs are allowed
+     * @return the characters found, keyed by the ID string as given, in the order given;
+     *         IDs with no character (or that are not numeric) are left out. Never {@code null}.
+     * @throws RuntimeException if the characters cannot be read
      */
-    private final String CONNECTION_STRING;
+    public Map<String, PCharacter> selectByIds(Collection<String> ids) {
+        Map<Long, PCharacter> byId = new HashMap<>();
+        List<Long> toQuery = new ArrayList<>();
+        CharacterCache c = cache;
+        long generation = c != null ? c.generation() : 0;
+
+        for (String id : ids) {
+            long numericId = PCharacter.parseId(id);
+            if (numericId < 0 || byId.containsKey(numericId)) {
+                continue;
+            }
+            PCharacter cached = c != null ? c.get(numericId) : null;
+            byId.put(numericId, cached);
+            if (cached == null) {
+                toQuery.add(numericId);
+            }
+        }
+
+        try {
+            selectIn("*", toQuery, rs -> {
+                PCharacter pc = toCharacter(rs);
+                if (c != null) {
+                    c.put(pc.getNumericId(), pc, generation);
+                }
+                byId.put(pc.getNumericId(), pc);
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to read characters: " + e.getMessage());
+        }
+
+        Map<String, PCharacter> found = new LinkedHashMap<>();
+        Set<Long> handedOut = new HashSet<>();
+        for (String id : ids) {
+            long numericId = PCharacter.parseId(id);
+            PCharacter pc = byId.get(numericId);
+            if (pc != null) {
+                // Each key gets its own object, even when two strings name the same character
+                found.put(id, withPendingChanges(handedOut.add(numericId) ? pc : new PCharacter(pc)));
+            }
+        }
+        return found;
+    }
 
     /**
-     * Default constructor – uses a SQLite database named {@code ffgame.db}
-     * in the project root directory.
+     * Returns the IDs from {@code ids} that have no character, using the same chunked
+     * {@code IN (...)} queries as {@link #selectByIds(Collection)} (but reading only the rowid).
+     *
+     * @param ids the IDs to check
+     * @return the missing IDs (including non-numeric ones), as given and in the order given
+     * @throws RuntimeException if the IDs cannot be checked
      */
-    public PCharacters() {
-        String projectRoot = System.getProperty("user.dir");
+    public Set<String> missingIds(Collection<String> ids) {
+        Set<Long> present = new HashSet<>();
+        Set<Long> unique = new LinkedHashSet<>();
+        for (String id : ids) {
+            long numericId = PCharacter.parseId(id);
+            if (numericId >= 0) {
+                unique.add(numericId);
+            }
+        }
 
-        // Try /app/ffgame.db first (Docker environment)
-        File dbFile = new File(projectRoot + File.separator + "ffgame.db");
+        try {
+            selectIn("id", new ArrayList<>(unique), rs -> present.add(rs.getLong(1)));
+        } catch (SQLException e) {
+            // Reporting every ID as missing would make callers act on rows that do exist
+            e.printStackTrace();
+            throw new RuntimeException("Failed to check character IDs: " + e.getMessage());
+        }
 
-        // Fall back to local development path
-        if (!dbFile.exists()) {
-            dbFile = new File(projectRoot + File.separator + "src"
-                    + File.separator + "main"
-                    + File.separator + "ffgame.db");
+        Set<String> missing = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (!present.contains(PCharacter.parseId(id))) {
+                missing.add(id);
+            }
         }
+        return missing;
+    }
 
-        this.CONNECTION_STRING = "jdbc:sqlite:" + dbFile.getAbsolutePath();
-        initializeDatabase();
+    /**
+     * Checks whether every ID in {@code ids} has a character.
+     *
+     * @param ids the IDs to check
+     * @return {@code true} if none is missing (also for an empty collection)
+     * @throws RuntimeException if the IDs cannot be checked
+     */
+    public boolean existsAll(Collection<String> ids) {
+        return missingIds(ids).isEmpty();
     }
 
     /**
-     * Constructor that allows passing a custom database path.
+     * Runs {@code SELECT columns FROM characters WHERE id IN (...)} over {@code ids} in chunks,
+     * passing each row to {@code handler}.
      * <p>
-     * This is useful for tests or when you want to use a different DB file
-     * than the default one in the project root.
+     * Each chunk uses the smallest of {@link #IN_LIST_SIZES} that fits, padded with the
+     * chunk's last ID, so only a handful of distinct statements are ever prepared.
      *
-     * @param databasePath full path to the SQLite database file
+     * @param columns the column list to select
+     * @param ids     the IDs to look up (no duplicates needed, but they are harmless)
+     * @param handler called once per row found
+     * @throws SQLException if a query fails
      */
-    public PCharacters(String databasePath) {
-        this.CONNECTION_STRING = "jdbc:sqlite:" + databasePath;
-        initializeDatabase();
+    private void selectIn(String columns, List<Long> ids, RowHandler handler) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (PooledConnection conn = pool.borrow()) {
+            int largest = IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+            for (int from = 0; from < ids.size(); from += largest) {
+                int count = Math.min(largest, ids.size() - from);
+                int size = largest;
+                for (int candidate : IN_LIST_SIZES) {
+                    if (candidate >= count) {
+                        size = candidate;
+                        break;
+                    }
+                }
+
+                StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+                        .append(" FROM characters WHERE id IN (?");
+                sql.append(",?".repeat(size - 1)).append(')');
+                PreparedStatement pstmt = conn.prepare(sql.toString());
+                for (int i = 0; i < size; i++) {
+                    pstmt.setLong(i + 1, ids.get(from + Math.min(i, count - 1)));
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        handler.accept(rs);
+                    }
+                }
+            }
+        }
     }
 
     /**
-     * Ensures that the {@code characters} table exists in the database.
-     * <p>
-     * If the table does not exist, it will be created. If it already exists,
-     * this method has no effect.
+     * Callback for one row of a query; unlike {@link Consumer} it may throw {@link SQLException}.
      */
-    public void initializeDatabase() {
-        String sql = "CREATE TABLE IF NOT EXISTS characters (" +
-                "id TEXT PRIMARY KEY, " +
-                "name TEXT NOT NULL, " +
-                "job TEXT NOT NULL, " +
-                "level INTEGER NOT NULL, " +
-                "hp INTEGER NOT NULL, " +
-                "mp INTEGER NOT NULL, " +
-                "isActive INTEGER NOT NULL)";
-        execute(sql);
+    @FunctionalInterface
+    private interface RowHandler {
+
+        /**
+         * Handles the current row.
+         *
+         * @param rs the result set, positioned on the row
+         * @throws SQLException if a column cannot be read
+         */
+        void accept(ResultSet rs) throws SQLException;
     }
 
     /**
-     * Executes a SQL statement that does not return a result set
-     * (e.g. CREATE TABLE, ALTER TABLE).
+     * Deletes the character with the given numeric ID.
      *
-     * @param sql the SQL string to execute
+     * @param id the ID of the character to delete
+     * @return {@code true} if a row was deleted
      */
-    private void execute(String sql) {
-        // Try-with-resources so Connection and Statement are automatically closed
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+    public boolean deleteById(long id) {
+        try {
+            return await(queueDelete(id));
         } catch (SQLException e) {
-            // For infrastructure-style methods, logging the stack trace is usually enough
             e.printStackTrace();
         }
+        return false;
     }
 
     /**
-     * Inserts a new character row into the {@code characters} table.
+     * Queues the deletion of one character and returns immediately.
      *
-     * @param id       unique identifier for the character
-     * @param name     character name
-     * @param job      character job (e.g. "Warrior", "Mage")
-     * @param level    character level
-     * @param hp       hit points
-     * @param mp       magic points
-     * @param isActive whether this character is currently active
-     * @throws RuntimeException if the insert fails for any reason
+     * @param id the ID of the character to delete
+     * @return a future completed with {@code true} once the deletion is committed,
+     *         or {@code false} if no character has that ID
      */
-    public void insert(String id, String name, String job, int level, int hp, int mp, boolean isActive) {
-        String sql = "INSERT INTO characters (id,name,job,level,hp,mp,isActive) VALUES (?,?,?,?,?,?,?)";
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, id);
-            pstmt.setString(2, name);
-            pstmt.setString(3, job);
-            pstmt.setInt(4, level);
-            pstmt.setInt(5, hp);
-            pstmt.setInt(6, mp);
-            pstmt.setInt(7, isActive ? 1 : 0);
+    public CompletableFuture<Boolean> deleteByIdAsync(long id) {
+        return writer.handOff(queueDelete(id));
+    }
 
-            pstmt.executeUpdate();
+    /**
+     * Queues the deletion of one character; the future may complete on the writer thread.
+     *
+     * @param id the ID of the character to delete
+     * @return the write's future
+     * @see #deleteByIdAsync(long)
+     */
+    private CompletableFuture<Boolean> queueDelete(long id) {
+        flushPending();
+        return submit(id, conn -> {
+            PreparedStatement pstmt = conn.prepare("DELETE FROM characters WHERE id = ?");
+
+            pstmt.setLong(1, id);
+            return pstmt.executeUpdate() > 0;
+        });
+    }
+
+    /**
+     * Retrieves all characters from the {@code characters} table.
+     *
+     * @return a list of all {@link PCharacter} instances; never {@code null}
+     */
+    public ArrayList<PCharacter> selectAll() {
+        ArrayList<PCharacter> list = new ArrayList<>();
+        forEach(list::add);
+        return list;
+    }
+
+    /**
+     * Passes every character to {@code action}, one row at a time, without building a list.
+     * <p>
+     * The cursor stays open (holding one pooled connection) while {@code action} runs and is
+     * closed as soon as the last row has been handled or {@code action} throws, so memory use
+     * does not grow with the size of the table.
+     *
+     * @param action callback invoked for each character, in ID order
+     */
+    public void forEach(Consumer<? super PCharacter> action) {
+        flushPending();
+        String sql = "SELECT * FROM characters ORDER BY id";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(toCharacter(rs));
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            // Bubble up as unchecked so callers can choose whether to catch it
-            throw new RuntimeException("Failed to insert character: " + e.getMessage());
         }
     }
 
     /**
-     * Updates a single column in the {@code characters} table for rows matching the given condition.
+     * Passes the raw column values of every row to {@code visitor}, in ID order.
      * <p>
-     * Note: {@code field} and {@code whereField} are interpolated directly into the SQL,
-     * so they should only come from trusted sources (e.g. constants, not user input).
-     * Values are still parameterized.
+     * Unlike {@link #forEach(Consumer)}, no {@link PCharacter} is built: names are passed as
+     * the UTF-8 bytes SQLite stores and jobs as their codes, so a caller copying the values
+     * into arrays allocates almost nothing per row.
      *
-     * @param field      name of the column to update
-     * @param value      new value to set
-     * @param whereField column used in the WHERE clause
-     * @param whereValue value used in the WHERE clause
+     * @param visitor callback invoked for each row
+     * @throws RuntimeException if the rows cannot be read
      */
-    public void update(String field, String value, String whereField, String whereValue) {
-        String sql = "UPDATE characters SET " + field + "=? WHERE " + whereField + "=?";
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    public void forEachRow(CharacterRowVisitor visitor) {
+        flushPending();
+        String sql = "SELECT * FROM characters ORDER BY id";
 
-            pstmt.setString(1, value);
-            pstmt.setString(2, whereValue);
-            pstmt.executeUpdate();
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitor.row(rs.getLong(COL_ID), rs.getBytes(COL_NAME), rs.getInt(COL_JOB),
+                            rs.getInt(COL_LEVEL), rs.getInt(COL_HP), rs.getInt(COL_MP), rs.getInt(COL_ACTIVE) == 1);
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            // In a real app you might want to log and/or propagate this
+            throw new RuntimeException("Failed to read characters: " + e.getMessage());
         }
     }
 
     /**
-     * Deletes rows from the {@code characters} table where the given column
-     * matches the specified value.
+     * Returns a lazily populated stream over every character, in ID order.
      * <p>
-     * As with {@link #update(String, String, String, String)}, {@code whereField}
-     * should come from a trusted source to avoid SQL injection.
+     * Rows are read from an open cursor as the stream is consumed. The stream holds a pooled
+     * connection until it is closed, so it <b>must</b> be closed, ideally with try-with-resources:
+     * <pre>
+     * try (Stream&lt;PCharacter&gt; characters = db.stream()) {
+     *     characters.filter(PCharacter::isActive).forEach(System.out::println);
+     * }
+     * </pre>
      *
-     * @param whereField the column name to use in the WHERE clause
-     * @param whereValue the value to match for deletion
+     * @return a stream of characters that releases its connection on {@link Stream#close()}
+     * @throws RuntimeException if the query cannot be started, or (from the stream)
+     *                          if a row cannot be read
      */
-    public void delete(String whereField, String whereValue) {
-        String sql = "DELETE FROM characters WHERE " + whereField + "=?";
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    public Stream<PCharacter> stream() {
+        flushPending();
+        String sql = "SELECT * FROM characters ORDER BY id";
+        PooledConnection conn = null;
+        try {
+            conn = pool.borrow();
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            ResultSet rs = pstmt.executeQuery();
 
-            pstmt.setString(1, whereValue);
-            pstmt.executeUpdate();
+            Spliterator<PCharacter> rows = new Spliterators.AbstractSpliterator<>(
+                    Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super PCharacter> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(toCharacter(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new RuntimeException("Failed to read characters: " + e.getMessage(), e);
+                    }
+                }
+            };
+
+            PooledConnection borrowed = conn;
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                } finally {
+                    borrowed.close();
+                }
+            });
         } catch (SQLException e) {
+            if (conn != null) {
+                conn.close();
+            }
             e.printStackTrace();
+            throw new RuntimeException("Failed to read characters: " + e.getMessage());
         }
     }
 
     /**
-     * Checks whether a character with the given ID exists in the database.
+     * Retrieves every character matching the filter, in ID order.
+     * <p>
+     * The conditions are evaluated by SQLite using the secondary indexes, so only
+     * matching rows are read and turned into {@link PCharacter} objects.
      *
-     * @param id the character ID to look for
-     * @return {@code true} if a row with that ID exists, {@code false} otherwise
+     * @param filter the conditions to match; an empty filter matches every character
+     * @return the matching characters; never {@code null}
      */
-    public boolean idExists(String id) {
-        String sql = "SELECT id FROM characters WHERE id = ?";
+    public List<PCharacter> select(CharacterFilter filter) {
+        flushPending();
+        List<PCharacter> list = new ArrayList<>();
 
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, id);
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(filter.toSql());
+            filter.bind(pstmt);
 
             try (ResultSet rs = pstmt.executeQuery()) {
-                // rs.next() will be true if at least one row is returned
-                return rs.next();
+                while (rs.next()) {
+                    list.add(toCharacter(rs));
+                }
             }
-
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return false;
+        return list;
     }
 
     /**
-     * Retrieves a single {@link PCharacter} from the database by ID.
+     * Retrieves every character with the given job, in ID order.
      *
-     * @param id the ID of the character to fetch
-     * @return a {@link PCharacter} instance if found, or {@code null} if not found
+     * @param job the job to match exactly (as stored, e.g. {@code "Dragoon"})
+     * @return the matching characters; never {@code null}
      */
-    public PCharacter selectById(String id) {
-        String sql = "SELECT * FROM characters WHERE id = ?";
+    public List<PCharacter> selectByJob(String job) {
+        return select(new CharacterFilter().job(job));
+    }
+
+    /**
+     * Retrieves every character whose level is between {@code minLevel} and {@code maxLevel}
+     * (both inclusive), in ID order.
+     *
+     * @param minLevel the lowest accepted level
+     * @param maxLevel the highest accepted level
+     * @return the matching characters; never {@code null}
+     */
+    public List<PCharacter> selectByLevelRange(int minLevel, int maxLevel) {
+        return select(new CharacterFilter().minLevel(minLevel).maxLevel(maxLevel));
+    }
+
+    /**
+     * Retrieves every character currently in the party, in ID order.
+     *
+     * @return the active characters; never {@code null}
+     */
+    public List<PCharacter> selectActiveParty() {
+        return select(new CharacterFilter().active(true));
+    }
 
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Returns up to {@code limit} characters that come after {@code after} in the given order.
+     * <p>
+     * This uses keyset (seek) pagination: instead of {@code OFFSET}, the query starts right
+     * after the previous page's last row, using an index, so page 10,000 costs the same as page 1.
+     * To walk the whole table, pass {@code null} for the first page and then the last element
+     * of each page, until an empty or short page comes back:
+     * <pre>
+     * List&lt;PCharacter&gt; page = db.selectPage(null, 100, SortColumn.LEVEL);
+     * while (!page.isEmpty()) {
+     *     // ... use page ...
+     *     page = db.selectPage(page.get(page.size() - 1), 100, SortColumn.LEVEL);
+     * }
+     * </pre>
+     *
+     * @param after last character of the previous page, or {@code null} for the first page
+     * @param limit maximum number of characters to return (at least 1)
+     * @param sort  the ordering to page through
+     * @return the next page, possibly empty; never {@code null}
+     * @throws IllegalArgumentException if {@code limit} is less than 1
+     */
+    public List<PCharacter> selectPage(PCharacter after, int limit, SortColumn sort) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        flushPending();
+        List<PCharacter> page = new ArrayList<>(Math.min(limit, 1024));
 
-            pstmt.setString(1, id);
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt;
+            int limitIndex = 1;
+            if (after == null) {
+                pstmt = conn.prepare(sort.firstPageSql());
+            } else {
+                pstmt = conn.prepare(sort.nextPageSql());
+                limitIndex = sort.bindKey(pstmt, after);
+            }
+            pstmt.setInt(limitIndex, limit);
 
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    // Build the domain object directly from the result set
-                    return new PCharacter(
-                            rs.getString("id"),
-                            rs.getString("name"),
-                            rs.getString("job"),
-                            rs.getInt("level"),
-                            rs.getInt("hp"),
-                            rs.getInt("mp"),
-                            rs.getInt("isActive") == 1
-                    );
+                while (rs.next()) {
+                    page.add(toCharacter(rs));
                 }
             }
-
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        // Null here means "not found" or "error" – caller should handle accordingly
-        return null;
+
+        return page;
     }
 
     /**
-     * Retrieves all characters from the {@code characters} table.
+     * Checks whether the {@code characters} table has no rows, without counting them.
      *
-     * @return a list of all {@link PCharacter} instances; never {@code null}
+     * @return {@code true} if there are no characters
      */
-    public ArrayList<PCharacter> selectAll() {
-        ArrayList<PCharacter> list = new ArrayList<>();
-        String sql = "SELECT * FROM characters";
+    public boolean isEmpty() {
+        String sql = "SELECT 1 FROM characters LIMIT 1";
 
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                PCharacter pc = new PCharacter(
-                        rs.getString("id"),
-                        rs.getString("name"),
-                        rs.getString("job"),
-                        rs.getInt("level"),
-                        rs.getInt("hp"),
-                        rs.getInt("mp"),
-                        rs.getInt("isActive") == 1
-                );
-                list.add(pc);
-            }
+        try (PooledConnection conn = pool.borrow();
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
+            return !rs.next();
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return list;
+        return true;
     }
 
     /**
@@ -277,32 +1768,200 @@ public class PCharacters {
      * @param id the ID of the character to print
      */
     public void printById(String id) {
-        String sql = "SELECT * FROM characters WHERE id = ?";
+        PCharacter pc = selectById(id);
+        if (pc != null) {
+            // Relies on PCharacter.toString() for human-readable output
+            System.out.println(pc);
+        } else {
+            System.out.println("No character found with ID: " + id);
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Parses a character ID, rejecting anything that is not a non-negative integer.
+     *
+     * @param id the ID as text
+     * @return the numeric ID
+     * @throws IllegalArgumentException if {@code id} is not numeric
+     */
+    private static long requireId(String id) {
+        long numericId = PCharacter.parseId(id);
+        if (numericId < 0) {
+            throw new IllegalArgumentException("Invalid character ID: " + id);
+        }
+        return numericId;
+    }
 
-            pstmt.setString(1, id);
+    /**
+     * Queues a write for one character on the writer thread. The returned future
+     * completes only after that character's cache entry has been dropped.
+     *
+     * @param id  the character the write touches
+     * @param op  the write
+     * @param <T> the result type
+     * @return the write's future
+     */
+    private <T> CompletableFuture<T> submit(long id, SingleWriter.WriteOp<T> op) {
+        return writer.submit(op).whenComplete((result, e) -> invalidate(id));
+    }
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    // Relies on PCharacter.toString() for human-readable output
-                    System.out.println(new PCharacter(
-                            rs.getString("id"),
-                            rs.getString("name"),
-                            rs.getString("job"),
-                            rs.getInt("level"),
-                            rs.getInt("hp"),
-                            rs.getInt("mp"),
-                            rs.getInt("isActive") == 1
-                    ));
-                } else {
-                    System.out.println("No character found with ID: " + id);
-                }
+    /**
+     * Waits for a queued write to be committed, unwrapping its failure.
+     *
+     * @param future the write's future
+     * @param <T>    the result type
+     * @return the write's result
+     * @throws SQLException          if the write or its commit failed, or the wait was interrupted
+     * @throws IllegalStateException if called from the writer thread, where it would wait forever
+     * @throws RuntimeException      if the write threw one (e.g. an invalid ID)
+     */
+    private <T> T await(CompletableFuture<T> future) throws SQLException {
+        if (writer.isWriterThread()) {
+            throw new IllegalStateException("Synchronous writes cannot be made from the database writer thread");
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
             }
+            throw new SQLException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database writer", e);
+        }
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Binds the seven columns of a character row, in table order.
+     *
+     * @param pstmt    an insert statement with seven placeholders
+     * @param id       character ID
+     * @param name     character name
+     * @param job      character job
+     * @param level    character level
+     * @param hp       hit points
+     * @param mp       magic points
+     * @param isActive party flag
+     * @throws SQLException if a value cannot be bound
+     */
+    private static void bindRow(PreparedStatement pstmt, long id, String name, String job,
+                                int level, int hp, int mp, boolean isActive) throws SQLException {
+        pstmt.setLong(1, id);
+        pstmt.setString(2, name);
+        pstmt.setInt(3, jobCode(job));
+        pstmt.setInt(4, level);
+        pstmt.setInt(5, hp);
+        pstmt.setInt(6, mp);
+        pstmt.setInt(7, isActive ? 1 : 0);
+    }
+
+    /**
+     * Indicates whether a column name given to a generic update or delete is {@code job}.
+     *
+     * @param column the column name
+     * @return {@code true} for the job column
+     */
+    private static boolean isJobColumn(String column) {
+        return column.trim().equalsIgnoreCase("job");
+    }
+
+    /**
+     * Binds the value of a generic {@code WHERE column=?} condition, translating a job
+     * name to its code. An unknown job is bound as {@code 0}, which no job uses.
+     *
+     * @param pstmt      the statement
+     * @param index      the parameter index
+     * @param whereField the column of the condition
+     * @param whereValue the value of the condition
+     * @throws SQLException if the value cannot be bound
+     */
+    private static void bindWhereValue(PreparedStatement pstmt, int index, String whereField, String whereValue)
+            throws SQLException {
+        if (isJobColumn(whereField)) {
+            Job job = Job.lookup(whereValue);
+            pstmt.setInt(index, job != null ? job.getCode() : 0);
+        } else {
+            pstmt.setString(index, whereValue);
+        }
+    }
+
+    /**
+     * Applies write-behind changes not yet flushed to a character read from the database
+     * or the cache.
+     *
+     * @param pc a private copy of the stored character
+     * @return {@code pc}, updated in place
+     */
+    private PCharacter withPendingChanges(PCharacter pc) {
+        WriteBehindBuffer buffer = writeBehind;
+        return buffer != null ? buffer.overlay(pc) : pc;
+    }
+
+    /**
+     * Drops one character from the attached cache, if any.
+     * Must be called after the write, so a concurrent read cannot cache the old row.
+     *
+     * @param id the ID that was written
+     */
+    private void invalidate(long id) {
+        CharacterCache c = cache;
+        if (c != null) {
+            c.invalidate(id);
+        }
+    }
+
+    /**
+     * Drops the cache entries a generic {@code WHERE column = value} write may have touched:
+     * just that character for an {@code id} condition, everything otherwise.
+     *
+     * @param whereField the column used in the WHERE clause
+     * @param whereValue the value used in the WHERE clause
+     */
+    private void invalidate(String whereField, String whereValue) {
+        CharacterCache c = cache;
+        if (c == null) {
+            return;
+        }
+        long id = PCharacter.parseId(whereValue);
+        if (whereField.trim().equalsIgnoreCase("id") && id >= 0) {
+            c.invalidate(id);
+        } else {
+            c.invalidateAll();
+        }
+    }
+
+    /**
+     * Builds a {@link PCharacter} from the current row of a result set.
+     * <p>
+     * Rows were validated when they were written, so they go through
+     * {@link PCharacter#fromTrusted} instead of the validating constructor. Columns are
+     * read by position rather than by label, which saves a name lookup per value; every
+     * query reading characters selects {@code *} from {@code characters}, whose column
+     * order is fixed by {@link #charactersTableSql(String)} (see the {@code COL_*} constants).
+     *
+     * @param rs a result set positioned on a {@code characters} row
+     * @return the character stored in that row
+     * @throws SQLException if a column cannot be read or holds an unknown job code
+     */
+    private PCharacter toCharacter(ResultSet rs) throws SQLException {
+        long id = rs.getLong(COL_ID);
+        Job job = Job.fromCode(rs.getInt(COL_JOB));
+        if (job == null) {
+            throw new SQLException("Unknown job code " + rs.getInt(COL_JOB) + " for character " + id);
         }
+        return PCharacter.fromTrusted(
+                id,
+                rs.getString(COL_NAME),
+                job,
+                rs.getInt(COL_LEVEL),
+                rs.getInt(COL_HP),
+                rs.getInt(COL_MP),
+                rs.getInt(COL_ACTIVE) == 1
+        );
     }
 }
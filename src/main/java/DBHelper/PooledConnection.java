@@ -0,0 +1,126 @@
+package DBHelper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A long-lived SQLite {@link Connection} owned by a {@link ConnectionPool},
+ * together with a small cache of {@link PreparedStatement}s keyed by their SQL text.
+ * <p>
+ * Callers borrow an instance from the pool, use {@link #prepare(String)} to get a
+ * ready-to-bind statement, and return it with {@link #close()} (ideally via
+ * try-with-resources). Statements handed out by {@link #prepare(String)} belong to
+ * the cache and must <b>not</b> be closed by the caller; only their result sets should be.
+ */
+class PooledConnection implements AutoCloseable {
+
+    /**
+     * Maximum number of prepared statements kept open per connection.
+     * <p>
+     * The DAO only uses a handful of distinct SQL strings, so this is mostly a safety net
+     * for callers that build SQL dynamically (e.g. {@link PCharacters#update}).
+     */
+    static final int STATEMENT_CACHE_SIZE = 64;
+
+    /** The underlying physical JDBC connection. */
+    private final Connection connection;
+
+    /** Pool this connection is returned to on {@link #close()}. */
+    private final ConnectionPool owner;
+
+    /**
+     * Prepared statements keyed by SQL, in access order so the least recently used
+     * statement is closed first once the cache is full.
+     */
+    private final Map<String, PreparedStatement> statements =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    /**
+     * Wraps a freshly opened connection.
+     *
+     * @param connection the physical connection
+     * @param owner      the pool this connection belongs to
+     */
+    PooledConnection(Connection connection, ConnectionPool owner) {
+        this.connection = connection;
+        this.owner = owner;
+    }
+
+    /**
+     * Returns a cached {@link PreparedStatement} for the given SQL, preparing it on first use.
+     * <p>
+     * Parameters left over from a previous use are cleared before the statement is returned.
+     *
+     * @param sql the SQL text
+     * @return a prepared statement owned by this connection's cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt == null || pstmt.isClosed()) {
+            pstmt = connection.prepareStatement(sql);
+            statements.put(sql, pstmt);
+        } else {
+            pstmt.clearParameters();
+        }
+        return pstmt;
+    }
+
+    /**
+     * Gives direct access to the physical connection, e.g. for transaction control.
+     *
+     * @return the underlying JDBC connection
+     */
+    Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Returns this connection to its pool. The physical connection stays open.
+     */
+    @Override
+    public void close() {
+        owner.release(this);
+    }
+
+    /**
+     * Closes all cached statements and the physical connection.
+     * Only the owning pool should call this.
+     */
+    void closePhysical() {
+        for (PreparedStatement pstmt : statements.values()) {
+            closeQuietly(pstmt);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes a statement, logging instead of propagating failures.
+     *
+     * @param pstmt the statement to close
+     */
+    private static void closeQuietly(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package DBHelper;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A set of SQLite tuning {@code PRAGMA}s applied to every connection a {@link PCharacters}
+ * DAO opens.
+ * <p>
+ * Three presets are provided:
+ * <ul>
+ *     <li>{@link #DURABLE} – WAL journal with {@code synchronous=FULL}; every commit is fsynced</li>
+ *     <li>{@link #BALANCED} – WAL journal with {@code synchronous=NORMAL}; the default</li>
+ *     <li>{@link #BULK_LOAD} – WAL journal with {@code synchronous=OFF} and large caches,
+ *         for one-off imports where losing the last transactions on a power cut is acceptable</li>
+ * </ul>
+ * All presets use WAL so readers and the writer no longer block each other.
+ * Custom profiles can be built with the public constructor.
+ */
+public final class SQLiteProfile {
+
+    /** Safest preset: WAL journal, full fsync on every commit. */
+    public static final SQLiteProfile DURABLE =
+            new SQLiteProfile("durable", "WAL", "FULL", 0, -16_000, "DEFAULT", 5_000);
+
+    /** General-purpose preset: WAL journal, fsync only at checkpoints, memory-mapped reads. */
+    public static final SQLiteProfile BALANCED =
+            new SQLiteProfile("balanced", "WAL", "NORMAL", 256L * 1024 * 1024, -64_000, "MEMORY", 5_000);
+
+    /** Import preset: no fsync, large page cache and memory map, temp tables in memory. */
+    public static final SQLiteProfile BULK_LOAD =
+            new SQLiteProfile("bulk-load", "WAL", "OFF", 1024L * 1024 * 1024, -256_000, "MEMORY", 30_000);
+
+    /** Short name of this profile, e.g. {@code "balanced"}. */
+    private final String name;
+
+    /** Value for {@code PRAGMA journal_mode}, e.g. {@code WAL}. */
+    private final String journalMode;
+
+    /** Value for {@code PRAGMA synchronous}: {@code OFF}, {@code NORMAL}, {@code FULL} or {@code EXTRA}. */
+    private final String synchronous;
+
+    /** Value for {@code PRAGMA mmap_size} in bytes; {@code 0} disables memory-mapped I/O. */
+    private final long mmapSize;
+
+    /**
+     * Value for {@code PRAGMA cache_size}: positive numbers are pages,
+     * negative numbers are KiB (SQLite's own convention).
+     */
+    private final int cacheSize;
+
+    /** Value for {@code PRAGMA temp_store}: {@code DEFAULT}, {@code FILE} or {@code MEMORY}. */
+    private final String tempStore;
+
+    /** Value for {@code PRAGMA busy_timeout} in milliseconds. */
+    private final int busyTimeoutMillis;
+
+    /**
+     * Creates a custom tuning profile.
+     *
+     * @param name              short name used in messages
+     * @param journalMode       {@code journal_mode} value (e.g. {@code WAL}, {@code DELETE})
+     * @param synchronous       {@code synchronous} value ({@code OFF}, {@code NORMAL}, {@code FULL}, {@code EXTRA})
+     * @param mmapSize          {@code mmap_size} in bytes (0 disables it)
+     * @param cacheSize         {@code cache_size} (pages if positive, KiB if negative)
+     * @param tempStore         {@code temp_store} value ({@code DEFAULT}, {@code FILE}, {@code MEMORY})
+     * @param busyTimeoutMillis how long a connection waits on a locked database, in milliseconds
+     * @throws IllegalArgumentException if a keyword is not one SQLite accepts, or a number is negative
+     */
+    public SQLiteProfile(String name, String journalMode, String synchronous, long mmapSize,
+                         int cacheSize, String tempStore, int busyTimeoutMillis) {
+        this.name = name;
+        this.journalMode = requireKeyword("journal_mode", journalMode,
+                "DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+        this.synchronous = requireKeyword("synchronous", synchronous, "OFF", "NORMAL", "FULL", "EXTRA");
+        this.tempStore = requireKeyword("temp_store", tempStore, "DEFAULT", "FILE", "MEMORY");
+
+        if (mmapSize < 0) {
+            throw new IllegalArgumentException("mmap_size cannot be negative");
+        }
+        if (busyTimeoutMillis < 0) {
+            throw new IllegalArgumentException("busy_timeout cannot be negative");
+        }
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    /**
+     * Looks up a preset by name.
+     * <p>
+     * Accepted names are {@code "durable"}, {@code "balanced"} and {@code "bulk-load"}
+     * (case-insensitive).
+     *
+     * @param name the preset name
+     * @return the matching preset
+     * @throws IllegalArgumentException if no preset has that name
+     */
+    public static SQLiteProfile forName(String name) {
+        for (SQLiteProfile preset : new SQLiteProfile[]{DURABLE, BALANCED, BULK_LOAD}) {
+            if (preset.name.equalsIgnoreCase(name.trim())) {
+                return preset;
+            }
+        }
+        throw new IllegalArgumentException("Unknown SQLite profile: " + name);
+    }
+
+    /**
+     * Runs this profile's {@code PRAGMA}s on a freshly opened connection.
+     * <p>
+     * {@code busy_timeout} is set first so that switching the journal mode waits
+     * for other connections instead of failing immediately.
+     *
+     * @param connection the connection to tune
+     * @throws SQLException if a pragma cannot be applied
+     */
+    void apply(Connection connection) throws SQLException {
+        apply(connection, false);
+    }
+
+    /**
+     * Runs this profile's {@code PRAGMA}s on a freshly opened connection.
+     * <p>
+     * On a read-only connection, {@code journal_mode} and {@code synchronous} are skipped:
+     * the journal mode is stored in the database file (a read-only connection cannot change it)
+     * and the sync level only matters to writers.
+     *
+     * @param connection the connection to tune
+     * @param readOnly   whether the connection was opened read-only
+     * @throws SQLException if a pragma cannot be applied
+     */
+    void apply(Connection connection, boolean readOnly) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = " + journalMode);
+                stmt.execute("PRAGMA synchronous = " + synchronous);
+            }
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    /**
+     * Checks that a pragma value is one of the allowed keywords.
+     * <p>
+     * Pragma values cannot be bound as parameters, so this keeps arbitrary
+     * strings out of the SQL.
+     *
+     * @param pragma  pragma name, used in the error message
+     * @param value   the requested value
+     * @param allowed accepted keywords
+     * @return the value in upper case
+     * @throws IllegalArgumentException if the value is not an accepted keyword
+     */
+    private static String requireKeyword(String pragma, String value, String... allowed) {
+        for (String keyword : allowed) {
+            if (keyword.equalsIgnoreCase(value)) {
+                return keyword;
+            }
+        }
+        throw new IllegalArgumentException("Invalid " + pragma + ": " + value);
+    }
+
+    /**
+     * Returns the profile name, e.g. {@code "balanced"}.
+     *
+     * @return the profile name, e.g. {@code "balanced"}
+     */
+    public String getName() { return name; }
+
+    /**
+     * Returns the {@code journal_mode} value.
+     *
+     * @return the {@code journal_mode} value
+     */
+    public String getJournalMode() { return journalMode; }
+
+    /**
+     * Returns the {@code synchronous} value.
+     *
+     * @return the {@code synchronous} value
+     */
+    public String getSynchronous() { return synchronous; }
+
+    /**
+     * Returns the {@code mmap_size} value in bytes.
+     *
+     * @return the {@code mmap_size} value in bytes
+     */
+    public long getMmapSize() { return mmapSize; }
+
+    /**
+     * Returns the {@code cache_size} value (pages if positive, KiB if negative).
+     *
+     * @return the {@code cache_size} value (pages if positive, KiB if negative)
+     */
+    public int getCacheSize() { return cacheSize; }
+
+    /**
+     * Returns the {@code temp_store} value.
+     *
+     * @return the {@code temp_store} value
+     */
+    public String getTempStore() { return tempStore; }
+
+    /**
+     * Returns the {@code busy_timeout} value in milliseconds.
+     *
+     * @return the {@code busy_timeout} value in milliseconds
+     */
+    public int getBusyTimeoutMillis() { return busyTimeoutMillis; }
+
+    /**
+     * Returns the profile name.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
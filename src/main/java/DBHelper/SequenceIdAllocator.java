@@ -0,0 +1,114 @@
+package DBHelper;
+
+/**
+ * {@link IdAllocator} backed by a persisted sequence in the {@code id_sequences} table.
+ * <p>
+ * IDs are reserved from the database in blocks (one small write transaction per block)
+ * and then handed out from memory, so {@link #nextId()} is O(1) and needs no query in the
+ * common case. When a block is reserved, the sequence is also moved past the highest ID
+ * already stored in {@code characters} within this allocator's range, so rows inserted with
+ * explicit IDs are never reused; explicit IDs beyond the range are ignored.
+ * <p>
+ * IDs left over in a block when the application exits are simply skipped, so the
+ * sequence can have gaps but never duplicates.
+ */
+public class SequenceIdAllocator implements IdAllocator {
+
+    /** Name of the sequence row used for character IDs. */
+    public static final String CHARACTER_SEQUENCE = "characters";
+
+    /** Smallest ID handed out by default (legacy IDs used 1000–9999). */
+    public static final long DEFAULT_MIN_ID = 1000;
+
+    /** Largest ID handed out by default. */
+    public static final long DEFAULT_MAX_ID = 9_999_999_999L;
+
+    /** Number of IDs reserved per database round-trip by default. */
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+    /** DAO used to reserve blocks. */
+    private final PCharacters db;
+
+    /** Smallest ID this allocator may return. */
+    private final long minId;
+
+    /** Largest ID this allocator may return. */
+    private final long maxId;
+
+    /** Number of IDs reserved at a time. */
+    private final int blockSize;
+
+    /** Next ID to hand out from the current block. */
+    private long next = 1;
+
+    /** Last ID (inclusive) of the current block; {@code next > last} means no block is held. */
+    private long last = 0;
+
+    /**
+     * Creates an allocator with the default ID space ({@value #DEFAULT_MIN_ID} to
+     * {@value #DEFAULT_MAX_ID}) and block size.
+     *
+     * @param db the DAO whose database stores the sequence
+     */
+    public SequenceIdAllocator(PCharacters db) {
+        this(db, DEFAULT_MIN_ID, DEFAULT_MAX_ID, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates an allocator with a custom ID space and block size.
+     *
+     * @param db        the DAO whose database stores the sequence
+     * @param minId     smallest ID to hand out (at least 1)
+     * @param maxId     largest ID to hand out
+     * @param blockSize number of IDs reserved per database round-trip (at least 1)
+     * @throws IllegalArgumentException if the range or block size is invalid
+     */
+    public SequenceIdAllocator(PCharacters db, long minId, long maxId, int blockSize) {
+        if (minId < 1 || maxId < minId) {
+            throw new IllegalArgumentException("Invalid ID range: " + minId + "-" + maxId);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        if (maxId > Long.MAX_VALUE - blockSize) {
+            throw new IllegalArgumentException("Maximum ID too large for block size " + blockSize);
+        }
+        this.db = db;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the next ID from the current block, reserving a new block first if needed.
+     *
+     * @return a unique character ID
+     * @throws IllegalStateException if every ID up to the maximum has been used
+     */
+    @Override
+    public synchronized long nextId() {
+        if (next > last) {
+            long start = db.reserveIdBlock(CHARACTER_SEQUENCE, blockSize, minId, maxId);
+            if (start > maxId) {
+                throw new IllegalStateException("Character ID space exhausted (max " + maxId + ")");
+            }
+            next = start;
+            last = Math.min(start + blockSize - 1, maxId);
+        }
+        return next++;
+    }
+
+    /**
+     * Drops the rest of the current block if {@code id} falls inside it, so the next
+     * block is reserved past {@code id}. IDs outside the block need no action because
+     * block reservation always skips the highest stored ID in range.
+     *
+     * @param id the ID that was just stored
+     */
+    @Override
+    public synchronized void observe(long id) {
+        if (id >= next && id <= last) {
+            next = last + 1;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package DBHelper;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs every write against the database on one dedicated thread and connection.
+ * <p>
+ * SQLite allows a single writer at a time. Instead of letting callers race for the write
+ * lock (and fail with {@code SQLITE_BUSY}), they {@link #submit(WriteOp)} their work
+ * here and get a {@link CompletableFuture}. The writer thread takes everything queued
+ * at that moment and runs it in <b>one</b> transaction (group commit), so under load
+ * many writes share a single commit and fsync.
+ * <p>
+ * Each operation runs inside its own {@code SAVEPOINT}: if it fails, only its own changes
+ * are rolled back and only its future fails; the rest of the group still commits.
+ * Futures complete after the commit, so a caller that waits on one can immediately
+ * read its write from any other connection.
+ * <p>
+ * Futures from {@link #submit(WriteOp)} complete on the writer thread, so they are only
+ * for waiting on inside the DAO. Futures handed to callers go through
+ * {@link #handOff(CompletableFuture)} first: a caller's callback must never run on the
+ * writer, where a slow one would hold up every commit and a blocking write would wait for
+ * itself forever.
+ */
+class SingleWriter implements AutoCloseable {
+
+    /** Maximum number of operations committed together. */
+    static final int MAX_GROUP_SIZE = 256;
+
+    /** Maximum number of operations waiting in the queue before submitters wait. */
+    static final int QUEUE_CAPACITY = 10_000;
+
+    /** How long submitters wait before offering again when the queue is full. */
+    private static final long FULL_QUEUE_BACKOFF_MILLIS = 1;
+
+    /**
+     * A unit of work run on the writer's connection, inside the current transaction.
+     * Operations must not commit, roll back or change the auto-commit mode themselves.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    interface WriteOp<T> {
+
+        /**
+         * Performs the write.
+         *
+         * @param conn the writer's connection; use {@link PooledConnection#prepare(String)}
+         * @return the result handed to the caller's future
+         * @throws SQLException if the write fails
+         */
+        T apply(PooledConnection conn) throws SQLException;
+    }
+
+    /**
+     * A submitted operation and the future to complete with its outcome.
+     *
+     * @param <T> the result type
+     */
+    private static final class Task<T> {
+
+        /** The work to run. */
+        final WriteOp<T> op;
+
+        /** Completed once the transaction containing the work has committed (or failed). */
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        /** Result of {@link #op}, kept until the commit succeeds. */
+        T result;
+
+        /** Failure of {@link #op}, if any. */
+        Throwable failure;
+
+        Task(WriteOp<T> op) {
+            this.op = op;
+        }
+
+        /**
+         * Runs the operation, remembering its result or failure.
+         * <p>
+         * Errors are caught too: an operation that throws (say) an {@link AssertionError}
+         * must fail its own future, not kill the writer thread and strand every other caller.
+         *
+         * @param conn the writer's connection
+         * @return {@code true} if the operation succeeded
+         */
+        boolean run(PooledConnection conn) {
+            try {
+                result = op.apply(conn);
+                return true;
+            } catch (Throwable e) {
+                failure = e;
+                return false;
+            }
+        }
+
+        /**
+         * Completes the future with the remembered outcome.
+         */
+        void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    /** Placed in the queue by {@link #close()} to stop the writer thread. */
+    private static final Task<Void> STOP = new Task<>(conn -> null);
+
+    /** Holds the single write connection (a pool of size 1, for its statement cache). */
+    private final ConnectionPool connectionPool;
+
+    /** Operations waiting to be written. */
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** The thread that owns the write connection. */
+    private final Thread thread;
+
+    /** Completes the futures handed to callers, so their callbacks run off the writer thread. */
+    private final ExecutorService callbacks = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "characters-writer-callback");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Set once {@link #close()} has been called; no new work is accepted. */
+    private volatile boolean closed;
+
+    /**
+     * Starts the writer thread. The connection is opened on the writer thread itself.
+     *
+     * @param connectionString JDBC connection string of the database
+     * @param profile          tuning pragmas for the write connection
+     */
+    SingleWriter(String connectionString, SQLiteProfile profile) {
+        this.connectionPool = new ConnectionPool(connectionString, 1, profile);
+        this.thread = new Thread(this::run, "characters-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a write. Waits only if {@link #QUEUE_CAPACITY} operations are already waiting.
+     * <p>
+     * The queue is only ever offered to under the lock, never waited on: a submitter
+     * blocked on a full queue while holding it would keep {@link #close()} and a dying
+     * writer thread from marking the writer closed, and everyone would hang. When the
+     * queue is full the lock is released and the offer retried after
+     * {@link #FULL_QUEUE_BACKOFF_MILLIS}, re-checking {@code closed} each time.
+     *
+     * @param op  the work to run on the writer thread
+     * @param <T> the result type
+     * @return a future completed after the transaction containing {@code op} commits;
+     *         it fails with the operation's exception if the operation or the commit fails
+     */
+    <T> CompletableFuture<T> submit(WriteOp<T> op) {
+        Task<T> task = new Task<>(op);
+        try {
+            while (true) {
+                // Locked against close(), so nothing can be queued behind the stop marker
+                synchronized (this) {
+                    if (closed) {
+                        task.future.completeExceptionally(new SQLException("Database writer is closed"));
+                        return task.future;
+                    }
+                    if (queue.offer(task)) {
+                        return task.future;
+                    }
+                }
+                Thread.sleep(FULL_QUEUE_BACKOFF_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(new SQLException("Interrupted while queueing a write", e));
+            return task.future;
+        }
+    }
+
+    /**
+     * Returns a future for a caller, completed off the writer thread.
+     * <p>
+     * Callbacks attached to the returned future (e.g. {@code thenRun}) run on a callback
+     * thread, never on the writer, so they may block or even make more synchronous writes.
+     *
+     * @param future a future from {@link #submit(WriteOp)}
+     * @param <T>    the result type
+     * @return a future with the same outcome
+     */
+    <T> CompletableFuture<T> handOff(CompletableFuture<T> future) {
+        if (future.isDone()) {
+            // Already failed (e.g. writer closed): no writer thread involved
+            return future;
+        }
+        return future.whenCompleteAsync((result, e) -> { }, callbacks);
+    }
+
+    /**
+     * Indicates whether the calling thread is the writer thread. Waiting there for a write
+     * would deadlock, since only the writer can run it.
+     *
+     * @return {@code true} if called from the writer thread
+     */
+    boolean isWriterThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Writer loop: wait for work, take everything queued (up to {@link #MAX_GROUP_SIZE}),
+     * run it in one transaction, then complete the futures.
+     */
+    private void run() {
+        List<Task<?>> group = new ArrayList<>(MAX_GROUP_SIZE);
+        try (PooledConnection conn = connectionPool.borrow()) {
+            boolean stopping = false;
+            while (!stopping) {
+                group.clear();
+                group.add(queue.take());
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+
+                // Work queued before close() still runs; the marker only ends the loop
+                stopping = group.remove(STOP);
+                if (!group.isEmpty()) {
+                    commitGroup(conn, group);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            failAll(group, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connectionPool.close();
+            synchronized (this) {
+                closed = true;
+            }
+            // If the loop ended abnormally, the group being written never completed; futures
+            // that did complete are left as they are
+            failAll(group, new SQLException("Database writer stopped before the write completed"));
+            failAll(new ArrayList<>(queue), new SQLException("Database writer is closed"));
+        }
+    }
+
+    /**
+     * Runs a group of operations in one transaction, each in its own savepoint.
+     *
+     * @param conn  the write connection
+     * @param group the operations, in submission order
+     */
+    private void commitGroup(PooledConnection conn, List<Task<?>> group) {
+        Connection connection = conn.connection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (Task<?> task : group) {
+                    conn.prepare("SAVEPOINT write_op").execute();
+                    if (!task.run(conn)) {
+                        conn.prepare("ROLLBACK TO write_op").execute();
+                    }
+                    conn.prepare("RELEASE write_op").execute();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            failAll(group, e);
+            return;
+        }
+
+        for (Task<?> task : group) {
+            task.complete();
+        }
+    }
+
+    /**
+     * Fails every future in a list with the same exception.
+     *
+     * @param tasks the tasks to fail
+     * @param e     the cause
+     */
+    private static void failAll(List<Task<?>> tasks, SQLException e) {
+        for (Task<?> task : tasks) {
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stops accepting work, waits for everything already queued to be written,
+     * and closes the write connection.
+     * <p>
+     * Like {@link #submit(WriteOp)}, the stop marker is offered without waiting under the
+     * lock, so a full queue cannot deadlock close against a writer thread that is exiting.
+     */
+    @Override
+    public void close() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    if (queue.offer(STOP)) {
+                        closed = true;
+                        break;
+                    }
+                }
+                Thread.sleep(FULL_QUEUE_BACKOFF_MILLIS);
+            }
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Callbacks already handed over still run; the threads then exit
+        callbacks.shutdown();
+    }
+}
@@ -0,0 +1,99 @@
+package DBHelper;
+
+import FFPackage.PCharacter;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Orderings supported by {@link PCharacters#selectPage(PCharacter, int, SortColumn)}.
+ * <p>
+ * Every ordering ends with {@code id} as a tie-breaker, so each row has a unique
+ * position and a page can be resumed from the last row of the previous one
+ * (keyset / seek pagination) instead of skipping rows with {@code OFFSET}.
+ * Each non-ID column is backed by an index, so every page costs one index seek
+ * plus {@code limit} rows, no matter how deep into the table it is.
+ */
+public enum SortColumn {
+
+    /** Order by ID (the rowid, no extra index needed). */
+    ID("id"),
+
+    /** Order by name, then ID. */
+    NAME("name"),
+
+    /** Order by level, then ID. */
+    LEVEL("level");
+
+    /** Column name in the {@code characters} table. */
+    private final String column;
+
+    /** Query for the first page. */
+    private final String firstPageSql;
+
+    /** Query for every page after the first one. */
+    private final String nextPageSql;
+
+    /**
+     * Builds the page queries for one column.
+     *
+     * @param column the column name
+     */
+    SortColumn(String column) {
+        this.column = column;
+        if (column.equals("id")) {
+            this.firstPageSql = "SELECT * FROM characters ORDER BY id LIMIT ?";
+            this.nextPageSql = "SELECT * FROM characters WHERE id > ? ORDER BY id LIMIT ?";
+        } else {
+            this.firstPageSql = "SELECT * FROM characters ORDER BY " + column + ", id LIMIT ?";
+            this.nextPageSql = "SELECT * FROM characters WHERE (" + column + ", id) > (?, ?) "
+                    + "ORDER BY " + column + ", id LIMIT ?";
+        }
+    }
+
+    /**
+     * Returns the column name this ordering sorts on.
+     *
+     * @return the column name
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the query for the first page; its only parameter is the limit.
+     *
+     * @return the SQL
+     */
+    String firstPageSql() {
+        return firstPageSql;
+    }
+
+    /**
+     * Returns the query for a following page; its parameters are the key
+     * (see {@link #bindKey}) followed by the limit.
+     *
+     * @return the SQL
+     */
+    String nextPageSql() {
+        return nextPageSql;
+    }
+
+    /**
+     * Binds the seek key taken from the last row of the previous page.
+     *
+     * @param pstmt statement prepared from {@link #nextPageSql()}
+     * @param after last character of the previous page
+     * @return the index of the next unbound parameter (the limit)
+     * @throws SQLException if a value cannot be bound
+     */
+    int bindKey(PreparedStatement pstmt, PCharacter after) throws SQLException {
+        int index = 1;
+        switch (this) {
+            case NAME -> pstmt.setString(index++, after.getName());
+            case LEVEL -> pstmt.setInt(index++, after.getLevel());
+            case ID -> { }
+        }
+        pstmt.setLong(index++, after.getNumericId());
+        return index;
+    }
+}
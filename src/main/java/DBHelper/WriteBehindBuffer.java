@@ -0,0 +1,228 @@
+package DBHelper;
+
+import FFPackage.PCharacter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds {@link CharacterPatch}es in memory and writes them to the database later, in one
+ * transaction per flush.
+ * <p>
+ * Patches for the same character are merged, so a character touched fifty times between
+ * two flushes costs a single {@code UPDATE}. A flush happens:
+ * <ul>
+ *     <li>every {@code flushIntervalMillis}, on a background thread</li>
+ *     <li>as soon as {@code maxPending} characters have pending changes</li>
+ *     <li>when {@link #flush()} is called, e.g. by {@link PCharacters} before a scan</li>
+ *     <li>when the buffer is closed, or the JVM shuts down normally</li>
+ * </ul>
+ * Changes still pending when the process is killed are lost; that is the price of write-behind.
+ * So are patches the database rejects when they are finally written (see {@link #flush()});
+ * those are counted by {@link #getDroppedPatches()}.
+ */
+class WriteBehindBuffer implements AutoCloseable {
+
+    /** The DAO the patches are written to. */
+    private final PCharacters db;
+
+    /** Number of characters with pending changes that triggers an early flush. */
+    private final int maxPending;
+
+    /** Patches not yet handed to a flush, by character ID, in arrival order. */
+    private LinkedHashMap<Long, CharacterPatch> pending = new LinkedHashMap<>();
+
+    /**
+     * Patches taken by the flush that is currently writing them. Reads still overlay
+     * them, so a value never seems to go back in time while the transaction runs.
+     */
+    private Map<Long, CharacterPatch> inFlight = Map.of();
+
+    /** Serializes flushes, so batches reach the database in the order they were taken. */
+    private final Object flushLock = new Object();
+
+    /** Runs the periodic and size-triggered flushes. */
+    private final ScheduledExecutorService flusher;
+
+    /** Flushes whatever is pending when the JVM exits normally. */
+    private final Thread shutdownHook;
+
+    /** Number of patches the database rejected and that were therefore dropped. */
+    private long droppedPatches;
+
+    /** Set once {@link #close()} has been called. */
+    private volatile boolean closed;
+
+    /**
+     * Starts a buffer and its background flush thread.
+     *
+     * @param db                  the DAO to write to
+     * @param flushIntervalMillis time between periodic flushes, in milliseconds (at least 1)
+     * @param maxPending          number of pending characters that triggers a flush (at least 1)
+     * @throws IllegalArgumentException if a limit is less than 1
+     */
+    WriteBehindBuffer(PCharacters db, long flushIntervalMillis, int maxPending) {
+        if (flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Flush interval must be at least 1 ms");
+        }
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("Pending limit must be at least 1");
+        }
+        this.db = db;
+        this.maxPending = maxPending;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "characters-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+
+        this.shutdownHook = new Thread(this::flushQuietly, "characters-write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues a patch, merging it into any change already pending for the same character.
+     * The caller's patch object is copied, so it can be reused afterwards.
+     *
+     * @param id    the character ID
+     * @param patch the fields to change
+     */
+    void add(long id, CharacterPatch patch) {
+        boolean full;
+        synchronized (this) {
+            pending.computeIfAbsent(id, k -> new CharacterPatch()).mergeFrom(patch);
+            full = pending.size() >= maxPending;
+        }
+        if (full && !closed) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Applies the changes still waiting for this character to a copy read from the database.
+     *
+     * @param pc the character as stored; modified in place
+     * @return {@code pc}, for chaining
+     */
+    synchronized PCharacter overlay(PCharacter pc) {
+        long id = pc.getNumericId();
+        CharacterPatch written = inFlight.get(id);
+        if (written != null) {
+            written.applyTo(pc);
+        }
+        CharacterPatch queued = pending.get(id);
+        if (queued != null) {
+            queued.applyTo(pc);
+        }
+        return pc;
+    }
+
+    /**
+     * Checks whether any change is waiting to be written.
+     *
+     * @return {@code true} if a flush would write something
+     */
+    synchronized boolean hasPending() {
+        return !pending.isEmpty() || !inFlight.isEmpty();
+    }
+
+    /**
+     * Returns how many patches were dropped because the database rejected them.
+     *
+     * @return the number of dropped patches since this buffer was created
+     */
+    synchronized long getDroppedPatches() {
+        return droppedPatches;
+    }
+
+    /**
+     * Writes every pending change now, in a single transaction.
+     * <p>
+     * If the transaction fails, the changes are put back (merged under anything queued
+     * meanwhile) so the next flush retries them. A single patch the database rejects is
+     * different: it would fail on every retry and block the characters queued with it, so
+     * it is reported, counted (see {@link #getDroppedPatches()}) and dropped, and the rest of
+     * the batch is written.
+     *
+     * @return the number of characters written
+     * @throws RuntimeException if the transaction fails
+     */
+    int flush() {
+        synchronized (flushLock) {
+            Map<Long, CharacterPatch> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = pending;
+                inFlight = batch;
+                pending = new LinkedHashMap<>();
+            }
+
+            try {
+                Map<Long, Exception> rejected = db.applyPatches(batch);
+                synchronized (this) {
+                    droppedPatches += rejected.size();
+                }
+                rejected.forEach((id, e) -> {
+                    System.out.println("Dropped buffered update for character " + id + ": " + e.getMessage());
+                    e.printStackTrace();
+                });
+                return batch.size() - rejected.size();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    // Newer changes must still win over the batch that failed
+                    LinkedHashMap<Long, CharacterPatch> restored = new LinkedHashMap<>(batch);
+                    pending.forEach((id, patch) -> restored.merge(id, patch, CharacterPatch::mergeFrom));
+                    pending = restored;
+                }
+                throw e;
+            } finally {
+                synchronized (this) {
+                    inFlight = Map.of();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs {@link #flush()} from a background thread, logging instead of propagating failures.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the background thread, removes the shutdown hook and writes what is left.
+     *
+     * @throws RuntimeException if the final flush fails
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down: the hook is running or about to
+        }
+        flush();
+    }
+}
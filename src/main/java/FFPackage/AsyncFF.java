@@ -0,0 +1,209 @@
+package FFPackage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Non-blocking front end for an {@link FF} service.
+ * <p>
+ * Every call runs on its own virtual thread and returns a {@link CompletableFuture}, so a
+ * caller can start thousands of operations without tying up a platform thread per call.
+ * That makes calls cheap to start, not faster to run. On JDK 21, sqlite-jdbc's native calls
+ * are made inside {@code synchronized} methods and pin the virtual thread to its carrier for
+ * the whole query, and a call that finds the DAO's read pool empty blocks until a connection
+ * is returned. At most {@link DBHelper.PCharacters#getPoolSize()} reads (and never more than
+ * the number of carrier threads, about one per core) actually run at the same time; the
+ * rest wait. Concurrent writes are merged into group commits by the DAO's writer.
+ * <p>
+ * The fan-out helpers ({@link #fanOut}, {@link #levelUpAll}) start
+ * one task per key and fail fast: as soon as one task fails, the others are cancelled
+ * (their virtual threads are interrupted) and the returned future fails with that error.
+ * Cancelling the returned future cancels the tasks as well.
+ * <p>
+ * Closing an {@code AsyncFF} stops its executor but does not close the wrapped {@link FF}.
+ */
+public class AsyncFF implements AutoCloseable {
+
+    /** The blocking service every call delegates to. */
+    private final FF ff;
+
+    /** Starts a new virtual thread per task. */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Wraps an existing service.
+     *
+     * @param ff the service to run calls on
+     */
+    public AsyncFF(FF ff) {
+        this.ff = ff;
+    }
+
+    /**
+     * Runs any {@link FF} call on a virtual thread.
+     *
+     * @param call the call to make, e.g. {@code ff -> ff.getActiveParty()}
+     * @param <T>  the result type
+     * @return a future completed with the call's result or failure
+     */
+    public <T> CompletableFuture<T> submit(Function<? super FF, ? extends T> call) {
+        return CompletableFuture.supplyAsync(() -> call.apply(ff), executor);
+    }
+
+    /**
+     * Fetches one character.
+     *
+     * @param id the character ID
+     * @return a future completed with the character, or {@code null} if there is none
+     */
+    public CompletableFuture<PCharacter> getCharacter(String id) {
+        return submit(service -> service.getCharacter(id));
+    }
+
+    /**
+     * Adds one character.
+     *
+     * @param pc the character to add
+     * @return a future completed with the ID the character was stored under
+     */
+    public CompletableFuture<String> addCharacter(PCharacter pc) {
+        return submit(service -> service.addCharacter(pc));
+    }
+
+    /**
+     * Levels up one character.
+     *
+     * @param id        the character ID
+     * @param increment how many levels to add
+     * @return a future completed once the change is committed; it fails with a
+     *         {@link java.util.NoSuchElementException} if no character has that ID, or an
+     *         {@link IllegalStateException} if the change could not be written
+     * @see FF#levelUp(String, int)
+     */
+    public CompletableFuture<Void> levelUpById(String id, int increment) {
+        return submit(service -> {
+            service.levelUp(id, increment);
+            return null;
+        });
+    }
+
+    /**
+     * Removes one character.
+     *
+     * @param id the character ID
+     * @return a future completed once the deletion is committed
+     */
+    public CompletableFuture<Void> removeCharacterById(String id) {
+        return submit(service -> {
+            service.removeCharacterById(id);
+            return null;
+        });
+    }
+
+    /**
+     * Fetches many characters.
+     * <p>
+     * This is one task running the batched {@link FF#getCharacters(Collection)}, not a
+     * fan-out: a few {@code IN (...)} queries on one connection beat one query and one
+     * pooled connection per ID.
+     *
+     * @param ids the IDs to fetch
+     * @return a future completed with the characters found, keyed by ID in the order given;
+     *         IDs with no character are left out
+     */
+    public CompletableFuture<Map<String, PCharacter>> getCharacters(Collection<String> ids) {
+        List<String> snapshot = new ArrayList<>(ids);
+        return submit(service -> service.getCharacters(snapshot));
+    }
+
+    /**
+     * Levels up many characters concurrently.
+     * <p>
+     * The IDs should be distinct: two concurrent level-ups of the same character
+     * may read the same starting level.
+     *
+     * @param ids       the IDs to level up
+     * @param increment how many levels to add to each
+     * @return a future completed once every change is committed; a missing ID or a failed
+     *         write fails it as for {@link #levelUpById(String, int)} and cancels the rest
+     */
+    public CompletableFuture<Void> levelUpAll(Collection<String> ids, int increment) {
+        return fanOut(ids, id -> {
+            ff.levelUp(id, increment);
+            return null;
+        }).thenApply(done -> null);
+    }
+
+    /**
+     * Runs {@code task} once per key, each on its own virtual thread, and gathers the results.
+     * <p>
+     * Tasks finish in any order; the first failure cancels every task still running and
+     * fails the returned future with that task's exception.
+     *
+     * @param keys the inputs, one task each
+     * @param task the work to do for one key
+     * @param <K>  the key type
+     * @param <T>  the result type
+     * @return a future completed with every result, keyed in the order of {@code keys}
+     *         (results may be {@code null})
+     */
+    public <K, T> CompletableFuture<Map<K, T>> fanOut(Collection<? extends K> keys,
+                                                      Function<? super K, ? extends T> task) {
+        List<K> order = new ArrayList<>(keys);
+        List<Future<T>> children = new ArrayList<>(order.size());
+        ExecutorCompletionService<T> completed = new ExecutorCompletionService<>(executor);
+        for (K key : order) {
+            children.add(completed.submit(() -> task.apply(key)));
+        }
+
+        CompletableFuture<Map<K, T>> result = new CompletableFuture<>();
+        // Covers both a failed child and the caller cancelling the whole fan-out
+        result.whenComplete((value, e) -> {
+            if (e != null) {
+                children.forEach(child -> child.cancel(true));
+            }
+        });
+
+        executor.execute(() -> {
+            try {
+                // Wait in completion order, so the first failure is seen right away
+                for (int i = 0; i < children.size(); i++) {
+                    completed.take().get();
+                }
+                Map<K, T> results = new LinkedHashMap<>();
+                for (int i = 0; i < order.size(); i++) {
+                    results.put(order.get(i), children.get(i).get());
+                }
+                result.complete(results);
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (CancellationException e) {
+                result.completeExceptionally(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Stops accepting new calls and waits for the running ones to finish.
+     * The wrapped {@link FF} stays open.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -0,0 +1,20 @@
+package FFPackage;
+
+/**
+ * File formats {@link FF#exportCharacters(java.nio.file.Path, ExportFormat)} can write.
+ */
+public enum ExportFormat {
+
+    /**
+     * Comma-separated values, one character per line:
+     * {@code id,name,job,level,hp,mp,isActive}. This is the import format with its ID column,
+     * so an export can be imported again as is; names containing commas or quotes are quoted.
+     */
+    CSV,
+
+    /**
+     * JSON Lines: one JSON object per line, e.g.
+     * {@code {"id":1042,"name":"Tifa","job":"Monk","level":48,"hp":8800,"mp":300,"active":false}}.
+     */
+    JSON_LINES
+}
@@ -1,11 +1,29 @@
 package FFPackage;
 
+import DBHelper.CharacterCache;
+import DBHelper.CharacterFilter;
+import DBHelper.CharacterPatch;
+import DBHelper.ConflictPolicy;
+import DBHelper.IdAllocator;
 import DBHelper.PCharacters;
-import java.io.File;
-import java.io.FileNotFoundException;
+import DBHelper.SequenceIdAllocator;
+import DBHelper.SortColumn;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Core service layer for managing {@link PCharacter} instances in the game.
@@ -13,59 +31,94 @@ import java.util.Scanner;
  * This class acts as a higher-level API over the {@link PCharacters} DAO:
  * it handles business rules such as:
  * <ul>
- *     <li>Generating unique IDs for new characters</li>
+ *     <li>Assigning unique IDs to new characters through an {@link IdAllocator}</li>
  *     <li>Clamping levels to allowed ranges</li>
  *     <li>Bulk-adding characters from a text file</li>
  *     <li>Convenience update and display operations</li>
  * </ul>
  */
-public class FF {
+public class FF implements AutoCloseable {
 
     /**
      * Database helper for persisting and querying characters.
      */
-    private final PCharacters db = new PCharacters();
+    private final PCharacters db;
 
     /**
      * Maximum allowed character level (inclusive).
      */
-    private final int MAX_LEVEL = 99;
+    static final int MAX_LEVEL = 99;
 
     /**
      * Minimum allowed character level (inclusive).
      */
-    private final int MIN_LEVEL = 1;
+    static final int MIN_LEVEL = 1;
+
+    /**
+     * Source of unique IDs for new characters.
+     */
+    private final IdAllocator ids;
+
+    /**
+     * Number of file rows collected before they are written to the database
+     * in one {@link PCharacters#insertBatch(java.util.Collection)} transaction.
+     */
+    static final int IMPORT_BATCH_SIZE = 10_000;
+
+    /**
+     * Creates a service backed by the default {@code ffgame.db} database.
+     */
+    public FF() {
+        this(new PCharacters());
+    }
+
+    /**
+     * Creates a service backed by the given DAO.
+     * <p>
+     * Useful for tests or tools that work on a different database file.
+     *
+     * @param db the DAO to use for all persistence
+     */
+    public FF(PCharacters db) {
+        this(db, new SequenceIdAllocator(db));
+    }
+
+    /**
+     * Creates a service backed by the given DAO and ID allocator.
+     *
+     * @param db  the DAO to use for all persistence
+     * @param ids the allocator that assigns IDs to new characters
+     */
+    public FF(PCharacters db, IdAllocator ids) {
+        this.db = db;
+        this.ids = ids;
+    }
 
     /**
      * Adds a single character to the database.
      * <p>
-     * If the provided {@link PCharacter} already has an ID that exists in the DB,
-     * a new ID is generated until a unique one is found (or a maximum number
-     * of attempts is reached).
+     * A character created without an ID (see {@link PCharacter#PCharacter}) gets a fresh one
+     * from the {@link IdAllocator}. A character with an explicit numeric ID keeps it if it is
+     * free; otherwise it is stored under an allocated ID instead. Neither case needs an existence
+     * check before inserting.
      *
      * @param pc the character to add (its name/job/level/etc. are used)
      * @return the final unique ID assigned to this character
-     * @throws IllegalStateException if a unique ID cannot be generated after
-     *                               a fixed number of attempts
+     * @throws IllegalStateException if the allocator's ID space is exhausted
      */
     public String addCharacter(PCharacter pc) {
-        String id = pc.getId();
-        int attempts = 0;
-        int maxAttempts = 100;
-
-        // Keep generating new IDs until we find a unique one
-        while (db.idExists(id)) {
-            id = PCharacter.generateId();
-            attempts++;
-
-            if (attempts >= maxAttempts) {
-                throw new IllegalStateException("Could not generate unique ID after " + maxAttempts + " attempts");
+        if (!pc.hasGeneratedId() && pc.getNumericId() >= 0) {
+            if (db.insertIfAbsent(pc)) {
+                // Make sure the allocator never hands out this ID later
+                ids.observe(pc.getNumericId());
+                return pc.getId();
             }
         }
 
-        // Insert with the unique ID
+        // Insert with an allocated ID, which is guaranteed to be unused
+        long id = ids.nextId();
         db.insert(id, pc.getName(), pc.getJob(), pc.getLevel(), pc.getHp(), pc.getMp(), pc.isActive());
-        return id;
+        return String.valueOf(id);
     }
 
     /**
@@ -77,22 +130,142 @@ public class FF {
         return db.selectAll();
     }
 
+    /**
+     * Passes every stored character to {@code action} straight from the database cursor,
+     * without loading the whole roster into memory first.
+     *
+     * @param action callback invoked for each character, in ID order
+     */
+    public void forEachCharacter(Consumer<? super PCharacter> action) {
+        db.forEach(action);
+    }
+
+    /**
+     * Returns a lazily populated stream over every stored character.
+     * <p>
+     * The stream holds a database connection and must be closed after use
+     * (see {@link PCharacters#stream()}).
+     *
+     * @return a stream of characters, in ID order
+     */
+    public Stream<PCharacter> streamCharacters() {
+        return db.stream();
+    }
+
+    /**
+     * Returns the next page of characters in the given order.
+     * <p>
+     * Pass {@code null} as {@code after} for the first page, then the last character
+     * of the previous page. See {@link PCharacters#selectPage(PCharacter, int, SortColumn)}.
+     *
+     * @param after last character of the previous page, or {@code null} for the first page
+     * @param limit maximum number of characters to return
+     * @param sort  the ordering to page through
+     * @return the next page, possibly empty
+     */
+    public List<PCharacter> getCharactersPage(PCharacter after, int limit, SortColumn sort) {
+        return db.selectPage(after, limit, sort);
+    }
+
+    /**
+     * Returns every character with the given job.
+     * <p>
+     * The job is matched case-insensitively; an unknown job simply matches nothing.
+     *
+     * @param job the job to look for, e.g. {@code "dragoon"}
+     * @return the matching characters, in ID order
+     */
+    public List<PCharacter> getCharactersByJob(String job) {
+        if (!PCharacter.isValidJob(job)) {
+            return new ArrayList<>();
+        }
+        return db.selectByJob(PCharacter.normalizeJob(job));
+    }
+
+    /**
+     * Returns every character whose level is between {@code minLevel} and {@code maxLevel}
+     * (both inclusive).
+     *
+     * @param minLevel the lowest accepted level
+     * @param maxLevel the highest accepted level
+     * @return the matching characters, in ID order
+     */
+    public List<PCharacter> getCharactersByLevelRange(int minLevel, int maxLevel) {
+        return db.selectByLevelRange(minLevel, maxLevel);
+    }
+
+    /**
+     * Returns the characters currently in the party.
+     *
+     * @return the active characters, in ID order
+     */
+    public List<PCharacter> getActiveParty() {
+        return db.selectActiveParty();
+    }
+
+    /**
+     * Returns every character matching a combined filter, e.g. all active Dragoons
+     * above level 50:
+     * <pre>
+     * ff.findCharacters(new CharacterFilter().job("Dragoon").active(true).minLevel(51));
+     * </pre>
+     * Jobs in the filter are matched ignoring case (see {@link Job#lookup(String)}).
+     *
+     * @param filter the conditions to match
+     * @return the matching characters, in ID order
+     */
+    public List<PCharacter> findCharacters(CharacterFilter filter) {
+        return db.select(filter);
+    }
+
+    /**
+     * Checks whether at least one character is stored, without loading any.
+     *
+     * @return {@code true} if the roster is not empty
+     */
+    public boolean hasCharacters() {
+        return !db.isEmpty();
+    }
+
     /**
      * Levels up a character by its ID, adjusting both level and HP.
      * <p>
      * The new level is clamped between {@link #MIN_LEVEL} and {@link #MAX_LEVEL}.
-     * HP is increased by a random amount up to 500.
+     * HP is increased by a random amount up to 500. Problems are printed, not thrown;
+     * see {@link #levelUp(String, int)} for the variant that throws.
      *
      * @param id        ID of the character to level up
      * @param increment how many levels to add (can be negative to level down)
      */
     public void levelUpById(String id, int increment) {
+        try {
+            PCharacter c = levelUp(id, increment);
+            System.out.println("Character leveled up! " + c.getName() + " is level " + c.getLevel());
+        } catch (NoSuchElementException e) {
+            System.out.println("Character not found!");
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-        PCharacter c = db.selectById(id);
-
+    /**
+     * Levels up a character by its ID, adjusting both level and HP, and reports failure
+     * by throwing. Used where the caller must know the outcome, e.g. {@link AsyncFF}.
+     * <p>
+     * The new values are computed from the stored row, never from the ID cache, so a change
+     * made meanwhile by another process (e.g. an import) is not overwritten with stale values.
+     *
+     * @param id        ID of the character to level up
+     * @param increment how many levels to add (can be negative to level down)
+     * @return the character with its new level and HP, as written
+     * @throws NoSuchElementException if no character has that ID
+     * @throws IllegalStateException  if the change could not be written
+     */
+    public PCharacter levelUp(String id, int increment) {
+        long numericId = PCharacter.parseId(id);
+        PCharacter c = numericId >= 0 ? db.selectByIdFresh(numericId) : null;
         if (c == null) {
-            System.out.println("Character not found!");
-            return;
+            throw new NoSuchElementException("No character with ID " + id);
         }
 
         int newLevel = c.getLevel() + increment;
@@ -101,11 +274,13 @@ public class FF {
 
         int newHp = c.getHp() + new Random().nextInt(500);
 
-        db.update("level", String.valueOf(newLevel), "id", id);
-        db.update("hp", String.valueOf(newHp), "id", id);
-
-        System.out.println("Character leveled up! " + c.getName() + " is level " + newLevel);
-
+        // Level and HP change together in one UPDATE
+        if (!db.update(numericId, new CharacterPatch().level(newLevel).hp(newHp))) {
+            throw new IllegalStateException("Failed to level up character " + id);
+        }
+        c.setLevel(newLevel);
+        c.setHp(newHp);
+        return c;
     }
 
     /**
@@ -114,7 +289,10 @@ public class FF {
      * @param id ID of the character to delete
      */
     public void removeCharacterById(String id) {
-        db.delete("id", id);
+        long numericId = PCharacter.parseId(id);
+        if (numericId >= 0) {
+            db.deleteById(numericId);
+        }
     }
 
     /**
@@ -138,7 +316,9 @@ public class FF {
                 """;
         // NOTE: the menu text lists "Change mp" but there is no case handling it yet.
 
-        PCharacter c = db.selectById(id);
+        // Start the session from the stored row, not a possibly stale cached copy
+        long numericId = PCharacter.parseId(id);
+        PCharacter c = numericId >= 0 ? db.selectByIdFresh(numericId) : null;
 
         boolean updating = true;
         while (updating) {
@@ -151,7 +331,7 @@ public class FF {
                     System.out.print("Enter new name: ");
                     String newName = sc.nextLine();
                     c.setName(newName);
-                    db.update("name", newName, "id", id);
+                    patch(id, new CharacterPatch().name(newName));
                     System.out.println("Character's name has been updated to: " + c.getName());
                     break;
                 case "2":
@@ -162,7 +342,7 @@ public class FF {
                         continue;
                     }
                     c.setJob(newJob);
-                    db.update("job", newJob, "id", id);
+                    patch(id, new CharacterPatch().job(c.getJob()));
                     System.out.println("Character's job has been updated to: " + c.getJob());
                     break;
                 case "3":
@@ -172,7 +352,7 @@ public class FF {
                         if (newLevel < MIN_LEVEL) newLevel = MIN_LEVEL;
                         if (newLevel > MAX_LEVEL) newLevel = MAX_LEVEL;
                         c.setLevel(newLevel);
-                        db.update("level", String.valueOf(newLevel), "id", id);
+                        patch(id, new CharacterPatch().level(newLevel));
                         System.out.println("Character's level has been updated to: " + c.getLevel());
                     } catch (NumberFormatException e) {
                         System.out.println("Invalid number!");
@@ -183,12 +363,15 @@ public class FF {
                     System.out.print("Enter new hp: ");
                     try {
                         int newHp = Integer.parseInt(sc.nextLine());
+                        patch(id, new CharacterPatch().hp(newHp));
                         c.setHp(newHp);
-                        db.update("hp", String.valueOf(newHp), "id", id);
                         System.out.println("Character's hp has been updated to: " + c.getHp());
                     } catch (NumberFormatException e) {
                         System.out.println("Invalid number!");
                         continue;
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage());
+                        continue;
                     }
                     break;
                 case "5":
@@ -201,59 +384,232 @@ public class FF {
         }
     }
 
+    /**
+     * Reads a list of characters from a text file and adds them to the database.
+     * Rows that carry an ID overwrite the stored character with that ID.
+     *
+     * @param filename path to the input file
+     * @see #addCharactersFromFile(String, ConflictPolicy)
+     */
+    public void addCharactersFromFile(String filename) {
+        addCharactersFromFile(filename, ConflictPolicy.OVERWRITE);
+    }
+
     /**
      * Reads a list of characters from a text file and adds them to the database.
      * <p>
-     * Each line is expected to have the format:
+     * Each line is expected to have one of the formats:
      * <pre>
      * name,job,level,hp,mp,isActive
+     * id,name,job,level,hp,mp,isActive
      * </pre>
      * Lines that are malformed or contain invalid data are skipped with a message.
+     * <p>
+     * Rows without an ID are new characters: their IDs come from the {@link IdAllocator}.
+     * Rows with an ID are upserted: inserted if the ID is free, otherwise handled by
+     * {@code policy}. Stored characters the file does not change are not rewritten, so
+     * re-importing a nightly roster only writes what differs.
      *
      * @param filename path to the input file
+     * @param policy   what to do with rows whose ID is already stored
+     * @see #importCharacters(Path, ConflictPolicy, ImportProgressListener)
      */
-    public void addCharactersFromFile(String filename) {
-        try (Scanner fileScanner = new Scanner(new File(filename))) {
-            while (fileScanner.hasNextLine()) {
-                String line = fileScanner.nextLine();
-                String[] parts = line.split(",");
-                if (parts.length != 6) {
-                    System.out.println("Skipping invalid line: " + line);
-                    continue;
-                }
-
-                try {
-                    String name = parts[0].trim();
-                    String job = parts[1].trim();
-                    int level = Integer.parseInt(parts[2].trim());
-                    int hp = Integer.parseInt(parts[3].trim());
-                    int mp = Integer.parseInt(parts[4].trim());
-                    boolean isActive = Boolean.parseBoolean(parts[5].trim().toLowerCase());
-
-                    // Validate job against allowed values
-                    if (!PCharacter.isValidJob(job)) {
-                        System.out.println("Invalid job in file, skipping: " + job);
-                        continue;
-                    }
+    public void addCharactersFromFile(String filename, ConflictPolicy policy) {
+        ImportProgressListener printer = new ImportProgressListener() {
+            @Override
+            public void onProgress(ImportProgress progress) {
+            }
 
-                    // Clamp level into allowed range
-                    if (level < MIN_LEVEL) level = MIN_LEVEL;
-                    if (level > MAX_LEVEL) level = MAX_LEVEL;
-
-                    PCharacter newChar = new PCharacter("", name, job, level, hp, mp, isActive);
-                    addCharacter(newChar);
-                    System.out.println("Added: " + newChar);
-                } catch (NumberFormatException nfe) {
-                    System.out.println("Invalid number in line: " + line + " -> " + nfe.getMessage());
-                } catch (IllegalArgumentException iae) {
-                    System.out.println("Invalid character data: " + line + " -> " + iae.getMessage());
-                }
+            @Override
+            public void onError(long lineNumber, String line, String reason) {
+                System.out.println(reason);
             }
-        } catch (FileNotFoundException e) {
+
+            @Override
+            public void onResume(long byteOffset, long lineNumber) {
+                System.out.println("Resuming import of " + filename + " after line " + lineNumber);
+            }
+        };
+
+        try {
+            ImportProgress result = importCharacters(Path.of(filename), policy, printer);
+            if (result.getRows() == result.getAdded()) {
+                System.out.println("Added " + result.getAdded() + " characters from " + filename);
+            } else {
+                System.out.println("Added " + result.getAdded() + " characters from " + filename + "; "
+                        + result.getUpserted() + " of " + (result.getRows() - result.getAdded())
+                        + " rows with an ID inserted or updated (" + policy + ")");
+            }
+        } catch (NoSuchFileException e) {
             System.out.println("File not found: " + filename);
+        } catch (IOException e) {
+            System.out.println("Failed to read " + filename + ": " + e.getMessage());
         }
     }
 
+    /**
+     * Imports a roster file using every core, reporting progress as it goes.
+     * <p>
+     * The file may be plain or gzip-compressed; gzip is recognized by its content, not its name.
+     * <p>
+     * The file format and conflict handling are those of
+     * {@link #addCharactersFromFile(String, ConflictPolicy)}. One thread reads the file,
+     * the others parse and validate blocks of lines in parallel, and the calling thread
+     * writes the rows in file order, in transactions of {@link #IMPORT_BATCH_SIZE} rows.
+     * Memory use stays bounded however large the file is.
+     * <p>
+     * Progress is checkpointed with each transaction. If an import of this exact file was
+     * interrupted (crash, restart), this call resumes after the last committed line instead
+     * of importing everything again; {@link ImportProgressListener#onResume} is told where.
+     *
+     * @param file     the roster file
+     * @param policy   what to do with rows whose ID is already stored
+     * @param listener receives progress and skipped lines, on the calling thread
+     * @return the final counters
+     * @throws IOException if the file cannot be read
+     */
+    public ImportProgress importCharacters(Path file, ConflictPolicy policy, ImportProgressListener listener)
+            throws IOException {
+        return importer(policy, listener).run(file);
+    }
+
+    /**
+     * Imports a roster from a stream, e.g. a network download or a pipe.
+     * <p>
+     * Gzip data is recognized by its magic bytes and decompressed on the fly, without a
+     * temporary file; other data is read as plain text. Zstandard, bzip2 and xz data is
+     * rejected with an explicit message. The file format, conflict handling and pipeline are
+     * those of {@link #importCharacters(Path, ConflictPolicy, ImportProgressListener)}, but a
+     * stream has no known size (so no ETA) and cannot be resumed.
+     *
+     * @param source   the roster data; read to its end but not closed
+     * @param policy   what to do with rows whose ID is already stored
+     * @param listener receives progress and skipped lines, on the calling thread
+     * @return the final counters
+     * @throws IOException if the stream cannot be read, or is compressed in an unsupported format
+     */
+    public ImportProgress importCharacters(InputStream source, ConflictPolicy policy, ImportProgressListener listener)
+            throws IOException {
+        return importer(policy, listener).run(source);
+    }
+
+    /**
+     * Imports a roster from a channel; see {@link #importCharacters(InputStream, ConflictPolicy, ImportProgressListener)}.
+     *
+     * @param source   the roster data, plain or gzip; read to its end but not closed
+     * @param policy   what to do with rows whose ID is already stored
+     * @param listener receives progress and skipped lines, on the calling thread
+     * @return the final counters
+     * @throws IOException if the channel cannot be read, or is compressed in an unsupported format
+     */
+    public ImportProgress importCharacters(ReadableByteChannel source, ConflictPolicy policy,
+                                           ImportProgressListener listener) throws IOException {
+        return importCharacters(Channels.newInputStream(source), policy, listener);
+    }
+
+    /**
+     * Takes a column-oriented snapshot of the whole roster for statistics.
+     * <p>
+     * The roster is read with one database scan into primitive arrays (see
+     * {@link RosterSnapshot}); later changes to the database are not reflected in it.
+     *
+     * @return the snapshot
+     * @throws RuntimeException if the characters cannot be read
+     */
+    public RosterSnapshot snapshot() {
+        return RosterSnapshot.of(db);
+    }
+
+    /**
+     * Writes every character to a file, compressing it with gzip if the file name ends in {@code .gz}.
+     *
+     * @param file   the target file; replaced if it exists
+     * @param format the output format
+     * @return the number of characters written
+     * @throws IOException if the file cannot be written
+     * @see #exportCharacters(Path, ExportFormat, boolean)
+     */
+    public long exportCharacters(Path file, ExportFormat format) throws IOException {
+        return exportCharacters(file, format, file.getFileName().toString().endsWith(".gz"));
+    }
+
+    /**
+     * Writes every character to a file, in ID order.
+     * <p>
+     * Rows are streamed from a database cursor and encoded into one reusable direct buffer
+     * that is written to the file channel as it fills, so memory use does not depend on the
+     * size of the roster. The cursor reads a single consistent snapshot of the table. A
+     * {@link ExportFormat#CSV} export can be imported again with
+     * {@link #importCharacters(Path, ConflictPolicy, ImportProgressListener)}, restoring the
+     * same IDs.
+     * <p>
+     * The file appears only once it is complete; if the export fails, an existing file with
+     * the same name is left as it was.
+     *
+     * @param file   the target file; replaced if it exists
+     * @param format the output format
+     * @param gzip   {@code true} to compress the output with gzip
+     * @return the number of characters written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportCharacters(Path file, ExportFormat format, boolean gzip) throws IOException {
+        try (Stream<PCharacter> characters = db.stream()) {
+            return new RosterExporter(format, gzip).export(file, characters.iterator());
+        }
+    }
+
+    /**
+     * Creates the pipeline for one import.
+     *
+     * @param policy   what to do with rows whose ID is already stored
+     * @param listener receives progress and skipped lines
+     * @return a new importer
+     */
+    private RosterImporter importer(ConflictPolicy policy, ImportProgressListener listener) {
+        return new RosterImporter(db, ids, policy, listener, RosterImporter.DEFAULT_WORKERS, IMPORT_BATCH_SIZE);
+    }
+
+    /**
+     * Returns the character with the given ID.
+     *
+     * @param id the character ID
+     * @return the character, or {@code null} if there is none (or the ID is not numeric)
+     */
+    public PCharacter getCharacter(String id) {
+        return db.selectById(id);
+    }
+
+    /**
+     * Returns many characters at once, e.g. for the rows selected in a table.
+     *
+     * @param ids the IDs to fetch
+     * @return the characters found, keyed by ID in the order given; unknown IDs are left out
+     * @see PCharacters#selectByIds(Collection)
+     */
+    public Map<String, PCharacter> getCharacters(Collection<String> ids) {
+        return db.selectByIds(ids);
+    }
+
+    /**
+     * Checks whether every given ID has a character.
+     *
+     * @param ids the IDs to check
+     * @return {@code true} if all of them exist
+     */
+    public boolean charactersExist(Collection<String> ids) {
+        return db.existsAll(ids);
+    }
+
+    /**
+     * Returns the given IDs that have no character.
+     *
+     * @param ids the IDs to check
+     * @return the missing IDs, in the order given
+     */
+    public Set<String> missingCharacterIds(Collection<String> ids) {
+        return db.missingIds(ids);
+    }
+
     /**
      * Checks if a character with the given ID exists in the database.
      *
@@ -272,7 +628,7 @@ public class FF {
      * @param newName new name to set
      */
     public void updateCharacterName(String id, String newName) {
-        db.update("name", newName, "id", id);  // SET name=newName WHERE id=id
+        patch(id, new CharacterPatch().name(newName));  // SET name=newName WHERE id=id
     }
 
     /**
@@ -288,7 +644,7 @@ public class FF {
         if (!PCharacter.isValidJob(newJob)) {
             throw new IllegalArgumentException("Invalid job: " + newJob);
         }
-        db.update("job", newJob, "id", id);  // SET job=newJob WHERE id=id
+        patch(id, new CharacterPatch().job(PCharacter.normalizeJob(newJob)));  // SET job=newJob WHERE id=id
     }
 
     /**
@@ -305,21 +661,31 @@ public class FF {
         if (newLevel < MIN_LEVEL) newLevel = MIN_LEVEL;
         if (newLevel > MAX_LEVEL) newLevel = MAX_LEVEL;
 
-        db.update("level", String.valueOf(newLevel), "id", id);
+        patch(id, new CharacterPatch().level(newLevel));
     }
 
     /**
      * Updates a character's HP in the database.
-     * <p>
-     * Note: the database column is integer-based; the {@code double}
-     * value will be stringified and stored as such. If the DB expects
-     * an integer, you may want to change this method to accept an {@code int}.
      *
      * @param id    ID of the character to update
      * @param newHp new HP value to set
+     * @throws IllegalArgumentException if {@code newHp} is negative
+     */
+    public void updateCharacterHp(String id, int newHp) {
+        patch(id, new CharacterPatch().hp(newHp));
+    }
+
+    /**
+     * Applies a patch to the character with the given ID, if the ID is valid.
+     *
+     * @param id    ID of the character to update
+     * @param patch the fields to change
      */
-    public void updateCharacterHp(String id, double newHp) {
-        db.update("hp", String.valueOf(newHp), "id", id);
+    private void patch(String id, CharacterPatch patch) {
+        long numericId = PCharacter.parseId(id);
+        if (numericId >= 0) {
+            db.update(numericId, patch);
+        }
     }
 
     /**
@@ -333,4 +699,59 @@ public class FF {
         db.printById(id);
     }
 
+    /**
+     * Turns on the read-through ID cache with its default size and time-to-live.
+     *
+     * @return the attached cache, for reading its hit/miss counters
+     * @see #enableCache(int, long)
+     */
+    public CharacterCache enableCache() {
+        return enableCache(CharacterCache.DEFAULT_MAX_ENTRIES, CharacterCache.DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Turns on the read-through ID cache, replacing any cache already attached.
+     * <p>
+     * Repeated lookups of the same IDs (existence checks, level-ups, edits) are then
+     * answered from memory; every write made through this service keeps the cache in sync.
+     *
+     * @param maxEntries maximum number of cached characters
+     * @param ttlMillis  how long an entry stays valid, in milliseconds ({@code 0} = forever)
+     * @return the attached cache, for reading its hit/miss counters
+     */
+    public CharacterCache enableCache(int maxEntries, long ttlMillis) {
+        CharacterCache cache = new CharacterCache(maxEntries, ttlMillis);
+        db.setCache(cache);
+        return cache;
+    }
+
+    /**
+     * Turns on write-behind mode: edits are merged per character in memory and written
+     * in one transaction at short intervals instead of one commit each.
+     * <p>
+     * Meant for tools that touch the same characters many times per second. Reads through
+     * this service still see every edit; edits not yet flushed are lost if the process is killed.
+     *
+     * @see PCharacters#enableWriteBehind(long, int)
+     */
+    public void enableWriteBehind() {
+        db.enableWriteBehind();
+    }
+
+    /**
+     * Writes any buffered write-behind edits now.
+     *
+     * @return the number of characters written
+     */
+    public int flush() {
+        return db.flush();
+    }
+
+    /**
+     * Releases the database connections held by this service.
+     */
+    @Override
+    public void close() {
+        db.close();
+    }
 }
@@ -1,9 +1,13 @@
 package FFPackage;
 
+import DBHelper.ConflictPolicy;
 import DBHelper.PCharacters;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -18,6 +22,11 @@ import java.util.Scanner;
  *     <li>Updating and removing characters</li>
  * </ul>
  * It delegates all business logic to {@link FF} and persistence to {@link PCharacters}.
+ * <p>
+ * Started with {@code --cache}, lookups by ID are served from a short-lived in-memory cache
+ * (see {@link FF#enableCache()}). It is off by default, because the GUI and the
+ * {@code --watch} mode may change the same database file at the same time, and a cached
+ * character can then be shown out of date.
  */
 public class FFCLI {
 
@@ -37,9 +46,14 @@ public class FFCLI {
      * Displays a looped menu and routes user input to the corresponding
      * handler methods until the user chooses to exit.
      *
-     * @param args command line arguments (unused)
+     * @param args command line arguments: {@code --cache} turns on the ID cache
      */
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--cache")) {
+            // Opt-in only: other processes' writes show up late while it is on
+            ff.enableCache();
+        }
+
         while (true) {
             System.out.println("\n--- Final Fantasy Manager (CLI) ---");
             System.out.println("1. Add character manually");
@@ -48,7 +62,8 @@ public class FFCLI {
             System.out.println("4. Level up character");
             System.out.println("5. Remove character");
             System.out.println("6. Update character");
-            System.out.println("7. Exit");
+            System.out.println("7. Export characters to file");
+            System.out.println("8. Exit");
             System.out.print("Choose: ");
 
             String choice = sc.nextLine();
@@ -59,12 +74,39 @@ public class FFCLI {
                 case "4": levelUp(); break;
                 case "5": remove(); break;
                 case "6": update(); break;
-                case "7": System.exit(0);
+                case "7": export(); break;
+                case "8": ff.close(); System.exit(0);
                 default: System.out.println("Invalid choice!");
             }
         }
     }
 
+    /**
+     * Asks for a file path and a format, then exports every character to that file.
+     * <p>
+     * A path ending in {@code .gz} is written gzip-compressed. CSV exports can be
+     * imported again with menu option 2.
+     */
+    private static void export() {
+        System.out.print("Enter target filename (absolute path, add .gz to compress): ");
+        String path = sc.nextLine().trim();
+        if (path.isEmpty()) {
+            System.out.println("No file given.");
+            return;
+        }
+        System.out.print("Format: 1. CSV (default)  2. JSON Lines: ");
+        ExportFormat format = sc.nextLine().trim().equals("2") ? ExportFormat.JSON_LINES : ExportFormat.CSV;
+
+        try {
+            long start = System.nanoTime();
+            long count = ff.exportCharacters(Path.of(path), format);
+            System.out.println("Exported " + count + " characters to " + path + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Failed to export to " + path + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Interactive flow to manually add characters one by one.
      * <p>
@@ -99,8 +141,10 @@ public class FFCLI {
      * Asks the user for a file path and imports characters from that file.
      * <p>
      * The actual parsing and validation is delegated to
-     * {@link FF#addCharactersFromFile(String)}.
+     * {@link FF#importCharacters(java.nio.file.Path, ConflictPolicy, ImportProgressListener)};
+     * progress is shown on a single updating line.
      * The path must point to an existing file or an error is shown.
+     * The user also picks what happens to rows whose ID is already stored.
      */
     private static void addFromFile() {
         System.out.print("Enter filename (absolute path): ");
@@ -110,8 +154,37 @@ public class FFCLI {
             System.out.println("File does not exist.");
             return;
         }
-        ff.addCharactersFromFile(path);
-        System.out.println("Characters imported from file.");
+        System.out.print("Existing IDs: 1. Overwrite (default)  2. Skip  3. Keep higher level: ");
+        ConflictPolicy policy;
+        switch (sc.nextLine().trim()) {
+            case "2": policy = ConflictPolicy.SKIP; break;
+            case "3": policy = ConflictPolicy.MERGE_MAX_LEVEL; break;
+            default: policy = ConflictPolicy.OVERWRITE;
+        }
+        try {
+            ImportProgress result = ff.importCharacters(f.toPath(), policy, new ImportProgressListener() {
+                @Override
+                public void onProgress(ImportProgress progress) {
+                    System.out.print("\rImporting: " + progress + "    ");
+                }
+
+                @Override
+                public void onError(long lineNumber, String line, String reason) {
+                    System.out.println("\rLine " + lineNumber + ": " + reason);
+                }
+
+                @Override
+                public void onResume(long byteOffset, long lineNumber) {
+                    System.out.println("Resuming an interrupted import after line " + lineNumber + ".");
+                }
+            });
+            System.out.println();
+            System.out.println("Characters imported from file: " + result.getAdded() + " added, "
+                    + result.getUpserted() + " inserted or updated by ID, " + result.getErrors()
+                    + " lines skipped, in " + result.getElapsedMillis() + " ms.");
+        } catch (IOException e) {
+            System.out.println("Failed to read " + path + ": " + e.getMessage());
+        }
     }
 
     /**
@@ -120,15 +193,12 @@ public class FFCLI {
      * If there are no characters, a friendly message is shown instead.
      */
     private static void display() {
-        ArrayList<PCharacter> characters = ff.getCharacters();
-        if (characters.isEmpty()) {
+        if (!ff.hasCharacters()) {
             System.out.println("No characters added!");
             return;
-        } else {
-            for (PCharacter c : ff.getCharacters()) {
-                System.out.println(c);
-            }
         }
+        // Rows are printed as they are read, so large rosters never sit in memory
+        ff.forEachCharacter(System.out::println);
     }
 
     /**
@@ -137,18 +207,17 @@ public class FFCLI {
      * Includes:
      * <ul>
      *     <li>Early exit with "E"</li>
-     *     <li>Basic ID length validation</li>
+     *     <li>Basic ID format validation (digits only)</li>
      *     <li>Existence check before leveling up</li>
      * </ul>
      */
     private static void levelUp() {
 
-        int maxDigit = 4;
         boolean active = true;
-        ArrayList<PCharacter> characters = ff.getCharacters();
+        boolean empty = !ff.hasCharacters();
 
         while (active) {
-            if (characters.isEmpty()) {
+            if (empty) {
                 System.out.println("No characters in the database!");
                 active = false;
 
@@ -161,7 +230,7 @@ public class FFCLI {
                     break;
                 }
 
-                if (id.length() > maxDigit || id.isEmpty()) {
+                if (!id.matches("\\d+")) {
                     System.out.println("Invalid character id!");
                     continue;
                 }
@@ -191,8 +260,7 @@ public class FFCLI {
      * update sub-menu.
      */
     public static void update() {
-        ArrayList<PCharacter> characters = ff.getCharacters();
-        if (characters.isEmpty()) {
+        if (!ff.hasCharacters()) {
             System.out.println("No characters to update!");
             return;
         }
@@ -224,7 +292,7 @@ public class FFCLI {
      */
     private static void remove() {
         boolean searching = true;
-        if (ff.getCharacters().isEmpty()) {
+        if (!ff.hasCharacters()) {
             System.out.println("\nNo characters to remove!");
             return;
 
@@ -361,7 +429,8 @@ public class FFCLI {
      * @param id ID of the character to debug-print
      */
     public static void debugCharacter(String id) {
-        PCharacters db = new PCharacters();
-        db.printById(id);
+        try (PCharacters db = new PCharacters()) {
+            db.printById(id);
+        }
     }
 }
@@ -1,5 +1,6 @@
 package FFPackage;
 
+import DBHelper.ConflictPolicy;
 import com.formdev.flatlaf.FlatDarkLaf;
 import com.formdev.flatlaf.FlatLightLaf;
 import javax.swing.*;
@@ -8,8 +9,10 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.HierarchyEvent;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Swing-based GUI for managing {@link PCharacter} instances.
@@ -178,7 +181,10 @@ public class FFGUI {
         update.addActionListener(_ -> updateSelected());
         remove.addActionListener(_ -> removeSelected());
         clear.addActionListener(_ -> characterTable.clearSelection());
-        exit.addActionListener(_ -> System.exit(0));
+        exit.addActionListener(_ -> {
+            ff.close();
+            System.exit(0);
+        });
 
         // Load initial data into the table
         refreshTable();
@@ -252,8 +258,7 @@ public class FFGUI {
     private void refreshTable() {
         tableModel.setRowCount(0);
 
-        ArrayList<PCharacter> characters = ff.getCharacters();
-        for (PCharacter c : characters) {
+        ff.forEachCharacter(c -> {
             Object[] row = {
                     c.getId(),
                     c.getName(),
@@ -264,7 +269,7 @@ public class FFGUI {
                     c.isActive() ? "Yes" : "No"
             };
             tableModel.addRow(row);
-        }
+        });
 
         updateRandomJobIcon();
     }
@@ -327,16 +332,67 @@ public class FFGUI {
     /**
      * Opens a file chooser and imports characters from the selected file.
      * <p>
-     * Delegates actual file parsing and validation to
-     * {@link FF#addCharactersFromFile(String)}.
+     * The import runs in a {@link SwingWorker} through
+     * {@link FF#importCharacters(java.nio.file.Path, ConflictPolicy, ImportProgressListener)},
+     * so the window stays responsive; a small dialog shows a progress bar with the
+     * current rate, error count and ETA.
      */
     private void addCharacterFromFile() {
         JFileChooser chooser = new JFileChooser();
-        if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-            ff.addCharactersFromFile(chooser.getSelectedFile().getAbsolutePath());
-            refreshTable();
-            JOptionPane.showMessageDialog(frame, "Characters imported successfully!");
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        Path file = chooser.getSelectedFile().toPath();
+
+        JProgressBar progressBar = new JProgressBar(0, 1000);
+        progressBar.setIndeterminate(true);
+        JLabel status = new JLabel("Starting import...");
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 8));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(new JLabel("Importing " + file.getFileName()));
+        panel.add(progressBar);
+        panel.add(status);
+
+        JDialog dialog = new JDialog(frame, "Import", false);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.add(panel);
+        dialog.setSize(420, 150);
+        dialog.setLocationRelativeTo(frame);
+
+        new SwingWorker<ImportProgress, ImportProgress>() {
+            @Override
+            protected ImportProgress doInBackground() throws Exception {
+                return ff.importCharacters(file, ConflictPolicy.OVERWRITE, this::publish);
+            }
+
+            @Override
+            protected void process(List<ImportProgress> updates) {
+                ImportProgress latest = updates.get(updates.size() - 1);
+                double fraction = latest.getFraction();
+                progressBar.setIndeterminate(fraction < 0);
+                if (fraction >= 0) {
+                    progressBar.setValue((int) (fraction * 1000));
+                }
+                status.setText(latest.toString());
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+                try {
+                    ImportProgress result = get();
+                    refreshTable();
+                    JOptionPane.showMessageDialog(frame, "Characters imported successfully!\n"
+                            + result.getAdded() + " added, " + result.getUpserted() + " inserted or updated by ID, "
+                            + result.getErrors() + " lines skipped.");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(frame, "Import failed: " + e.getCause().getMessage());
+                }
+            }
+        }.execute();
+        dialog.setVisible(true);
     }
 
     /**
@@ -0,0 +1,185 @@
+package FFPackage;
+
+/**
+ * A snapshot of a running (or finished) roster import, handed to an
+ * {@link ImportProgressListener}.
+ * <p>
+ * Snapshots are immutable, so a listener may keep one or pass it to another thread
+ * (e.g. the Swing event thread) without copying it.
+ */
+public final class ImportProgress {
+
+    /** Valid rows read from the source so far. */
+    private final long rows;
+
+    /** Rows without an ID that were added as new characters. */
+    private final long added;
+
+    /** Rows with an ID that inserted or changed a character. */
+    private final long upserted;
+
+    /** Lines that were skipped because they could not be imported. */
+    private final long errors;
+
+    /** Bytes of the source processed so far. */
+    private final long bytesRead;
+
+    /** Size of the source in bytes, or {@code -1} if unknown. */
+    private final long totalBytes;
+
+    /** Offset the import resumed from; bytes before it were committed by an earlier run. */
+    private final long resumedFrom;
+
+    /** Time since the import started, in nanoseconds. */
+    private final long elapsedNanos;
+
+    /** Whether this is the final snapshot. */
+    private final boolean done;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param rows         valid rows read so far
+     * @param added        rows added as new characters
+     * @param upserted     rows with an ID that were inserted or changed
+     * @param errors       lines skipped as invalid
+     * @param bytesRead    bytes of the source processed so far
+     * @param totalBytes   size of the source, or {@code -1} if unknown
+     * @param resumedFrom  offset the import resumed from, or {@code 0}
+     * @param elapsedNanos time since the import started
+     * @param done         whether the import has finished
+     */
+    ImportProgress(long rows, long added, long upserted, long errors, long bytesRead,
+                   long totalBytes, long resumedFrom, long elapsedNanos, boolean done) {
+        this.rows = rows;
+        this.added = added;
+        this.upserted = upserted;
+        this.errors = errors;
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.resumedFrom = resumedFrom;
+        this.elapsedNanos = elapsedNanos;
+        this.done = done;
+    }
+
+    /**
+     * Returns the number of valid rows read so far.
+     *
+     * @return the number of valid rows read so far
+     */
+    public long getRows() { return rows; }
+
+    /**
+     * Returns the number of rows added as new characters.
+     *
+     * @return the number of rows added as new characters
+     */
+    public long getAdded() { return added; }
+
+    /**
+     * Returns the number of rows with an ID that inserted or changed a character.
+     *
+     * @return the number of rows with an ID that inserted or changed a character
+     */
+    public long getUpserted() { return upserted; }
+
+    /**
+     * Returns the number of lines skipped as invalid.
+     *
+     * @return the number of lines skipped as invalid
+     */
+    public long getErrors() { return errors; }
+
+    /**
+     * Returns the number of bytes of the source processed so far.
+     *
+     * @return the number of bytes of the source processed so far
+     */
+    public long getBytesRead() { return bytesRead; }
+
+    /**
+     * Returns the size of the source in bytes.
+     *
+     * @return the size of the source in bytes, or {@code -1} if unknown (e.g. a stream)
+     */
+    public long getTotalBytes() { return totalBytes; }
+
+    /**
+     * Returns the offset this import resumed from after an interrupted run.
+     * Rows before it were imported by that run and are not counted here.
+     *
+     * @return the offset in bytes, or {@code 0} if the import started from the beginning
+     */
+    public long getResumedFrom() { return resumedFrom; }
+
+    /**
+     * Returns the time since the import started.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+    /**
+     * Indicates whether the import has finished.
+     *
+     * @return {@code true} for the final snapshot
+     */
+    public boolean isDone() { return done; }
+
+    /**
+     * Returns the average import rate so far.
+     *
+     * @return valid rows per second, or {@code 0} before any time has passed
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? rows * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * Returns how much of the source has been processed, including any part skipped by resuming.
+     *
+     * @return a value between {@code 0} and {@code 1}, or {@code -1} if the size is unknown
+     */
+    public double getFraction() {
+        if (totalBytes <= 0) {
+            return done ? 1 : -1;
+        }
+        return Math.min(1.0, (double) bytesRead / totalBytes);
+    }
+
+    /**
+     * Estimates the time left, assuming the rest of the source goes as fast as what was read so far.
+     *
+     * @return the estimated remaining time in milliseconds, or {@code -1} if it cannot be estimated
+     */
+    public long getEtaMillis() {
+        if (done) {
+            return 0;
+        }
+        long processed = bytesRead - resumedFrom;
+        if (totalBytes <= 0 || processed <= 0) {
+            return -1;
+        }
+        return (long) ((double) elapsedNanos / processed * (totalBytes - bytesRead)) / 1_000_000;
+    }
+
+    /**
+     * Returns a one-line summary, e.g. {@code "120000 rows, 3 errors, 250000 rows/s, 40%, ETA 2 s"}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append(rows).append(" rows, ")
+                .append(errors).append(" errors, ")
+                .append(Math.round(getRowsPerSecond())).append(" rows/s");
+        double fraction = getFraction();
+        if (fraction >= 0) {
+            sb.append(", ").append(Math.round(fraction * 100)).append('%');
+        }
+        long eta = getEtaMillis();
+        if (!done && eta >= 0) {
+            sb.append(", ETA ").append((eta + 999) / 1000).append(" s");
+        }
+        return sb.toString();
+    }
+}
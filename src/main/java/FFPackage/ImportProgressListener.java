@@ -0,0 +1,51 @@
+package FFPackage;
+
+/**
+ * Receives progress from a roster import started with
+ * {@link FF#importCharacters(java.nio.file.Path, DBHelper.ConflictPolicy, ImportProgressListener)}.
+ * <p>
+ * All callbacks are made on the thread that runs the import, in file order, so an
+ * implementation needs no locking of its own. A GUI should hand the snapshots over to
+ * its event thread (e.g. through {@link javax.swing.SwingWorker#publish}).
+ */
+@FunctionalInterface
+public interface ImportProgressListener {
+
+    /** A listener that ignores every event. */
+    ImportProgressListener NONE = progress -> { };
+
+    /**
+     * Called periodically while the import runs (a few times per second at most).
+     *
+     * @param progress the current counters
+     */
+    void onProgress(ImportProgress progress);
+
+    /**
+     * Called for every line that is skipped because it cannot be imported.
+     *
+     * @param lineNumber the 1-based line number in the source
+     * @param line       the line as read (without its line terminator)
+     * @param reason     why the line was skipped
+     */
+    default void onError(long lineNumber, String line, String reason) {
+    }
+
+    /**
+     * Called before anything else when an interrupted import of the same file is resumed.
+     *
+     * @param byteOffset where the import continues; everything before it is already stored
+     * @param lineNumber number of lines before {@code byteOffset}
+     */
+    default void onResume(long byteOffset, long lineNumber) {
+    }
+
+    /**
+     * Called once when the import has finished successfully.
+     *
+     * @param progress the final counters; {@link ImportProgress#isDone()} is {@code true}
+     */
+    default void onComplete(ImportProgress progress) {
+        onProgress(progress);
+    }
+}
@@ -0,0 +1,232 @@
+package FFPackage;
+
+/**
+ * The jobs a {@link PCharacter} can have.
+ * <p>
+ * Each job has a display name (the title-case form shown to users and written to files)
+ * and a small integer code, which is what the database stores in {@code characters.job}.
+ * Codes are fixed per job and must never be changed or reused, because existing databases
+ * refer to them; new jobs get the next free code. The declaration order is only the order
+ * jobs are listed in.
+ * <p>
+ * {@link #lookup(String)} finds a job by name in constant time, ignoring case and
+ * surrounding whitespace, without creating any objects.
+ */
+public enum Job {
+
+    /** Warrior. */
+    WARRIOR(1, "Warrior"),
+
+    /** Thief. */
+    THIEF(2, "Thief"),
+
+    /** Monk. */
+    MONK(3, "Monk"),
+
+    /** Red Mage. */
+    RED_MAGE(4, "Red Mage"),
+
+    /** White Mage. */
+    WHITE_MAGE(5, "White Mage"),
+
+    /** Black Mage. */
+    BLACK_MAGE(6, "Black Mage"),
+
+    /** Knight. */
+    KNIGHT(7, "Knight"),
+
+    /** Ninja. */
+    NINJA(8, "Ninja"),
+
+    /** Master. */
+    MASTER(9, "Master"),
+
+    /** Red Wizard. */
+    RED_WIZARD(10, "Red Wizard"),
+
+    /** White Wizard. */
+    WHITE_WIZARD(11, "White Wizard"),
+
+    /** Black Wizard. */
+    BLACK_WIZARD(12, "Black Wizard"),
+
+    /** Archer. */
+    ARCHER(13, "Archer"),
+
+    /** Bard. */
+    BARD(14, "Bard"),
+
+    /** Beastmaster. */
+    BEASTMASTER(15, "Beastmaster"),
+
+    /** Berserker. */
+    BERSERKER(16, "Berserker"),
+
+    /** Blue Mage. */
+    BLUE_MAGE(17, "Blue Mage"),
+
+    /** Chemist. */
+    CHEMIST(18, "Chemist"),
+
+    /** Dancer. */
+    DANCER(19, "Dancer"),
+
+    /** Dark Knight. */
+    DARK_KNIGHT(20, "Dark Knight"),
+
+    /** Dragoon. */
+    DRAGOON(21, "Dragoon"),
+
+    /** Machinist. */
+    MACHINIST(22, "Machinist"),
+
+    /** Geomancer. */
+    GEOMANCER(23, "Geomancer"),
+
+    /** Samurai. */
+    SAMURAI(24, "Samurai"),
+
+    /** Summoner. */
+    SUMMONER(25, "Summoner"),
+
+    /** Scholar. */
+    SCHOLAR(26, "Scholar"),
+
+    /** Astrologian. */
+    ASTROLOGIAN(27, "Astrologian"),
+
+    /** Time Mage. */
+    TIME_MAGE(28, "Time Mage"),
+
+    /** Prince. */
+    PRINCE(29, "Prince"),
+
+    /** Soldier. */
+    SOLDIER(30, "Soldier"),
+
+    /** Saboteur. */
+    SABOTEUR(31, "Saboteur");
+
+    /** Jobs indexed by code; unused codes are {@code null}. */
+    private static final Job[] BY_CODE;
+
+    /** Open-addressing table from case-folded name hash to job; {@code null} is empty. */
+    private static final Job[] BY_NAME;
+
+    static {
+        int maxCode = 0;
+        for (Job job : values()) {
+            maxCode = Math.max(maxCode, job.code);
+        }
+        BY_CODE = new Job[maxCode + 1];
+        BY_NAME = new Job[Integer.highestOneBit(values().length * 4)];
+        for (Job job : values()) {
+            if (BY_CODE[job.code] != null) {
+                throw new IllegalStateException("Duplicate job code " + job.code);
+            }
+            BY_CODE[job.code] = job;
+
+            int slot = hash(job.displayName, 0, job.displayName.length()) & (BY_NAME.length - 1);
+            while (BY_NAME[slot] != null) {
+                slot = (slot + 1) & (BY_NAME.length - 1);
+            }
+            BY_NAME[slot] = job;
+        }
+    }
+
+    /** Code stored in the database; stable across releases. */
+    private final int code;
+
+    /** Title-case name, e.g. {@code "Dark Knight"}. */
+    private final String displayName;
+
+    /**
+     * Defines a job.
+     *
+     * @param code        the database code
+     * @param displayName the title-case name
+     */
+    Job(int code, String displayName) {
+        this.code = code;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Finds a job by name.
+     * <p>
+     * Case and leading/trailing whitespace are ignored, so {@code " dark KNIGHT"} finds
+     * {@link #DARK_KNIGHT}. Whitespace inside the name must match exactly.
+     *
+     * @param name the job name; may be {@code null}
+     * @return the job, or {@code null} if {@code name} is not a valid job
+     */
+    public static Job lookup(String name) {
+        if (name == null) {
+            return null;
+        }
+        int from = 0;
+        int to = name.length();
+        while (from < to && Character.isWhitespace(name.charAt(from))) from++;
+        while (to > from && Character.isWhitespace(name.charAt(to - 1))) to--;
+
+        int length = to - from;
+        int slot = hash(name, from, to) & (BY_NAME.length - 1);
+        Job job;
+        while ((job = BY_NAME[slot]) != null) {
+            if (job.displayName.length() == length && job.displayName.regionMatches(true, 0, name, from, length)) {
+                return job;
+            }
+            slot = (slot + 1) & (BY_NAME.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Finds a job by its database code.
+     *
+     * @param code the code stored in {@code characters.job}
+     * @return the job, or {@code null} if no job has that code
+     */
+    public static Job fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * Hashes part of a string, ignoring case.
+     *
+     * @param s    the string
+     * @param from index of the first character
+     * @param to   index after the last character
+     * @return the hash of the lower-cased characters
+     */
+    private static int hash(String s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + Character.toLowerCase(s.charAt(i));
+        }
+        // Spread the high bits into the low ones used as the slot
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the code stored in the database for this job.
+     *
+     * @return the job code
+     */
+    public int getCode() { return code; }
+
+    /**
+     * Returns the title-case name of this job.
+     *
+     * @return the display name, e.g. {@code "Dark Knight"}
+     */
+    public String getDisplayName() { return displayName; }
+
+    /**
+     * Returns the display name.
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
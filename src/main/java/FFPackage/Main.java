@@ -1,5 +1,8 @@
 package FFPackage;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 /**
  * Application entry point for the Final Fantasy Database Management System.
  * <p>
@@ -9,15 +12,29 @@ package FFPackage;
  *     <li>GUI mode ({@link FFGUI})</li>
  *     <li>Exiting the application</li>
  * </ul>
+ * Started with {@code --watch <folder> [maxConcurrent]}, it skips the menu and runs headless,
+ * importing every roster file dropped into the folder (see {@link RosterDropWatcher}).
+ * Other arguments (e.g. {@code --cache}) are passed on to {@link FFCLI}.
  */
 public class Main {
 
     /**
      * Starts the application and lets the user pick CLI, GUI, or quit.
      *
-     * @param args command-line arguments (unused)
+     * @param args command-line arguments: empty for the menu, {@code --cache} to turn on the
+     *             CLI's ID cache, or {@code --watch <folder> [maxConcurrent]} for headless
+     *             drop-folder ingest
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--watch")) {
+            if (args.length < 2) {
+                System.out.println("Usage: --watch <folder> [maxConcurrent]");
+                return;
+            }
+            watch(args[1], args.length > 2 ? args[2] : "2");
+            return;
+        }
+
         System.out.println("\n*******************************************************");
         System.out.println("Welcome to the Final Fantasy Database Management System");
         System.out.println("*********************************************************");
@@ -44,7 +61,7 @@ public class Main {
         while (!chosen) {
             if (choice.equals("1")) { // runs CLI
                 chosen = true;
-                FFCLI.main(new String[]{});
+                FFCLI.main(args);
             } else if (choice.equals("2")) { // runs GUI
                 chosen = true;
                 FFGUI.main(new String[]{});
@@ -57,4 +74,41 @@ public class Main {
             choice = sc.nextLine();
         }
     }
+
+    /**
+     * Runs headless: imports every roster file dropped into {@code folder} until the
+     * process is stopped (e.g. with Ctrl+C), printing one line per file.
+     *
+     * @param folder        the drop folder
+     * @param maxConcurrent maximum number of files imported at the same time, as text
+     */
+    private static void watch(String folder, String maxConcurrent) {
+        int concurrency;
+        try {
+            concurrency = Integer.parseInt(maxConcurrent);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number of concurrent imports: " + maxConcurrent);
+            return;
+        }
+
+        FF ff = new FF();
+        RosterDropWatcher watcher;
+        try {
+            watcher = new RosterDropWatcher(ff, Path.of(folder), concurrency, System.out::println);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Cannot watch " + folder + ": " + e.getMessage());
+            ff.close();
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            watcher.close();
+            ff.close();
+            System.out.println("Stopped watching. Imported " + watcher.getFilesImported() + " files ("
+                    + watcher.getRowsImported() + " rows), " + watcher.getFilesFailed() + " failed.");
+        }));
+        System.out.println("Watching " + watcher.getInbox() + " for roster files, up to " + concurrency
+                + " at a time. Press Ctrl+C to stop.");
+        // The watcher thread keeps the application running after main returns
+    }
 }
@@ -7,7 +7,7 @@ import java.util.*;
  * <p>
  * A {@code PCharacter} has:
  * <ul>
- *     <li>A unique ID (4-digit string, usually 1000–9999)</li>
+ *     <li>A unique numeric ID, kept as a string for display (see {@link #getNumericId()})</li>
  *     <li>Name</li>
  *     <li>Job (validated against a known set of jobs)</li>
  *     <li>Level (1–99)</li>
@@ -22,6 +22,9 @@ public class PCharacter  {
     /** Immutable unique identifier for this character. */
     private final String id;
 
+    /** Whether {@link #id} was generated by the constructor rather than supplied by the caller. */
+    private final boolean generatedId;
+
     /** Character name. */
     private String name;
 
@@ -41,43 +44,67 @@ public class PCharacter  {
     private boolean isActive;
 
     /**
-     * Set of valid job names for characters.
+     * Display names of every {@link Job}, in declaration order.
      * <p>
      * Validation is case-insensitive, but jobs are stored in normalized title case.
      */
-    private static final Set<String> validJobs = new HashSet<>(Arrays.asList(
-            "Warrior","Thief","Monk","Red Mage","White Mage","Black Mage",
-            "Knight","Ninja","Master","Red Wizard","White Wizard","Black Wizard",
-            "Archer","Bard","Beastmaster","Berserker","Blue Mage","Chemist",
-            "Dancer","Dark Knight","Dragoon","Machinist","Geomancer","Samurai",
-            "Summoner","Scholar","Astrologian","Time Mage", "Prince", "Soldier", "Saboteur"
-    ));
+    private static final Set<String> validJobs;
+
+    static {
+        Set<String> names = new LinkedHashSet<>();
+        for (Job job : Job.values()) {
+            names.add(job.getDisplayName());
+        }
+        validJobs = Collections.unmodifiableSet(names);
+    }
 
     /**
      * Checks if the given job name is allowed.
      * <p>
      * Comparison is case-insensitive, and leading/trailing whitespace is ignored.
+     * This is a constant-time lookup (see {@link Job#lookup(String)}).
      *
      * @param job the job name to validate
-     * @return {@code true} if the job is in the {@link #validJobs} set, {@code false} otherwise
+     * @return {@code true} if the job names a {@link Job}, {@code false} otherwise
      */
     public static boolean isValidJob(String job) {
-        return validJobs.stream().anyMatch(v -> v.equalsIgnoreCase(job.trim()));
+        return Job.lookup(job) != null;
     }
 
     /**
      * Returns the set of valid jobs.
-     * <p>
-     * Note: the returned set is the backing set itself, so callers should not modify it
-     * in normal use. If you want to prevent accidental modification, you can wrap this
-     * in {@code Collections.unmodifiableSet(validJobs)} instead.
      *
-     * @return a set of valid job names
+     * @return an unmodifiable set of valid job names, in {@link Job} declaration order
      */
     public static Set<String> getValidJobs() {
         return validJobs;
     }
 
+    /**
+     * Parses a character ID from its string form.
+     * <p>
+     * IDs are stored as SQLite {@code INTEGER PRIMARY KEY} values, so only non-negative
+     * integers are valid.
+     *
+     * @param id the ID as text (surrounding whitespace is ignored)
+     * @return the numeric ID, or {@code -1} if {@code id} is {@code null} or not a valid ID
+     */
+    public static long parseId(String id) {
+        if (id == null) {
+            return -1;
+        }
+        String trimmed = id.trim();
+        if (trimmed.isEmpty() || trimmed.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (!Character.isDigit(trimmed.charAt(i))) {
+                return -1;
+            }
+        }
+        return Long.parseLong(trimmed);
+    }
+
     /**
      * Generates a pseudo-random 4-digit ID string between 1000 and 9999 (inclusive).
      *
@@ -112,8 +139,10 @@ public class PCharacter  {
         // If empty, generate random ID
         if (id == null || id.isEmpty()) {
             this.id = generateId();
+            this.generatedId = true;
         } else {
             this.id = id;
+            this.generatedId = false;
         }
 
         this.name = name != null ? name.trim() : "";
@@ -141,15 +170,107 @@ public class PCharacter  {
         this.isActive = isActive;
     }
 
+    /**
+     * Creates a copy of another character, including its ID.
+     * <p>
+     * No validation is performed, since {@code other} was already validated.
+     *
+     * @param other the character to copy
+     */
+    public PCharacter(PCharacter other) {
+        this.id = other.id;
+        this.generatedId = other.generatedId;
+        this.name = other.name;
+        this.job = other.job;
+        this.level = other.level;
+        this.hp = other.hp;
+        this.mp = other.mp;
+        this.isActive = other.isActive;
+    }
+
+    /**
+     * Builds a character from values that were validated before they were stored.
+     * <p>
+     * Used when reading rows back from the database: no check is repeated, the name is
+     * taken as is (it was trimmed on the way in) and the job is the shared display name
+     * of {@code job}. Callers must only pass trusted values; anything else should go
+     * through {@link #PCharacter(String, String, String, int, int, int, boolean)}.
+     *
+     * @param id       the stored numeric ID
+     * @param name     the stored name
+     * @param job      the stored job
+     * @param level    the stored level
+     * @param hp       the stored hit points
+     * @param mp       the stored magic points
+     * @param isActive the stored party flag
+     * @return the character
+     */
+    public static PCharacter fromTrusted(long id, String name, Job job, int level, int hp, int mp, boolean isActive) {
+        return new PCharacter(String.valueOf(id), name, job.getDisplayName(), level, hp, mp, isActive, false);
+    }
+
+    /**
+     * Builds a character from values its caller has already checked.
+     * <p>
+     * Used by {@link RosterFileParser}, which resolves the job and checks the level, HP and MP
+     * itself, so they are not validated a second time here, and by {@link RosterImporter} when
+     * it gives parsed rows their new IDs. Unlike {@link #fromTrusted}, the ID may be missing:
+     * one is then generated, as the public constructor does.
+     *
+     * @param id       the ID, or a negative value to generate one
+     * @param name     character name (trimmed; {@code null} becomes empty string)
+     * @param job      the resolved job
+     * @param level    character level, already within 1–99
+     * @param hp       hit points, already non-negative
+     * @param mp       magic points, already non-negative
+     * @param isActive whether this character is in the party
+     * @return the character
+     */
+    static PCharacter fromChecked(long id, String name, Job job, int level, int hp, int mp, boolean isActive) {
+        boolean generated = id < 0;
+        return new PCharacter(generated ? generateId() : String.valueOf(id), name != null ? name.trim() : "",
+                job.getDisplayName(), level, hp, mp, isActive, generated);
+    }
+
+    /**
+     * Assigns every field without validation. Used by {@link #fromTrusted} and {@link #fromChecked}.
+     *
+     * @param id          character ID
+     * @param name        character name, already trimmed
+     * @param job         job display name
+     * @param level       character level
+     * @param hp          hit points
+     * @param mp          magic points
+     * @param isActive    party flag
+     * @param generatedId whether the ID was generated
+     */
+    private PCharacter(String id, String name, String job, int level, int hp, int mp, boolean isActive,
+                       boolean generatedId) {
+        this.id = id;
+        this.generatedId = generatedId;
+        this.name = name;
+        this.job = job;
+        this.level = level;
+        this.hp = hp;
+        this.mp = mp;
+        this.isActive = isActive;
+    }
+
     /**
      * Normalizes a job string to title case for each word.
      * <p>
-     * Example: {@code "dark knight"} → {@code "Dark Knight"}.
+     * Example: {@code "dark knight"} → {@code "Dark Knight"}. A valid job is returned as
+     * its {@link Job#getDisplayName()}, a shared instance, without building a new string.
      *
      * @param job the raw job string
      * @return normalized, title-cased job string
      */
-    private String normalizeJob(String job) {
+    public static String normalizeJob(String job) {
+        Job known = Job.lookup(job);
+        if (known != null) {
+            return known.getDisplayName();
+        }
+
         String[] parts = job.toLowerCase().split("\\s+");
         StringBuilder sb = new StringBuilder();
         for (String p : parts) {
@@ -170,6 +291,22 @@ public class PCharacter  {
      */
     public String getId() { return id; }
 
+    /**
+     * Indicates whether this character's ID was generated as a placeholder because
+     * none was supplied. {@link FF} replaces such IDs with allocated ones on insert.
+     *
+     * @return {@code true} if the ID was generated by the constructor
+     */
+    boolean hasGeneratedId() { return generatedId; }
+
+    /**
+     * Returns this character's ID as a number, the form used by the database.
+     *
+     * @return the numeric ID, or {@code -1} if the ID is not numeric
+     * @see #parseId(String)
+     */
+    public long getNumericId() { return parseId(id); }
+
     /**
      * Returns this character's name.
      *
@@ -184,6 +321,13 @@ public class PCharacter  {
      */
     public String getJob() { return job; }
 
+    /**
+     * Returns this character's job as a {@link Job}.
+     *
+     * @return the job, or {@code null} if it was set to an invalid name with {@link #setJob(String)}
+     */
+    public Job getJobType() { return Job.lookup(job); }
+
     /**
      * Returns this character's level.
      *
@@ -0,0 +1,578 @@
+package FFPackage;
+
+import DBHelper.ConflictPolicy;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Headless ingest mode: watches a drop folder and imports every roster file that lands in it.
+ * <p>
+ * Files already in the folder when the watcher starts are picked up too. A file is imported
+ * once its size and modification time have not changed for a short settle period, so a file
+ * that is still being copied in is not read half-written. Producers that write in place can
+ * also use a {@code .tmp} or {@code .part} name and rename the file when it is complete;
+ * such names, and hidden files, are ignored.
+ * <p>
+ * Imports run through {@link FF#importCharacters(Path, ConflictPolicy, ImportProgressListener)},
+ * so each file is parsed in parallel and written in batched transactions, and an import cut
+ * short by a crash resumes where it stopped when the file is dropped again. At most
+ * {@code maxConcurrent} files are imported at the same time; further files wait their turn.
+ * <p>
+ * After its import, each file is moved to the {@value #DONE_DIR} subfolder, or to
+ * {@value #FAILED_DIR} if the import failed, and a {@link DropResult} with its statistics is
+ * passed to the result callback. Lines skipped as invalid do not make a file fail; they are
+ * counted in its {@link ImportProgress#getErrors()}. A file that cannot be moved afterwards
+ * (see {@link DropResult#getMoveFailure()}) stays in the drop folder but is not imported
+ * again while this watcher runs.
+ * <p>
+ * If the drop folder itself becomes inaccessible (e.g. it is deleted), the watcher stops
+ * watching and passes the callback one last failed result whose file is the drop folder.
+ * <p>
+ * Closing the watcher stops watching, lets imports already running finish, and does not
+ * close the {@link FF} service.
+ */
+public class RosterDropWatcher implements AutoCloseable {
+
+    /** Subfolder of the drop folder that imported files are moved to. */
+    public static final String DONE_DIR = "done";
+
+    /** Subfolder of the drop folder that files whose import failed are moved to. */
+    public static final String FAILED_DIR = "failed";
+
+    /** How long a file must stay unchanged before it is imported, in milliseconds. */
+    static final long SETTLE_MILLIS = 500;
+
+    /**
+     * Outcome of one dropped file.
+     */
+    public static final class DropResult {
+
+        /** Where the file was dropped. */
+        private final Path file;
+
+        /** Where the file was moved afterwards, or {@code null} if it could not be moved. */
+        private final Path movedTo;
+
+        /** Import statistics, or {@code null} if the import failed. */
+        private final ImportProgress progress;
+
+        /** Why the import failed, or {@code null} if it succeeded. */
+        private final Exception failure;
+
+        /** Why the file could not be moved afterwards, or {@code null}. */
+        private final IOException moveFailure;
+
+        /**
+         * Creates a result.
+         *
+         * @param file        where the file was dropped
+         * @param movedTo     where it was moved, or {@code null}
+         * @param progress    import statistics, or {@code null} on failure
+         * @param failure     the failure, or {@code null} on success
+         * @param moveFailure why the file could not be moved, or {@code null}
+         */
+        DropResult(Path file, Path movedTo, ImportProgress progress, Exception failure, IOException moveFailure) {
+            this.file = file;
+            this.movedTo = movedTo;
+            this.progress = progress;
+            this.failure = failure;
+            this.moveFailure = moveFailure;
+        }
+
+        /**
+         * Returns where the file was dropped.
+         *
+         * @return the original path of the file
+         */
+        public Path getFile() { return file; }
+
+        /**
+         * Returns where the file was moved after its import.
+         *
+         * @return the path in the done or failed folder, or {@code null} if the file could not be moved
+         */
+        public Path getMovedTo() { return movedTo; }
+
+        /**
+         * Returns the statistics of a successful import.
+         *
+         * @return the final import progress, or {@code null} if the import failed
+         */
+        public ImportProgress getProgress() { return progress; }
+
+        /**
+         * Returns why the import failed.
+         *
+         * @return the failure, or {@code null} if the import succeeded
+         */
+        public Exception getFailure() { return failure; }
+
+        /**
+         * Returns why the file could not be moved to the done or failed folder. This does
+         * not undo the import: {@link #isImported()} still tells whether the rows were written.
+         *
+         * @return the move failure, or {@code null} if the file was moved (or never got that far)
+         */
+        public IOException getMoveFailure() { return moveFailure; }
+
+        /**
+         * Indicates whether the file was imported.
+         *
+         * @return {@code true} if the import succeeded
+         */
+        public boolean isImported() { return failure == null; }
+
+        /**
+         * Returns a one-line summary, e.g. {@code "roster.csv: 1000 rows, 0 errors, ... -> done"}.
+         */
+        @Override
+        public String toString() {
+            String outcome = isImported() ? progress.toString() : "failed: " + failure.getMessage();
+            String moved = movedTo != null ? " -> " + movedTo.getParent().getFileName()
+                    : moveFailure != null ? " (not moved: " + moveFailure.getMessage() + ")" : " (not moved)";
+            return file.getFileName() + ": " + outcome + moved;
+        }
+    }
+
+    /**
+     * Size and modification time of a file when it was last seen changing.
+     */
+    private static final class Stamp {
+
+        /** File size in bytes. */
+        final long size;
+
+        /** Last modification time, in milliseconds since the epoch. */
+        final long modified;
+
+        /** {@link System#nanoTime()} when this size and time were first seen. */
+        final long seenAt;
+
+        Stamp(long size, long modified, long seenAt) {
+            this.size = size;
+            this.modified = modified;
+            this.seenAt = seenAt;
+        }
+
+        /**
+         * Reads the current stamp of a file.
+         *
+         * @param file the file
+         * @return its stamp, or {@code null} if it no longer exists or is not a regular file
+         */
+        static Stamp of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    return null;
+                }
+                return new Stamp(attributes.size(), attributes.lastModifiedTime().toMillis(), System.nanoTime());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Indicates whether the file looks the same in both stamps.
+         *
+         * @param other another stamp of the same file
+         * @return {@code true} if size and modification time are unchanged
+         */
+        boolean sameContent(Stamp other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+
+    /** The service files are imported through. */
+    private final FF ff;
+
+    /** The watched drop folder. */
+    private final Path inbox;
+
+    /** Where imported files are moved. */
+    private final Path done;
+
+    /** Where files whose import failed are moved. */
+    private final Path failed;
+
+    /** How rows whose ID already exists are handled. */
+    private final ConflictPolicy policy;
+
+    /** Receives the outcome of every file. */
+    private final Consumer<? super DropResult> onResult;
+
+    /** Settle period in nanoseconds. */
+    private final long settleNanos;
+
+    /** Reports new and changed files in {@link #inbox}. */
+    private final WatchService watcher;
+
+    /** Runs the settle checks. */
+    private final ScheduledExecutorService timer;
+
+    /** Runs the imports; its size bounds how many files are imported at once. */
+    private final ExecutorService importers;
+
+    /** The thread that waits on {@link #watcher}. */
+    private final Thread thread;
+
+    /** Files seen but not yet settled, with the last stamp seen. Guarded by {@code this}. */
+    private final Map<Path, Stamp> pending = new HashMap<>();
+
+    /**
+     * Files queued for or being imported, and files that could not be moved out of the drop
+     * folder afterwards (so they are not imported again). Guarded by {@code this}.
+     */
+    private final Set<Path> claimed = new HashSet<>();
+
+    /** Number of files imported so far. */
+    private final AtomicInteger filesImported = new AtomicInteger();
+
+    /** Number of files whose import failed so far. */
+    private final AtomicInteger filesFailed = new AtomicInteger();
+
+    /** Number of valid rows read from imported files so far. */
+    private final AtomicLong rowsImported = new AtomicLong();
+
+    /**
+     * Starts watching a drop folder, overwriting existing characters on ID conflicts.
+     *
+     * @param ff            the service to import through
+     * @param inbox         the drop folder; created if missing
+     * @param maxConcurrent maximum number of files imported at the same time
+     * @param onResult      called with the outcome of every file, on an import thread
+     * @throws IOException if the folders cannot be created or watched
+     * @see #RosterDropWatcher(FF, Path, ConflictPolicy, int, Consumer)
+     */
+    public RosterDropWatcher(FF ff, Path inbox, int maxConcurrent, Consumer<? super DropResult> onResult)
+            throws IOException {
+        this(ff, inbox, ConflictPolicy.OVERWRITE, maxConcurrent, onResult);
+    }
+
+    /**
+     * Starts watching a drop folder.
+     * <p>
+     * Files already in the folder are queued right away.
+     *
+     * @param ff            the service to import through
+     * @param inbox         the drop folder; created if missing
+     * @param policy        how rows whose ID already exists are handled
+     * @param maxConcurrent maximum number of files imported at the same time
+     * @param onResult      called with the outcome of every file, on an import thread
+     * @throws IOException              if the folders cannot be created or watched
+     * @throws IllegalArgumentException if {@code maxConcurrent} is less than 1
+     */
+    public RosterDropWatcher(FF ff, Path inbox, ConflictPolicy policy, int maxConcurrent,
+                             Consumer<? super DropResult> onResult) throws IOException {
+        this(ff, inbox, policy, maxConcurrent, onResult, SETTLE_MILLIS);
+    }
+
+    /**
+     * Starts watching a drop folder with a custom settle period.
+     *
+     * @param ff            the service to import through
+     * @param inbox         the drop folder; created if missing
+     * @param policy        how rows whose ID already exists are handled
+     * @param maxConcurrent maximum number of files imported at the same time
+     * @param onResult      called with the outcome of every file, on an import thread
+     * @param settleMillis  how long a file must stay unchanged before it is imported
+     * @throws IOException              if the folders cannot be created or watched
+     * @throws IllegalArgumentException if {@code maxConcurrent} is less than 1
+     */
+    RosterDropWatcher(FF ff, Path inbox, ConflictPolicy policy, int maxConcurrent,
+                      Consumer<? super DropResult> onResult, long settleMillis) throws IOException {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one concurrent import is required");
+        }
+        this.ff = ff;
+        this.inbox = inbox.toAbsolutePath();
+        this.done = Files.createDirectories(this.inbox.resolve(DONE_DIR));
+        this.failed = Files.createDirectories(this.inbox.resolve(FAILED_DIR));
+        this.policy = policy;
+        this.onResult = onResult;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+
+        this.watcher = this.inbox.getFileSystem().newWatchService();
+        try {
+            this.inbox.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watcher.close();
+            throw e;
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "roster-drop-timer"));
+        this.importers = Executors.newFixedThreadPool(maxConcurrent,
+                r -> new Thread(r, "roster-drop-import-" + threads.incrementAndGet()));
+
+        // Not a daemon: in headless mode this thread keeps the application running
+        this.thread = new Thread(this::watch, "roster-drop-watcher");
+        thread.start();
+        scan();
+    }
+
+    /**
+     * Watcher loop: turns every create or modify event into a settle check.
+     * Ends when the watch service is closed or the drop folder disappears; the latter is
+     * reported to the result callback.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost: look at the whole folder again
+                        scan();
+                    } else {
+                        offer(inbox.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    report(new DropResult(inbox, null, null,
+                            new IOException("Drop folder " + inbox + " is no longer accessible; stopped watching"), null));
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // close() was called
+        }
+    }
+
+    /**
+     * Offers every file currently in the drop folder.
+     */
+    private void scan() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inbox)) {
+            for (Path file : files) {
+                offer(file);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts tracking a file that was created or changed, unless it is ignored or already queued.
+     *
+     * @param file a path in the drop folder
+     */
+    private void offer(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part")) {
+            return;
+        }
+        Stamp current = Stamp.of(file);
+        if (current == null) {
+            return;
+        }
+        synchronized (this) {
+            if (claimed.contains(file)) {
+                return;
+            }
+            Stamp last = pending.get(file);
+            if (last != null && last.sameContent(current)) {
+                // A settle check is already scheduled for this state
+                return;
+            }
+            pending.put(file, current);
+        }
+        scheduleSettle(file, settleNanos);
+    }
+
+    /**
+     * Schedules a settle check.
+     *
+     * @param file       the file to check
+     * @param delayNanos how long to wait
+     */
+    private void scheduleSettle(Path file, long delayNanos) {
+        try {
+            timer.schedule(() -> settle(file), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closing: the file will be picked up by the next watcher's scan
+        }
+    }
+
+    /**
+     * Queues a file for import if it has not changed during the settle period,
+     * or checks again later otherwise.
+     *
+     * @param file the file to check
+     */
+    private void settle(Path file) {
+        Stamp current = Stamp.of(file);
+        long wait;
+        synchronized (this) {
+            Stamp last = pending.get(file);
+            if (last == null) {
+                return;
+            }
+            if (current == null) {
+                // Deleted or moved away before it settled
+                pending.remove(file);
+                return;
+            }
+            if (!current.sameContent(last)) {
+                pending.put(file, current);
+                wait = settleNanos;
+            } else {
+                wait = settleNanos - (System.nanoTime() - last.seenAt);
+                if (wait <= 0) {
+                    pending.remove(file);
+                    claimed.add(file);
+                }
+            }
+        }
+        if (wait > 0) {
+            scheduleSettle(file, wait);
+            return;
+        }
+        try {
+            importers.execute(() -> ingest(file));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                claimed.remove(file);
+            }
+        }
+    }
+
+    /**
+     * Imports one settled file, moves it to the done or failed folder and reports the outcome.
+     * <p>
+     * Importing and moving fail separately: a file whose rows were written counts as imported
+     * even if it cannot be moved. A file that was not moved stays claimed, so the next event
+     * or scan does not import it a second time.
+     *
+     * @param file the file to import
+     */
+    private void ingest(Path file) {
+        ImportProgress progress = null;
+        Exception failure = null;
+        try {
+            progress = ff.importCharacters(file, policy, ImportProgressListener.NONE);
+            filesImported.incrementAndGet();
+            rowsImported.addAndGet(progress.getRows());
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            filesFailed.incrementAndGet();
+        }
+
+        Path movedTo = null;
+        IOException moveFailure = null;
+        try {
+            movedTo = moveTo(failure == null ? done : failed, file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            moveFailure = e;
+        }
+        if (movedTo != null) {
+            synchronized (this) {
+                claimed.remove(file);
+            }
+        }
+
+        report(new DropResult(file, movedTo, progress, failure, moveFailure));
+    }
+
+    /**
+     * Passes a result to the callback, logging anything the callback throws.
+     *
+     * @param result the outcome to report
+     */
+    private void report(DropResult result) {
+        try {
+            onResult.accept(result);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Moves a file into a folder, prefixing its name with the current time if the
+     * folder already holds a file of that name.
+     *
+     * @param folder the done or failed folder
+     * @param file   the file to move
+     * @return the new path of the file
+     * @throws IOException if the file cannot be moved
+     */
+    private static Path moveTo(Path folder, Path file) throws IOException {
+        String name = file.getFileName().toString();
+        Path target = folder.resolve(name);
+        for (int attempt = 1; Files.exists(target); attempt++) {
+            target = folder.resolve(System.currentTimeMillis() + "-" + attempt + "-" + name);
+        }
+        return Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the watched drop folder.
+     *
+     * @return the absolute path of the drop folder
+     */
+    public Path getInbox() { return inbox; }
+
+    /**
+     * Returns the number of files imported so far.
+     *
+     * @return the number of files moved to the done folder
+     */
+    public int getFilesImported() { return filesImported.get(); }
+
+    /**
+     * Returns the number of files whose import failed so far.
+     *
+     * @return the number of failed files
+     */
+    public int getFilesFailed() { return filesFailed.get(); }
+
+    /**
+     * Returns the number of valid rows read from imported files so far.
+     *
+     * @return the number of valid rows in all imported files
+     */
+    public long getRowsImported() { return rowsImported.get(); }
+
+    /**
+     * Stops watching, waits for imports already running or queued to finish, and
+     * releases the watch service. Files that had not settled yet stay in the drop folder
+     * and are picked up the next time a watcher starts.
+     */
+    @Override
+    public void close() {
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        timer.shutdownNow();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        importers.close();
+    }
+}
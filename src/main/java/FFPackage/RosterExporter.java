@@ -0,0 +1,291 @@
+package FFPackage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes characters to a file, one row at a time, through a single reusable direct buffer.
+ * <p>
+ * Each character is encoded straight into the buffer (numbers digit by digit, names as UTF-8),
+ * and the buffer is handed to the file channel whenever it fills up, so memory use is the same
+ * for ten characters or ten million. With gzip, the channel feeds a {@link GZIPOutputStream}.
+ * <p>
+ * The file is written under a temporary name and moved into place when complete, so readers
+ * never see half an export and a failed export leaves any previous file untouched.
+ */
+final class RosterExporter {
+
+    /** Size of the direct buffer rows are encoded into. */
+    static final int BUFFER_BYTES = 1 << 16;
+
+    /** The output format. */
+    private final ExportFormat format;
+
+    /** Whether the output is gzip-compressed. */
+    private final boolean gzip;
+
+    /** Encoded rows waiting to be written. */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /** Scratch space for the digits of a number, written backwards. */
+    private final byte[] digits = new byte[20];
+
+    /** Where the buffer is drained to while an export runs. */
+    private WritableByteChannel out;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param format the output format
+     * @param gzip   {@code true} to compress the output with gzip
+     */
+    RosterExporter(ExportFormat format, boolean gzip) {
+        this.format = format;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Writes every character to a file, replacing it if it exists.
+     *
+     * @param file       the target file
+     * @param characters the characters, e.g. from an open database cursor
+     * @return the number of characters written
+     * @throws IOException if the file cannot be written
+     */
+    long export(Path file, Iterator<PCharacter> characters) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long count = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                GZIPOutputStream compressed = gzip
+                        ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES)
+                        : null;
+                out = gzip ? Channels.newChannel(compressed) : channel;
+                buffer.clear();
+
+                while (characters.hasNext()) {
+                    PCharacter pc = characters.next();
+                    if (format == ExportFormat.CSV) {
+                        writeCsv(pc);
+                    } else {
+                        writeJson(pc);
+                    }
+                    count++;
+                }
+                drain();
+                if (compressed != null) {
+                    // Writes the gzip trailer; closing would close the channel before force()
+                    compressed.finish();
+                    compressed.flush();
+                }
+                channel.force(false);
+            } finally {
+                out = null;
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return count;
+    }
+
+    /**
+     * Encodes one character as a CSV line: {@code id,name,job,level,hp,mp,isActive}.
+     *
+     * @param pc the character
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void writeCsv(PCharacter pc) throws IOException {
+        putAscii(pc.getId());
+        put(',');
+        String name = pc.getName();
+        if (needsQuotes(name)) {
+            put('"');
+            for (int i = 0; i < name.length(); i++) {
+                if (name.charAt(i) == '"') {
+                    put('"');
+                }
+                i = putChar(name, i);
+            }
+            put('"');
+        } else {
+            putUtf8(name);
+        }
+        put(',');
+        putAscii(pc.getJob());
+        put(',');
+        putNumber(pc.getLevel());
+        put(',');
+        putNumber(pc.getHp());
+        put(',');
+        putNumber(pc.getMp());
+        put(',');
+        putAscii(pc.isActive() ? "true" : "false");
+        put('\n');
+    }
+
+    /**
+     * Encodes one character as a JSON object on its own line.
+     *
+     * @param pc the character
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void writeJson(PCharacter pc) throws IOException {
+        putAscii("{\"id\":");
+        putAscii(pc.getId());
+        putAscii(",\"name\":\"");
+        String name = pc.getName();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+            } else if (c < 0x20) {
+                putAscii("\\u00");
+                put(Character.forDigit(c >> 4, 16));
+                put(Character.forDigit(c & 0xF, 16));
+            } else {
+                i = putChar(name, i);
+            }
+        }
+        putAscii("\",\"job\":\"");
+        putAscii(pc.getJob());
+        putAscii("\",\"level\":");
+        putNumber(pc.getLevel());
+        putAscii(",\"hp\":");
+        putNumber(pc.getHp());
+        putAscii(",\"mp\":");
+        putNumber(pc.getMp());
+        putAscii(",\"active\":");
+        putAscii(pc.isActive() ? "true}\n" : "false}\n");
+    }
+
+    /**
+     * Checks whether a CSV field must be quoted to be read back unchanged.
+     *
+     * @param s the field
+     * @return {@code true} if it contains a separator, a quote or a line break,
+     *         or starts or ends with whitespace
+     */
+    private static boolean needsQuotes(String s) {
+        if (!s.isEmpty() && (s.charAt(0) <= ' ' || s.charAt(s.length() - 1) <= ' ')) {
+            return true;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a non-negative number in decimal without creating a string.
+     *
+     * @param value the number
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void putNumber(long value) throws IOException {
+        int n = digits.length;
+        do {
+            digits[--n] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (; n < digits.length; n++) {
+            put(digits[n]);
+        }
+    }
+
+    /**
+     * Writes a string known to be ASCII.
+     *
+     * @param s the string
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void putAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a string as UTF-8.
+     *
+     * @param s the string
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void putUtf8(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            i = putChar(s, i);
+        }
+    }
+
+    /**
+     * Writes the character at {@code i} as UTF-8, together with its low surrogate if it has one.
+     *
+     * @param s the string
+     * @param i index of the character
+     * @return the index of the last {@code char} consumed
+     * @throws IOException if the buffer cannot be drained
+     */
+    private int putChar(String s, int i) throws IOException {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            put(0xC0 | (c >> 6));
+            put(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            put(0xF0 | (cp >> 18));
+            put(0x80 | ((cp >> 12) & 0x3F));
+            put(0x80 | ((cp >> 6) & 0x3F));
+            put(0x80 | (cp & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            put('?');  // unpaired surrogate, like String.getBytes
+        } else {
+            put(0xE0 | (c >> 12));
+            put(0x80 | ((c >> 6) & 0x3F));
+            put(0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    /**
+     * Appends one byte, draining the buffer first if it is full.
+     *
+     * @param b the byte (only the low 8 bits are used)
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void put(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    /**
+     * Writes everything in the buffer to the output and empties it.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,456 @@
+package FFPackage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses roster lines straight from bytes, e.g. a slice of a memory-mapped file.
+ * <p>
+ * Lines have the format {@code [id,]name,job,level,hp,mp,isActive}. Instead of building a
+ * {@code String} per line and splitting it, the parser finds field boundaries in the buffer
+ * and converts each field in place:
+ * <ul>
+ *     <li>numbers are parsed digit by digit, without an intermediate string</li>
+ *     <li>jobs are matched against a precomputed table of the valid jobs, case-insensitively,
+ *         and come back as their {@link Job}</li>
+ *     <li>only the name is decoded (as UTF-8), since the character has to hold it</li>
+ * </ul>
+ * A field may be wrapped in double quotes, which allows commas in names; a doubled quote
+ * ({@code ""}) inside a quoted field stands for one quote. Quoted fields cannot span lines.
+ * A UTF-8 byte order mark at the start of a buffer is skipped, and {@code \r\n} line ends
+ * are accepted. Blank lines are ignored.
+ * <p>
+ * Each value is checked once, here; rows are then built with
+ * {@link PCharacter#fromChecked(long, String, Job, int, int, int, boolean)}, which does not
+ * validate them again.
+ * <p>
+ * A parser keeps scratch buffers between lines, so it is not thread-safe: use one per thread.
+ */
+final class RosterFileParser {
+
+    /**
+     * Receives the outcome of each line.
+     */
+    interface RowHandler {
+
+        /**
+         * Called for each valid line.
+         *
+         * @param pc the character; it has a generated ID if the line carries none
+         */
+        void row(PCharacter pc);
+
+        /**
+         * Called for each line that cannot be imported.
+         *
+         * @param lineNumber line number within the buffer, starting at 1
+         * @param line       the line, decoded as UTF-8
+         * @param reason     why it was skipped
+         */
+        void skipped(int lineNumber, String line, String reason);
+    }
+
+    /** Largest number of fields on a valid line. */
+    private static final int MAX_FIELDS = 7;
+
+    /** Every job, indexed like {@link #JOB_KEYS}. */
+    private static final Job[] JOBS = Job.values();
+
+    /** ASCII bytes of the display names of {@link #JOBS}, lower-cased. */
+    private static final byte[][] JOB_KEYS = new byte[JOBS.length][];
+
+    /** Open-addressing table from folded hash to index in {@link #JOBS} plus one; 0 is empty. */
+    private static final int[] JOB_TABLE = new int[Integer.highestOneBit(JOBS.length * 4)];
+
+    static {
+        for (int i = 0; i < JOBS.length; i++) {
+            byte[] key = JOBS[i].getDisplayName().toLowerCase().getBytes(StandardCharsets.US_ASCII);
+            JOB_KEYS[i] = key;
+            int slot = hash(key, 0, key.length) & (JOB_TABLE.length - 1);
+            while (JOB_TABLE[slot] != 0) {
+                slot = (slot + 1) & (JOB_TABLE.length - 1);
+            }
+            JOB_TABLE[slot] = i + 1;
+        }
+    }
+
+    /** Start of each field of the current line (after trimming and unquoting). */
+    private final int[] fieldStart = new int[MAX_FIELDS];
+
+    /** End (exclusive) of each field of the current line. */
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+
+    /** Whether each field of the current line contains an escaped quote. */
+    private final boolean[] fieldEscaped = new boolean[MAX_FIELDS];
+
+    /** Reused buffer for decoding names. */
+    private byte[] scratch = new byte[256];
+
+    /** The buffer being parsed. */
+    private ByteBuffer buf;
+
+    /**
+     * Parses every line of a buffer, from index 0 to its limit.
+     *
+     * @param data    whole lines of roster data; its position is ignored and left unchanged
+     * @param handler receives the rows and skipped lines, in order
+     * @return the number of lines, including blank and skipped ones
+     */
+    int parse(ByteBuffer data, RowHandler handler) {
+        buf = data;
+        int limit = data.limit();
+        int start = 0;
+        if (limit >= 3 && data.get(0) == (byte) 0xEF && data.get(1) == (byte) 0xBB && data.get(2) == (byte) 0xBF) {
+            start = 3;
+        }
+
+        int lines = 0;
+        while (start < limit) {
+            int end = start;
+            while (end < limit && data.get(end) != '\n') {
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && data.get(end - 1) == '\r') {
+                end--;
+            }
+            lines++;
+            if (end > start) {
+                parseLine(start, end, lines, handler);
+            }
+            start = next;
+        }
+        buf = null;
+        return lines;
+    }
+
+    /**
+     * Parses one line and reports it to the handler.
+     *
+     * @param start      index of the first byte of the line
+     * @param end        index just past the last byte (terminator excluded)
+     * @param lineNumber line number within the buffer
+     * @param handler    receives the outcome
+     */
+    private void parseLine(int start, int end, int lineNumber, RowHandler handler) {
+        int fields = splitFields(start, end);
+        if (fields != 6 && fields != 7) {
+            handler.skipped(lineNumber, text(start, end), "Skipping invalid line: " + text(start, end));
+            return;
+        }
+
+        // The optional ID column comes first
+        int f = fields - 6;
+        long id = -1;
+        int level, hp, mp;
+        try {
+            if (f == 1) {
+                id = parseLong(0);
+                if (id < 0) {
+                    handler.skipped(lineNumber, text(start, end), "Invalid ID in file, skipping: " + text(start, end));
+                    return;
+                }
+            }
+            level = parseInt(f + 2);
+            hp = parseInt(f + 3);
+            mp = parseInt(f + 4);
+        } catch (NumberFormatException nfe) {
+            handler.skipped(lineNumber, text(start, end),
+                    "Invalid number in line: " + text(start, end) + " -> " + nfe.getMessage());
+            return;
+        }
+
+        Job job = lookupJob(fieldStart[f + 1], fieldEnd[f + 1]);
+        if (job == null) {
+            handler.skipped(lineNumber, text(start, end),
+                    "Invalid job in file, skipping: " + field(f + 1));
+            return;
+        }
+
+        // Clamp level into allowed range
+        if (level < FF.MIN_LEVEL) level = FF.MIN_LEVEL;
+        if (level > FF.MAX_LEVEL) level = FF.MAX_LEVEL;
+
+        String invalid = hp < 0 ? "HP cannot be negative" : mp < 0 ? "MP cannot be negative" : null;
+        if (invalid != null) {
+            handler.skipped(lineNumber, text(start, end),
+                    "Invalid character data: " + text(start, end) + " -> " + invalid);
+            return;
+        }
+
+        handler.row(PCharacter.fromChecked(id, field(f), job, level, hp, mp, isTrue(f + 5)));
+    }
+
+    /**
+     * Finds the fields of a line, trimming each and removing surrounding quotes.
+     *
+     * @param start index of the first byte of the line
+     * @param end   index just past the last byte
+     * @return the number of fields, or {@code MAX_FIELDS + 1} if there are too many
+     */
+    private int splitFields(int start, int end) {
+        int count = 0;
+        int pos = start;
+        while (true) {
+            if (count == MAX_FIELDS) {
+                return MAX_FIELDS + 1;
+            }
+            while (pos < end && isSpace(buf.get(pos))) {
+                pos++;
+            }
+
+            int from, to;
+            boolean escaped = false;
+            if (pos < end && buf.get(pos) == '"') {
+                from = ++pos;
+                while (pos < end) {
+                    if (buf.get(pos) == '"') {
+                        if (pos + 1 < end && buf.get(pos + 1) == '"') {
+                            escaped = true;
+                            pos += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    pos++;
+                }
+                to = pos;
+                // Skip the closing quote and anything up to the next comma
+                while (pos < end && buf.get(pos) != ',') {
+                    pos++;
+                }
+            } else {
+                from = pos;
+                while (pos < end && buf.get(pos) != ',') {
+                    pos++;
+                }
+                to = pos;
+                while (to > from && isSpace(buf.get(to - 1))) {
+                    to--;
+                }
+            }
+
+            fieldStart[count] = from;
+            fieldEnd[count] = to;
+            fieldEscaped[count] = escaped;
+            count++;
+
+            if (pos >= end) {
+                return count;
+            }
+            pos++;  // the comma
+        }
+    }
+
+    /**
+     * Parses a field as a {@code long}.
+     *
+     * @param field the field index
+     * @return the value
+     * @throws NumberFormatException if the field is not a number
+     */
+    private long parseLong(int field) {
+        int pos = fieldStart[field];
+        int end = fieldEnd[field];
+        boolean negative = false;
+        if (pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+            negative = buf.get(pos) == '-';
+            pos++;
+        }
+        if (pos == end) {
+            throw notANumber(field);
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = buf.get(pos) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw notANumber(field);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field as an {@code int}.
+     *
+     * @param field the field index
+     * @return the value
+     * @throws NumberFormatException if the field is not a number or does not fit in an {@code int}
+     */
+    private int parseInt(int field) {
+        long value = parseLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw notANumber(field);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Builds the exception for a field that is not a valid number, with the same
+     * message {@link Integer#parseInt(String)} would give.
+     *
+     * @param field the field index
+     * @return the exception to throw
+     */
+    private NumberFormatException notANumber(int field) {
+        return new NumberFormatException("For input string: \"" + field(field) + "\"");
+    }
+
+    /**
+     * Reads a field as a boolean, like {@link Boolean#parseBoolean(String)}: only
+     * {@code true}, in any case, is true.
+     *
+     * @param field the field index
+     * @return the value
+     */
+    private boolean isTrue(int field) {
+        int from = fieldStart[field];
+        if (fieldEnd[field] - from != 4) {
+            return false;
+        }
+        return (buf.get(from) | 0x20) == 't' && (buf.get(from + 1) | 0x20) == 'r'
+                && (buf.get(from + 2) | 0x20) == 'u' && (buf.get(from + 3) | 0x20) == 'e';
+    }
+
+    /**
+     * Finds the canonical job for a byte range, ignoring case.
+     *
+     * @param from index of the first byte
+     * @param to   index just past the last byte
+     * @return the job, or {@code null} if it is not a valid job
+     */
+    private Job lookupJob(int from, int to) {
+        int slot = hash(buf, from, to) & (JOB_TABLE.length - 1);
+        int entry;
+        while ((entry = JOB_TABLE[slot]) != 0) {
+            byte[] key = JOB_KEYS[entry - 1];
+            if (key.length == to - from && matches(key, from)) {
+                return JOBS[entry - 1];
+            }
+            slot = (slot + 1) & (JOB_TABLE.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Compares a lower-case key with the buffer, ignoring the case of ASCII letters.
+     *
+     * @param key  the lower-case key
+     * @param from where the candidate starts in the buffer
+     * @return {@code true} if they match
+     */
+    private boolean matches(byte[] key, int from) {
+        for (int i = 0; i < key.length; i++) {
+            if (lower(buf.get(from + i)) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a field as a string, decoded from UTF-8, with escaped quotes resolved.
+     *
+     * @param field the field index
+     * @return the text
+     */
+    private String field(int field) {
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        if (!fieldEscaped[field]) {
+            return text(from, to);
+        }
+        int length = 0;
+        byte[] out = scratch(to - from);
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            out[length++] = b;
+            if (b == '"') {
+                i++;  // skip the second quote of the pair
+            }
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a byte range as UTF-8.
+     *
+     * @param from index of the first byte
+     * @param to   index just past the last byte
+     * @return the text
+     */
+    private String text(int from, int to) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+        }
+        byte[] out = scratch(to - from);
+        buf.get(from, out, 0, to - from);
+        return new String(out, 0, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the scratch buffer, grown to at least {@code size} bytes.
+     *
+     * @param size the number of bytes needed
+     * @return the scratch buffer
+     */
+    private byte[] scratch(int size) {
+        if (scratch.length < size) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /**
+     * Hashes lower-cased bytes of an array.
+     *
+     * @param bytes the bytes
+     * @param from  index of the first byte
+     * @param to    index just past the last byte
+     * @return the hash
+     */
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + lower(bytes[i]);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Hashes lower-cased bytes of a buffer; same result as {@link #hash(byte[], int, int)}.
+     *
+     * @param buf  the buffer
+     * @param from index of the first byte
+     * @param to   index just past the last byte
+     * @return the hash
+     */
+    private static int hash(ByteBuffer buf, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + lower(buf.get(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Lower-cases an ASCII letter; other bytes are returned unchanged.
+     *
+     * @param b the byte
+     * @return the lower-case byte
+     */
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Checks for the whitespace {@link String#trim()} removes (control characters and space).
+     *
+     * @param b the byte
+     * @return {@code true} if it is whitespace
+     */
+    private static boolean isSpace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+}
@@ -0,0 +1,794 @@
+package FFPackage;
+
+import DBHelper.ConflictPolicy;
+import DBHelper.IdAllocator;
+import DBHelper.ImportCheckpoint;
+import DBHelper.PCharacters;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports a roster file through a three-stage pipeline:
+ * <ol>
+ *     <li><b>Reader</b> – one thread cuts the source into blocks of about {@link #CHUNK_BYTES},
+ *         at line boundaries. A plain file is memory-mapped and the blocks are slices of the
+ *         mapping, so its bytes are never copied onto the heap; gzip files, streams and other
+ *         channels are read (and decompressed) into byte arrays.</li>
+ *     <li><b>Parsers</b> – several threads turn blocks into validated {@link PCharacter}s,
+ *         in parallel, each with its own {@link RosterFileParser}</li>
+ *     <li><b>Writer</b> – the calling thread puts the parsed blocks back in file order and
+ *         writes them in transactions of {@code batchSize} rows</li>
+ * </ol>
+ * The stages are connected by bounded queues, and at most {@code 2 × workers} blocks are in
+ * flight at once, so memory use does not depend on the size of the file: a slow database
+ * simply makes the reader wait.
+ * <p>
+ * Rows are written exactly as {@link FF#addCharactersFromFile(String, ConflictPolicy)}
+ * describes: rows with an ID are upserted first, then rows without one get new IDs.
+ * Because blocks are written in file order, a later row for the same ID still wins.
+ * <p>
+ * Imports of a file are resumable. Each transaction of new rows also records, in the
+ * {@code import_checkpoints} table, the offset just past the last line it covers (see
+ * {@link ImportCheckpoint}), keyed by a fingerprint of the file together with its modification
+ * time. If the process dies or the import is interrupted, the next import of the same,
+ * unmodified file starts at that offset. Rows with an ID are written in a separate, earlier
+ * transaction; replaying them is harmless, because an upsert of an unchanged row writes
+ * nothing. The checkpoint is deleted once the import completes or fails for any other reason,
+ * and ignored if the file has been modified since it was written.
+ * <p>
+ * An importer is single-use: create one per file.
+ */
+final class RosterImporter {
+
+    /** Approximate size of the blocks handed from the reader to the parsers. */
+    static final int CHUNK_BYTES = 1 << 20;
+
+    /** Buffer size for reading and decompressing streams. */
+    static final int INPUT_BUFFER_BYTES = 1 << 16;
+
+    /** Size of each memory-mapped window of a file; a line may not be longer than this. */
+    static final long MAP_WINDOW_BYTES = 256L << 20;
+
+    /** Default number of parser threads: every core but the one running the writer. */
+    static final int DEFAULT_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /** Minimum time between two {@link ImportProgressListener#onProgress} calls. */
+    private static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+
+    /** Bytes from each end of a file that go into its fingerprint. */
+    private static final int FINGERPRINT_SAMPLE_BYTES = 64 * 1024;
+
+    /** Numbers the import threads, for their names. */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * A block of whole lines read from the source.
+     */
+    private static final class Chunk {
+
+        /** Position of this block in the source, starting at 0. */
+        final long seq;
+
+        /** The bytes, from index 0 to the limit. */
+        final ByteBuffer data;
+
+        /** Offset in the source just past this block. */
+        final long endOffset;
+
+        Chunk(long seq, ByteBuffer data, long endOffset) {
+            this.seq = seq;
+            this.data = data;
+            this.endOffset = endOffset;
+        }
+    }
+
+    /** Tells a parser thread that no more blocks will come. */
+    private static final Chunk END = new Chunk(-1, ByteBuffer.allocate(0), 0);
+
+    /**
+     * The reader stage for one kind of source: hands blocks to {@link #emit(ByteBuffer, long)}.
+     */
+    @FunctionalInterface
+    private interface BlockReader {
+
+        /**
+         * Reads the whole source.
+         *
+         * @throws IOException          if the source cannot be read
+         * @throws InterruptedException if the import is aborted
+         */
+        void readBlocks() throws IOException, InterruptedException;
+    }
+
+    /**
+     * The result of parsing one {@link Chunk}.
+     */
+    private static final class Parsed {
+
+        /** Sequence number of the block this came from. */
+        final long seq;
+
+        /** Offset in the source just past the block. */
+        final long endOffset;
+
+        /** Number of lines in the block, including blank and invalid ones. */
+        int lines;
+
+        /** Valid rows that carry their own ID. */
+        final List<PCharacter> keyed = new ArrayList<>();
+
+        /** Valid rows without an ID. */
+        final List<PCharacter> fresh = new ArrayList<>();
+
+        /** Lines that could not be imported. */
+        final List<SkippedLine> errors = new ArrayList<>();
+
+        Parsed(long seq, long endOffset) {
+            this.seq = seq;
+            this.endOffset = endOffset;
+        }
+    }
+
+    /**
+     * A line that could not be imported.
+     */
+    private static final class SkippedLine {
+
+        /** Line number within its block, starting at 1. */
+        final int number;
+
+        /** The line as read. */
+        final String text;
+
+        /** Why it was skipped. */
+        final String reason;
+
+        SkippedLine(int number, String text, String reason) {
+            this.number = number;
+            this.text = text;
+            this.reason = reason;
+        }
+    }
+
+    /** Placed in the result queue by a parser thread when it stops. */
+    private static final Object WORKER_DONE = new Object();
+
+    /** The DAO the rows are written to. */
+    private final PCharacters db;
+
+    /** Source of IDs for rows that carry none. */
+    private final IdAllocator ids;
+
+    /** What to do with rows whose ID is already stored. */
+    private final ConflictPolicy policy;
+
+    /** Receives progress and skipped lines. */
+    private final ImportProgressListener listener;
+
+    /** Number of parser threads. */
+    private final int workers;
+
+    /** Number of rows of one kind collected before they are written. */
+    private final int batchSize;
+
+    /** Rows with an ID waiting to be written. */
+    private final List<PCharacter> keyed = new ArrayList<>();
+
+    /** Rows without an ID waiting to be written. */
+    private final List<PCharacter> fresh = new ArrayList<>();
+
+    /** Counters reported to the listener; only touched by the writer (calling) thread. */
+    private long rows, added, upserted, errors, lines, bytesRead;
+
+    /** Size of the source, or {@code -1} if unknown. */
+    private long totalBytes = -1;
+
+    /** Fingerprint of the file being imported, or {@code null} if progress is not checkpointed. */
+    private String fingerprint;
+
+    /** Modification time of the file being imported in milliseconds, for its checkpoints. */
+    private long fileModified;
+
+    /** Offset the import resumed from, or {@code 0}. */
+    private long resumedFrom;
+
+    /** Limits the number of blocks between the reader and the writer. */
+    private Semaphore permits;
+
+    /** Blocks waiting for a parser. */
+    private BlockingQueue<Chunk> chunks;
+
+    /** Parsed blocks, failures and {@link #WORKER_DONE} markers, waiting for the writer. */
+    private BlockingQueue<Object> results;
+
+    /** Sequence number of the next block the reader emits. */
+    private long nextChunk;
+
+    /** When the import started, from {@link System#nanoTime()}. */
+    private long startNanos;
+
+    /** When progress was last reported, from {@link System#nanoTime()}. */
+    private long lastReportNanos;
+
+    /**
+     * Creates an importer.
+     *
+     * @param db        the DAO to write to
+     * @param ids       source of IDs for rows without one
+     * @param policy    what to do with rows whose ID is already stored
+     * @param listener  receives progress and skipped lines
+     * @param workers   number of parser threads (at least 1)
+     * @param batchSize rows per write transaction (at least 1)
+     * @throws IllegalArgumentException if {@code workers} or {@code batchSize} is less than 1
+     */
+    RosterImporter(PCharacters db, IdAllocator ids, ConflictPolicy policy,
+                   ImportProgressListener listener, int workers, int batchSize) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.db = db;
+        this.ids = ids;
+        this.policy = policy;
+        this.listener = listener;
+        this.workers = workers;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports a roster file.
+     * <p>
+     * A plain file is read through memory-mapped windows. A gzip file (recognized by its
+     * magic bytes, whatever its name) is decompressed as it is read, without a temporary
+     * file; its checkpoints hold offsets in the decompressed data, so a resumed import
+     * decompresses and discards the committed part instead of parsing and writing it again.
+     *
+     * @param file the file to read
+     * @return the final counters
+     * @throws IOException if the file cannot be read, or is compressed in an unsupported format
+     */
+    ImportProgress run(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+                // keep reading until the magic is complete or the file ends
+            }
+            boolean gzip = isGzip(magic.array(), magic.position());
+            if (!gzip) {
+                rejectUnsupported(magic.array(), magic.position());
+            }
+            fingerprint = fingerprint(channel, size);
+            fileModified = Files.getLastModifiedTime(file).toMillis();
+
+            ImportCheckpoint checkpoint = db.getImportCheckpoint(fingerprint);
+            if (checkpoint != null && checkpoint.getFileModified() == fileModified
+                    && (gzip || checkpoint.getByteOffset() <= size)) {
+                resumedFrom = checkpoint.getByteOffset();
+                bytesRead = resumedFrom;
+                lines = checkpoint.getLineNumber();
+                listener.onResume(resumedFrom, lines);
+            } else if (checkpoint != null) {
+                // Same samples, but the file was changed since: its middle may differ
+                System.out.println("Ignoring stale import checkpoint for " + file + ": the file has changed");
+                db.deleteImportCheckpoint(fingerprint);
+            }
+
+            ImportProgress result;
+            try {
+                if (gzip) {
+                    InputStream in = new GZIPInputStream(Channels.newInputStream(channel.position(0)), INPUT_BUFFER_BYTES);
+                    result = run(() -> readStream(Channels.newChannel(in), resumedFrom), -1);
+                } else {
+                    result = run(() -> readMapped(channel, size, resumedFrom), size);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!interrupted(e)) {
+                    // Only an interrupted import is resumed; any other failure starts over next time
+                    try {
+                        db.deleteImportCheckpoint(fingerprint);
+                    } catch (RuntimeException cleanup) {
+                        e.addSuppressed(cleanup);
+                    }
+                }
+                throw e;
+            }
+            db.deleteImportCheckpoint(fingerprint);
+            return result;
+        }
+    }
+
+    /**
+     * Tells whether an import failed because it was interrupted, e.g. by a shutdown,
+     * rather than because of its input or the database.
+     *
+     * @param e the failure
+     * @return {@code true} if the import was interrupted
+     */
+    private static boolean interrupted(Exception e) {
+        return Thread.currentThread().isInterrupted() || e.getCause() instanceof InterruptedException
+                || e instanceof ClosedByInterruptException;
+    }
+
+    /**
+     * Imports a roster from a stream, decompressing it first if it is gzip.
+     * The stream is read to its end but not closed. Stream imports are not checkpointed.
+     *
+     * @param source the roster data, plain or gzip
+     * @return the final counters
+     * @throws IOException if the stream cannot be read, or is compressed in an unsupported format
+     */
+    ImportProgress run(InputStream source) throws IOException {
+        return run(Channels.newChannel(decompressed(source)), -1);
+    }
+
+    /**
+     * Imports a roster from any channel. The channel is read to its end but not closed.
+     *
+     * @param source     the roster data
+     * @param totalBytes size of the data, for the ETA, or {@code -1} if unknown
+     * @return the final counters
+     * @throws IOException if the source cannot be read
+     */
+    ImportProgress run(ReadableByteChannel source, long totalBytes) throws IOException {
+        return run(() -> readStream(source, 0), totalBytes);
+    }
+
+    /**
+     * Wraps a stream so that gzip data is decompressed on the fly; plain data passes through.
+     * The format is recognized from the first bytes, so no file name or extension is needed.
+     *
+     * @param in the raw stream
+     * @return a buffered stream of plain roster data
+     * @throws IOException if the stream cannot be read, or is compressed in an unsupported format
+     */
+    static InputStream decompressed(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, INPUT_BUFFER_BYTES);
+        buffered.mark(4);
+        byte[] magic = buffered.readNBytes(4);
+        buffered.reset();
+
+        if (isGzip(magic, magic.length)) {
+            return new GZIPInputStream(buffered, INPUT_BUFFER_BYTES);
+        }
+        rejectUnsupported(magic, magic.length);
+        return buffered;
+    }
+
+    /**
+     * Checks for the gzip magic bytes {@code 1F 8B}.
+     *
+     * @param magic  the first bytes of the data
+     * @param length how many of them were read
+     * @return {@code true} if the data is gzip
+     */
+    private static boolean isGzip(byte[] magic, int length) {
+        return length >= 2 && magic[0] == (byte) 0x1F && magic[1] == (byte) 0x8B;
+    }
+
+    /**
+     * Fails clearly on compressed formats the JDK cannot read, instead of reporting every
+     * line of binary data as invalid.
+     *
+     * @param magic  the first bytes of the data
+     * @param length how many of them were read
+     * @throws IOException if the data is Zstandard, bzip2 or xz
+     */
+    private static void rejectUnsupported(byte[] magic, int length) throws IOException {
+        String format = null;
+        if (length >= 4 && magic[0] == (byte) 0x28 && magic[1] == (byte) 0xB5
+                && magic[2] == (byte) 0x2F && magic[3] == (byte) 0xFD) {
+            format = "Zstandard";
+        } else if (length >= 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h') {
+            format = "bzip2";
+        } else if (length >= 4 && magic[0] == (byte) 0xFD && magic[1] == '7' && magic[2] == 'z' && magic[3] == 'X') {
+            format = "xz";
+        }
+        if (format != null) {
+            throw new IOException(format + "-compressed rosters are not supported; "
+                    + "decompress the file first or recompress it with gzip");
+        }
+    }
+
+    /**
+     * Computes a fingerprint of a file's content: a SHA-256 of its size and of the
+     * {@link #FINGERPRINT_SAMPLE_BYTES} at each end. It does not depend on the file's name,
+     * location or modification time, and costs two small reads however large the file is.
+     * Because the middle of the file is not sampled, a checkpoint is only trusted if the
+     * file's modification time also matches.
+     *
+     * @param channel the file
+     * @param size    the file size
+     * @return the fingerprint, as lower-case hex
+     * @throws IOException if the file cannot be read
+     */
+    static String fingerprint(FileChannel channel, long size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+
+        ByteBuffer sample = ByteBuffer.allocate(FINGERPRINT_SAMPLE_BYTES);
+        for (long start : new long[]{0, Math.max(0, size - FINGERPRINT_SAMPLE_BYTES)}) {
+            sample.clear();
+            while (sample.hasRemaining() && channel.read(sample, start + sample.position()) > 0) {
+                // keep reading until the sample is full or the file ends
+            }
+            sample.flip();
+            digest.update(sample);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Runs the pipeline with the given reader stage.
+     *
+     * @param reader     cuts the source into blocks
+     * @param totalBytes size of the source, or {@code -1} if unknown
+     * @return the final counters
+     * @throws IOException if the source cannot be read
+     */
+    private ImportProgress run(BlockReader reader, long totalBytes) throws IOException {
+        this.totalBytes = totalBytes;
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+
+        int inFlight = 2 * workers;
+        permits = new Semaphore(inFlight);
+        chunks = new ArrayBlockingQueue<>(inFlight + workers);
+        results = new ArrayBlockingQueue<>(inFlight + workers + 1);
+
+        ExecutorService threads = Executors.newFixedThreadPool(workers + 1, r -> {
+            Thread t = new Thread(r, "roster-import-" + THREAD_COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            threads.execute(() -> read(reader));
+            for (int i = 0; i < workers; i++) {
+                threads.execute(this::parse);
+            }
+            write();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", e);
+        } finally {
+            // Stops the reader and parsers if the writer failed
+            threads.shutdownNow();
+        }
+
+        ImportProgress last = snapshot(true);
+        listener.onComplete(last);
+        return last;
+    }
+
+    /**
+     * Reader stage: runs the block reader, then tells every parser to stop.
+     *
+     * @param reader cuts the source into blocks
+     */
+    private void read(BlockReader reader) {
+        try {
+            try {
+                reader.readBlocks();
+            } catch (IOException | RuntimeException e) {
+                results.put(e);
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    chunks.put(END);
+                }
+            }
+        } catch (InterruptedException e) {
+            // The import was aborted
+        }
+    }
+
+    /**
+     * Hands a block to the parsers, waiting if too many blocks are in flight.
+     *
+     * @param data      whole lines, from index 0 to the limit
+     * @param endOffset offset in the source just past the block
+     * @throws InterruptedException if the import is aborted
+     */
+    private void emit(ByteBuffer data, long endOffset) throws InterruptedException {
+        permits.acquire();
+        chunks.put(new Chunk(nextChunk++, data, endOffset));
+    }
+
+    /**
+     * Cuts a file into blocks that are slices of memory-mapped windows.
+     * <p>
+     * Each window is mapped at a line boundary, so no line is split between two windows.
+     *
+     * @param channel the file
+     * @param size    the file size
+     * @param start   offset to start at; must be at the start of a line
+     * @throws IOException          if the file cannot be mapped, or a line is longer than a window
+     * @throws InterruptedException if the import is aborted
+     */
+    private void readMapped(FileChannel channel, long size, long start) throws IOException, InterruptedException {
+        long offset = start;
+        while (offset < size) {
+            int limit = (int) Math.min(MAP_WINDOW_BYTES, size - offset);
+            boolean lastWindow = offset + limit == size;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, limit);
+
+            int pos = 0;
+            while (pos < limit) {
+                int cut = Math.min(pos + CHUNK_BYTES, limit);
+                if (cut < limit || !lastWindow) {
+                    // Extend the block to the end of the line it stops in
+                    int newline = indexOfNewline(window, cut - 1, limit);
+                    if (newline >= 0) {
+                        cut = newline + 1;
+                    } else if (lastWindow) {
+                        cut = limit;
+                    } else if (pos == 0) {
+                        throw new IOException("Line longer than " + MAP_WINDOW_BYTES + " bytes at offset " + offset);
+                    } else {
+                        break;  // Map the next window from the start of this line
+                    }
+                }
+                emit(window.slice(pos, cut - pos), offset + cut);
+                pos = cut;
+            }
+            offset += pos;
+        }
+    }
+
+    /**
+     * Finds the next newline in a buffer.
+     *
+     * @param buf  the buffer
+     * @param from index to start at
+     * @param to   index to stop before
+     * @return the index of the newline, or {@code -1} if there is none
+     */
+    private static int indexOfNewline(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cuts a channel into blocks of whole lines, read into byte arrays.
+     *
+     * @param source the channel
+     * @param skip   number of bytes to discard first (a resume offset); must end a line
+     * @throws IOException          if the channel cannot be read
+     * @throws InterruptedException if the import is aborted
+     */
+    private void readStream(ReadableByteChannel source, long skip) throws IOException, InterruptedException {
+        if (skip > 0) {
+            ByteBuffer discard = ByteBuffer.allocate((int) Math.min(CHUNK_BYTES, skip));
+            long left = skip;
+            while (left > 0) {
+                discard.clear().limit((int) Math.min(discard.capacity(), left));
+                int n = source.read(discard);
+                if (n < 0) {
+                    return;
+                }
+                left -= n;
+            }
+        }
+
+        byte[] carry = new byte[0];
+        long offset = skip;
+        boolean eof = false;
+        while (!eof) {
+            byte[] buf = new byte[Math.max(CHUNK_BYTES, carry.length * 2)];
+            System.arraycopy(carry, 0, buf, 0, carry.length);
+            ByteBuffer bb = ByteBuffer.wrap(buf, carry.length, buf.length - carry.length);
+            while (bb.hasRemaining()) {
+                if (source.read(bb) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            int filled = bb.position();
+
+            // Cut after the last newline; the rest starts the next block
+            int cut = filled;
+            if (!eof) {
+                while (cut > 0 && buf[cut - 1] != '\n') {
+                    cut--;
+                }
+                if (cut == 0) {
+                    // A single line longer than the buffer: read more of it
+                    carry = buf;
+                    continue;
+                }
+            }
+            carry = new byte[filled - cut];
+            System.arraycopy(buf, cut, carry, 0, carry.length);
+
+            if (cut > 0) {
+                offset += cut;
+                emit(ByteBuffer.wrap(buf, 0, cut), offset);
+            }
+        }
+    }
+
+    /**
+     * Parser stage: turns blocks into rows until the reader is done.
+     */
+    private void parse() {
+        RosterFileParser parser = new RosterFileParser();
+        try {
+            try {
+                Chunk chunk;
+                while ((chunk = chunks.take()) != END) {
+                    results.put(parseChunk(parser, chunk));
+                }
+            } catch (RuntimeException e) {
+                results.put(e);
+            } finally {
+                results.put(WORKER_DONE);
+            }
+        } catch (InterruptedException e) {
+            // The import was aborted
+        }
+    }
+
+    /**
+     * Parses every line of a block.
+     *
+     * @param parser this thread's parser
+     * @param chunk  the block
+     * @return the valid rows and the skipped lines
+     */
+    private static Parsed parseChunk(RosterFileParser parser, Chunk chunk) {
+        Parsed parsed = new Parsed(chunk.seq, chunk.endOffset);
+        parsed.lines = parser.parse(chunk.data, new RosterFileParser.RowHandler() {
+            @Override
+            public void row(PCharacter pc) {
+                (pc.hasGeneratedId() ? parsed.fresh : parsed.keyed).add(pc);
+            }
+
+            @Override
+            public void skipped(int lineNumber, String line, String reason) {
+                parsed.errors.add(new SkippedLine(lineNumber, line, reason));
+            }
+        });
+        return parsed;
+    }
+
+    /**
+     * Writer stage: takes parsed blocks, restores file order, and writes them in batches.
+     * A permit is released for every block written, so the reader can go on.
+     *
+     * @throws IOException          if the reader failed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    private void write()
+            throws IOException, InterruptedException {
+        Map<Long, Parsed> waiting = new HashMap<>();
+        long nextSeq = 0;
+        int running = workers;
+        while (running > 0) {
+            Object item = results.take();
+            if (item == WORKER_DONE) {
+                running--;
+                continue;
+            }
+            if (item instanceof IOException e) {
+                throw e;
+            }
+            if (item instanceof RuntimeException e) {
+                throw e;
+            }
+
+            Parsed parsed = (Parsed) item;
+            waiting.put(parsed.seq, parsed);
+            while ((parsed = waiting.remove(nextSeq)) != null) {
+                accept(parsed);
+                permits.release();
+                nextSeq++;
+            }
+        }
+        writeBatch();
+    }
+
+    /**
+     * Adds one parsed block, in file order, to the pending batches.
+     *
+     * @param parsed the block
+     */
+    private void accept(Parsed parsed) {
+        for (SkippedLine skipped : parsed.errors) {
+            listener.onError(lines + skipped.number, skipped.text, skipped.reason);
+        }
+        errors += parsed.errors.size();
+        lines += parsed.lines;
+        rows += parsed.keyed.size() + parsed.fresh.size();
+        bytesRead = parsed.endOffset;
+
+        keyed.addAll(parsed.keyed);
+        fresh.addAll(parsed.fresh);
+        if (keyed.size() >= batchSize || fresh.size() >= batchSize) {
+            writeBatch();
+        }
+
+        long now = System.nanoTime();
+        if (now - lastReportNanos >= PROGRESS_INTERVAL_NANOS) {
+            lastReportNanos = now;
+            listener.onProgress(snapshot(false));
+        }
+    }
+
+    /**
+     * Writes the pending rows, which cover the source up to {@link #bytesRead}.
+     * <p>
+     * Rows with an ID go first, so that every ID read from the file is stored (and observed
+     * by the allocator) before new IDs are allocated, and the two can never collide.
+     * The new rows are then inserted together with the checkpoint, if there is one.
+     */
+    private void writeBatch() {
+        if (!keyed.isEmpty()) {
+            upserted += db.upsertBatch(keyed, policy);
+            for (PCharacter pc : keyed) {
+                ids.observe(pc.getNumericId());
+            }
+            keyed.clear();
+        }
+        List<PCharacter> batch = new ArrayList<>(fresh.size());
+        for (PCharacter pc : fresh) {
+            // Already validated by the parser: only the ID changes
+            batch.add(PCharacter.fromChecked(ids.nextId(), pc.getName(), pc.getJobType(),
+                    pc.getLevel(), pc.getHp(), pc.getMp(), pc.isActive()));
+        }
+        fresh.clear();
+        if (fingerprint != null) {
+            added += db.insertBatch(batch, new ImportCheckpoint(fingerprint, bytesRead, lines, fileModified));
+        } else {
+            added += db.insertBatch(batch);
+        }
+    }
+
+    /**
+     * Captures the current counters.
+     *
+     * @param done whether the import has finished
+     * @return the snapshot
+     */
+    private ImportProgress snapshot(boolean done) {
+        return new ImportProgress(rows, added, upserted, errors, bytesRead, totalBytes, resumedFrom,
+                System.nanoTime() - startNanos, done);
+    }
+}
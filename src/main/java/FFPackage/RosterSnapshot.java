@@ -0,0 +1,525 @@
+package FFPackage;
+
+import DBHelper.CharacterRowVisitor;
+import DBHelper.PCharacters;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+
+/**
+ * Read-only, column-oriented copy of the whole roster, for reports and statistics.
+ * <p>
+ * Instead of one {@link PCharacter} object per row, every field is kept in its own
+ * primitive array: {@code int[]} for level, HP and MP, a {@code byte} per row for the
+ * {@link Job} code, a {@link BitSet} for the party flag, and all names packed into one
+ * UTF-8 byte array. A row costs about 30 bytes plus its name, so a million characters
+ * fit in a few tens of MB, and aggregates are plain loops over arrays that the JIT can
+ * unroll and vectorize.
+ * <p>
+ * Rows are numbered {@code 0} to {@link #size()}{@code - 1}, in ID order. Conditions are
+ * expressed as row masks ({@link BitSet}s built by {@link #all()}, {@link #active()},
+ * {@link #withJob(Job)} or {@link #between(Stat, int, int)}) that can be combined with
+ * {@link BitSet#and(BitSet)} and {@link BitSet#or(BitSet)} and passed to the aggregates:
+ * <pre>
+ * RosterSnapshot roster = ff.snapshot();
+ * BitSet veterans = roster.between(RosterSnapshot.Stat.LEVEL, 50, 99);
+ * veterans.and(roster.active());
+ * long partyHp = roster.sum(RosterSnapshot.Stat.HP, veterans);
+ * </pre>
+ * A snapshot is taken from one database scan and never changes afterwards; it is safe to
+ * share between threads.
+ */
+public final class RosterSnapshot {
+
+    /**
+     * Numeric columns that can be aggregated.
+     */
+    public enum Stat {
+
+        /** Character level. */
+        LEVEL,
+
+        /** Hit points. */
+        HP,
+
+        /** Magic points. */
+        MP
+    }
+
+    /** Initial row capacity while the snapshot is being read. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Largest job code a row can hold: codes are stored as unsigned bytes. */
+    private static final int MAX_JOB_CODE = 0xFF;
+
+    /** Size of the per-job arrays of the aggregates: one slot per code up to the largest one. */
+    private static final int JOB_SLOTS = jobSlots();
+
+    /** Number of rows. */
+    private final int size;
+
+    /** Character IDs, ascending. */
+    private final long[] ids;
+
+    /** {@link Job} code of each row, as an unsigned byte (read it with {@code & 0xFF}). */
+    private final byte[] jobs;
+
+    /** Level of each row. */
+    private final int[] levels;
+
+    /** Hit points of each row. */
+    private final int[] hps;
+
+    /** Magic points of each row. */
+    private final int[] mps;
+
+    /** Rows whose character is in the party. */
+    private final BitSet activeRows;
+
+    /** Every name, UTF-8 encoded, back to back. */
+    private final byte[] names;
+
+    /** Start of each row's name in {@link #names}; entry {@code size} is the end of the last one. */
+    private final int[] nameOffsets;
+
+    /**
+     * Creates a snapshot from filled columns.
+     *
+     * @param builder the builder holding the columns
+     */
+    private RosterSnapshot(Builder builder) {
+        this.size = builder.size;
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.jobs = Arrays.copyOf(builder.jobs, size);
+        this.levels = Arrays.copyOf(builder.levels, size);
+        this.hps = Arrays.copyOf(builder.hps, size);
+        this.mps = Arrays.copyOf(builder.mps, size);
+        this.activeRows = builder.activeRows;
+        this.names = Arrays.copyOf(builder.names, builder.nameLength);
+        this.nameOffsets = Arrays.copyOf(builder.nameOffsets, size + 1);
+    }
+
+    /**
+     * Reads every character into a new snapshot with one database scan.
+     *
+     * @param db the DAO to read from
+     * @return the snapshot
+     * @throws RuntimeException if the rows cannot be read
+     */
+    static RosterSnapshot of(PCharacters db) {
+        Builder builder = new Builder();
+        db.forEachRow(builder);
+        return new RosterSnapshot(builder);
+    }
+
+    /**
+     * Collects rows into growing column arrays.
+     */
+    private static final class Builder implements CharacterRowVisitor {
+
+        /** Rows collected so far. */
+        int size;
+
+        /** Bytes used in {@link #names}. */
+        int nameLength;
+
+        /** ID column; grows by doubling, like the other columns. */
+        long[] ids = new long[INITIAL_CAPACITY];
+
+        /** Job code column. */
+        byte[] jobs = new byte[INITIAL_CAPACITY];
+
+        /** Level column. */
+        int[] levels = new int[INITIAL_CAPACITY];
+
+        /** HP column. */
+        int[] hps = new int[INITIAL_CAPACITY];
+
+        /** MP column. */
+        int[] mps = new int[INITIAL_CAPACITY];
+
+        /** Name start offsets, plus the end of the last name. */
+        int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+
+        /** Name arena. */
+        byte[] names = new byte[INITIAL_CAPACITY * 16];
+
+        /** Party flags. */
+        final BitSet activeRows = new BitSet();
+
+        @Override
+        public void row(long id, byte[] name, int jobCode, int level, int hp, int mp, boolean isActive) {
+            if (Job.fromCode(jobCode) == null) {
+                throw new IllegalStateException("Unknown job code " + jobCode + " for character " + id);
+            }
+            if (jobCode > MAX_JOB_CODE) {
+                throw new IllegalStateException("Job code " + jobCode + " of character " + id
+                        + " does not fit in a snapshot (at most " + MAX_JOB_CODE + ")");
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                jobs = Arrays.copyOf(jobs, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+                hps = Arrays.copyOf(hps, capacity);
+                mps = Arrays.copyOf(mps, capacity);
+                nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+            }
+            if (nameLength + name.length > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, nameLength + name.length));
+            }
+
+            ids[size] = id;
+            jobs[size] = (byte) jobCode;
+            levels[size] = level;
+            hps[size] = hp;
+            mps[size] = mp;
+            if (isActive) {
+                activeRows.set(size);
+            }
+            nameOffsets[size] = nameLength;
+            System.arraycopy(name, 0, names, nameLength, name.length);
+            nameLength += name.length;
+            size++;
+            nameOffsets[size] = nameLength;
+        }
+    }
+
+    /**
+     * Returns the number of characters in this snapshot.
+     *
+     * @return the row count
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns the row of a character.
+     *
+     * @param id the character ID
+     * @return its row, or {@code -1} if the snapshot has no such character
+     */
+    public int rowOf(long id) {
+        int row = Arrays.binarySearch(ids, id);
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     * Returns the ID of the character in a row.
+     *
+     * @param row the row number
+     * @return the character ID
+     */
+    public long getId(int row) { return ids[checkRow(row)]; }
+
+    /**
+     * Returns the name of the character in a row, decoded from the name arena.
+     *
+     * @param row the row number
+     * @return the character name
+     */
+    public String getName(int row) {
+        checkRow(row);
+        return new String(names, nameOffsets[row], nameOffsets[row + 1] - nameOffsets[row], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the job of the character in a row.
+     *
+     * @param row the row number
+     * @return the job
+     */
+    public Job getJob(int row) { return Job.fromCode(jobs[checkRow(row)] & 0xFF); }
+
+    /**
+     * Returns one numeric value of the character in a row.
+     *
+     * @param stat the column to read
+     * @param row  the row number
+     * @return the value
+     */
+    public int get(Stat stat, int row) { return column(stat)[checkRow(row)]; }
+
+    /**
+     * Indicates whether the character in a row is in the party.
+     *
+     * @param row the row number
+     * @return {@code true} if active
+     */
+    public boolean isActive(int row) { return activeRows.get(checkRow(row)); }
+
+    /**
+     * Rebuilds the full character of a row.
+     *
+     * @param row the row number
+     * @return a new character with the row's values
+     */
+    public PCharacter getCharacter(int row) {
+        return PCharacter.fromTrusted(getId(row), getName(row), getJob(row),
+                levels[row], hps[row], mps[row], activeRows.get(row));
+    }
+
+    /**
+     * Returns a mask with every row set.
+     *
+     * @return a new mask of all rows
+     */
+    public BitSet all() {
+        BitSet mask = new BitSet(size);
+        mask.set(0, size);
+        return mask;
+    }
+
+    /**
+     * Returns a mask of the characters in the party.
+     *
+     * @return a new mask of the active rows
+     */
+    public BitSet active() {
+        return (BitSet) activeRows.clone();
+    }
+
+    /**
+     * Returns a mask of the characters with a job.
+     *
+     * @param job the job
+     * @return a new mask of the matching rows
+     */
+    public BitSet withJob(Job job) {
+        int code = job.getCode();
+        long[] words = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            words[i >>> 6] |= ((jobs[i] & 0xFF) == code ? 1L : 0L) << i;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Returns a mask of the characters whose value lies in a range.
+     *
+     * @param stat the column to test
+     * @param min  smallest accepted value (inclusive)
+     * @param max  largest accepted value (inclusive)
+     * @return a new mask of the matching rows
+     */
+    public BitSet between(Stat stat, int min, int max) {
+        int[] values = column(stat);
+        long[] words = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            int v = values[i];
+            // Non-short-circuit test keeps the loop free of branches
+            words[i >>> 6] |= (v >= min & v <= max ? 1L : 0L) << i;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Sums a column over every row.
+     *
+     * @param stat the column
+     * @return the total
+     */
+    public long sum(Stat stat) {
+        int[] values = column(stat);
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+
+    /**
+     * Sums a column over the rows of a mask.
+     *
+     * @param stat the column
+     * @param mask the rows to include
+     * @return the total
+     */
+    public long sum(Stat stat, BitSet mask) {
+        int[] values = column(stat);
+        long total = 0;
+        for (int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+            total += values[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the smallest value of a column.
+     *
+     * @param stat the column
+     * @return the minimum, or empty if the snapshot has no rows
+     */
+    public OptionalInt min(Stat stat) {
+        if (size == 0) {
+            return OptionalInt.empty();
+        }
+        int[] values = column(stat);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return OptionalInt.of(min);
+    }
+
+    /**
+     * Returns the smallest value of a column among the rows of a mask.
+     *
+     * @param stat the column
+     * @param mask the rows to include
+     * @return the minimum, or empty if the mask selects no row
+     */
+    public OptionalInt min(Stat stat, BitSet mask) {
+        int[] values = column(stat);
+        int min = Integer.MAX_VALUE;
+        boolean any = false;
+        for (int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+            min = Math.min(min, values[i]);
+            any = true;
+        }
+        return any ? OptionalInt.of(min) : OptionalInt.empty();
+    }
+
+    /**
+     * Returns the largest value of a column.
+     *
+     * @param stat the column
+     * @return the maximum, or empty if the snapshot has no rows
+     */
+    public OptionalInt max(Stat stat) {
+        if (size == 0) {
+            return OptionalInt.empty();
+        }
+        int[] values = column(stat);
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return OptionalInt.of(max);
+    }
+
+    /**
+     * Returns the largest value of a column among the rows of a mask.
+     *
+     * @param stat the column
+     * @param mask the rows to include
+     * @return the maximum, or empty if the mask selects no row
+     */
+    public OptionalInt max(Stat stat, BitSet mask) {
+        int[] values = column(stat);
+        int max = Integer.MIN_VALUE;
+        boolean any = false;
+        for (int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+            max = Math.max(max, values[i]);
+            any = true;
+        }
+        return any ? OptionalInt.of(max) : OptionalInt.empty();
+    }
+
+    /**
+     * Counts the characters of each job.
+     *
+     * @return the number of characters per job, in {@link Job} order; jobs nobody has are left out
+     */
+    public Map<Job, Integer> countByJob() {
+        return countByJob(all());
+    }
+
+    /**
+     * Counts the characters of each job among the rows of a mask.
+     *
+     * @param mask the rows to include
+     * @return the number of characters per job, in {@link Job} order; jobs with no row are left out
+     */
+    public Map<Job, Integer> countByJob(BitSet mask) {
+        int[] counts = new int[JOB_SLOTS];
+        for (int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+            counts[jobs[i] & 0xFF]++;
+        }
+        Map<Job, Integer> byJob = new EnumMap<>(Job.class);
+        for (Job job : Job.values()) {
+            if (job.getCode() < JOB_SLOTS && counts[job.getCode()] > 0) {
+                byJob.put(job, counts[job.getCode()]);
+            }
+        }
+        return byJob;
+    }
+
+    /**
+     * Sums a column per job among the rows of a mask.
+     *
+     * @param stat the column
+     * @param mask the rows to include
+     * @return the total per job, in {@link Job} order; jobs with no row are left out
+     */
+    public Map<Job, Long> sumByJob(Stat stat, BitSet mask) {
+        int[] values = column(stat);
+        long[] sums = new long[JOB_SLOTS];
+        boolean[] seen = new boolean[JOB_SLOTS];
+        for (int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+            int code = jobs[i] & 0xFF;
+            sums[code] += values[i];
+            seen[code] = true;
+        }
+        Map<Job, Long> byJob = new EnumMap<>(Job.class);
+        for (Job job : Job.values()) {
+            if (job.getCode() < JOB_SLOTS && seen[job.getCode()]) {
+                byJob.put(job, sums[job.getCode()]);
+            }
+        }
+        return byJob;
+    }
+
+    /**
+     * Estimates the heap used by this snapshot's columns.
+     *
+     * @return an approximate size in bytes
+     */
+    public long estimatedBytes() {
+        return (long) size * (Long.BYTES + 1 + 3 * Integer.BYTES + Integer.BYTES)
+                + activeRows.size() / 8 + names.length;
+    }
+
+    /**
+     * Returns the array holding a column.
+     *
+     * @param stat the column
+     * @return the backing array; never handed out
+     */
+    private int[] column(Stat stat) {
+        switch (stat) {
+            case LEVEL: return levels;
+            case HP: return hps;
+            default: return mps;
+        }
+    }
+
+    /**
+     * Checks a row number.
+     *
+     * @param row the row number
+     * @return {@code row}
+     * @throws IndexOutOfBoundsException if it is not a row of this snapshot
+     */
+    private int checkRow(int row) {
+        return Objects.checkIndex(row, size);
+    }
+
+    /**
+     * Computes {@link #JOB_SLOTS}.
+     *
+     * @return one more than the largest {@link Job#getCode()} that fits in a row
+     */
+    private static int jobSlots() {
+        int max = 0;
+        for (Job job : Job.values()) {
+            if (job.getCode() <= MAX_JOB_CODE) {
+                max = Math.max(max, job.getCode());
+            }
+        }
+        return max + 1;
+    }
+}
@@ -0,0 +1,135 @@
+package DBHelper;
+
+import FFPackage.PCharacter;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CharacterCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private PCharacters db;
+
+    @BeforeEach
+    public void setUp() {
+        db = new PCharacters(dir.resolve("cache.db").toString());
+        db.insert(1001L, "Cloud", "Warrior", 50, 9999, 9500, true);
+        db.insert(1002L, "Tifa", "Monk", 48, 8800, 5500, true);
+        db.insert(1003L, "Barrett", "Dragoon", 48, 8800, 5500, false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testRepeatedLookupsHitTheCache() {
+        CharacterCache cache = new CharacterCache(10, 0);
+        db.setCache(cache);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Cloud", db.selectById(1001L).getName());
+            assertTrue(db.idExists(1001L));
+        }
+        assertEquals(1, cache.getMisses(), "Only the first lookup should reach SQLite");
+        assertEquals(9, cache.getHits());
+        assertNull(db.selectById(4242L));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testReturnedCharactersAreCopies() {
+        db.setCache(new CharacterCache(10, 0));
+
+        db.selectById(1001L).setName("Changed");
+        assertEquals("Cloud", db.selectById(1001L).getName());
+    }
+
+    @Test
+    public void testWritesInvalidateEntries() {
+        db.setCache(new CharacterCache(10, 0));
+        db.selectById(1001L);
+        db.selectById(1002L);
+        db.selectById(1003L);
+
+        db.update(1001L, new CharacterPatch().level(51));
+        assertEquals(51, db.selectById(1001L).getLevel());
+
+        db.update("name", "Tifa Lockhart", "id", "1002");
+        assertEquals("Tifa Lockhart", db.selectById(1002L).getName());
+
+        db.update("hp", "1", "job", "Dragoon");
+        assertEquals(1, db.selectById(1003L).getHp(), "Writes by other columns flush the whole cache");
+
+        assertTrue(db.deleteById(1003L));
+        assertNull(db.selectById(1003L));
+        assertFalse(db.idExists(1003L));
+
+        db.delete("id", "1002");
+        assertFalse(db.idExists(1002L));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        CharacterCache cache = new CharacterCache(2, 0);
+        db.setCache(cache);
+
+        db.selectById(1001L);
+        db.selectById(1002L);
+        db.selectById(1001L);          // 1002 is now the least recently used
+        db.selectById(1003L);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        long misses = cache.getMisses();
+        db.selectById(1001L);
+        assertEquals(misses, cache.getMisses(), "1001 should still be cached");
+        db.selectById(1002L);
+        assertEquals(misses + 1, cache.getMisses(), "1002 should have been evicted");
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        AtomicLong now = new AtomicLong();
+        CharacterCache cache = new CharacterCache(10, 1000, now::get);
+        db.setCache(cache);
+
+        db.selectById(1001L);
+        now.addAndGet(999_000_000L);
+        db.selectById(1001L);
+        assertEquals(1, cache.getHits());
+
+        now.addAndGet(1_000_000L);
+        db.selectById(1001L);
+        assertEquals(1, cache.getExpirations());
+        assertEquals(2, cache.getMisses());
+
+        now.addAndGet(5_000_000_000L);
+        cache.purgeExpired();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testStaleLoadIsNotCached() {
+        CharacterCache cache = new CharacterCache(10, 0);
+        long generation = cache.generation();
+        PCharacter stale = db.selectById(1001L);
+
+        cache.invalidate(1001L);
+        cache.put(1001L, stale, generation);
+        assertEquals(0, cache.size(), "A load that raced with a write must be dropped");
+    }
+
+    @Test
+    public void testInvalidLimitsThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new CharacterCache(0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new CharacterCache(10, -1));
+    }
+}
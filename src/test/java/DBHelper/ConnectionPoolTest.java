@@ -0,0 +1,38 @@
+package DBHelper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    @Test
+    public void testCloseWakesWaitingBorrowers(@TempDir Path dir) throws Exception {
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("pool.db"), 1, SQLiteProfile.BALANCED);
+        PooledConnection held = pool.borrow();
+
+        CompletableFuture<PooledConnection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.borrow();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(waiting.isDone(), "Every connection is borrowed");
+
+        pool.close();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, e.getCause().getCause());
+
+        held.close();
+        assertTrue(held.connection().isClosed(), "Connections released after close are closed");
+    }
+}
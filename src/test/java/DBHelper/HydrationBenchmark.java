@@ -0,0 +1,94 @@
+package DBHelper;
+
+import FFPackage.Job;
+import FFPackage.PCharacter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manual benchmark for reading characters back from the database.
+ * <p>
+ * Not a unit test (it is not run by the build). Run it from the IDE or with
+ * {@code java -cp <test classpath> DBHelper.HydrationBenchmark [rows]}; it fills a
+ * temporary database with {@code rows} characters (200,000 by default), then reports:
+ * <ul>
+ *     <li>the time of a full {@link PCharacters#selectAll()}</li>
+ *     <li>the time to build the same rows with the validating constructor and with
+ *         {@link PCharacter#fromTrusted}, without any database work, which isolates
+ *         the cost of validation</li>
+ * </ul>
+ */
+public class HydrationBenchmark {
+
+    /** Untimed rounds run first so the JIT has compiled the hot paths. */
+    private static final int WARMUP_ROUNDS = 3;
+
+    /** Timed rounds; the average is reported. */
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Job[] jobs = Job.values();
+
+        Path file = Files.createTempFile("hydration-benchmark", ".db");
+        try (PCharacters db = new PCharacters(file.toString())) {
+            List<PCharacter> roster = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                roster.add(new PCharacter(String.valueOf(i + 1), "Hero " + i, jobs[i % jobs.length].getDisplayName(),
+                        1 + i % 99, 100 + i % 9000, i % 999, i % 3 == 0));
+            }
+            db.insertBatch(roster);
+
+            report("selectAll", rows, () -> db.selectAll().size());
+            report("validating constructor", rows, () -> {
+                int built = 0;
+                for (int i = 0; i < rows; i++) {
+                    built += new PCharacter(String.valueOf(i + 1), "Hero " + i, jobs[i % jobs.length].getDisplayName(),
+                            1 + i % 99, 100 + i % 9000, i % 999, i % 3 == 0).getLevel();
+                }
+                return built;
+            });
+            report("fromTrusted", rows, () -> {
+                int built = 0;
+                for (int i = 0; i < rows; i++) {
+                    built += PCharacter.fromTrusted(i + 1, "Hero " + i, jobs[i % jobs.length],
+                            1 + i % 99, 100 + i % 9000, i % 999, i % 3 == 0).getLevel();
+                }
+                return built;
+            });
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+    }
+
+    /** A measured piece of work; returns a value so the JIT cannot drop it. */
+    private interface Work {
+        int run();
+    }
+
+    /**
+     * Runs {@code work} for the warm-up and timed rounds and prints the average time.
+     *
+     * @param label what is measured
+     * @param rows  rows handled per round
+     * @param work  the work to time
+     */
+    private static void report(String label, int rows, Work work) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += work.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += work.run();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+        System.out.printf("%-24s %8.1f ms  %,12.0f rows/s  (%d)%n", label, millis, rows / millis * 1000, sink);
+    }
+}
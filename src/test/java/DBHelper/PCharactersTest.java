@@ -4,7 +4,17 @@ import FFPackage.PCharacter;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,9 +34,12 @@ public class PCharactersTest {
 
     @AfterEach
     public void tearDown() {
-        File testDb = new File(TEST_DB_PATH);
-        if (testDb.exists()) {
-            testDb.delete();
+        db.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            File testDb = new File(TEST_DB_PATH + suffix);
+            if (testDb.exists()) {
+                testDb.delete();
+            }
         }
     }
 
@@ -155,4 +168,450 @@ public class PCharactersTest {
 
         assertTrue(db.idExists(id), "Character should exist");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConnectionsAreReturnedToPool() {
+        db.close();
+        db = new PCharacters(TEST_DB_PATH, 1);
+        assertEquals(1, db.getPoolSize());
+
+        // With a single pooled connection, every call must hand it back for the next one to work
+        for (int i = 0; i < 50; i++) {
+            db.insert(String.valueOf(2000 + i), "Cloud", "Warrior", 50, 9999, 9999, true);
+            assertNotNull(db.selectById(String.valueOf(2000 + i)));
+        }
+        assertEquals(50, db.selectAll().size());
+    }
+
+    @Test
+    public void testConcurrentLookupsShareSmallPool() throws InterruptedException {
+        db.close();
+        db = new PCharacters(TEST_DB_PATH, 2);
+        db.insert("2222", "Cloud", "Warrior", 50, 9999, 9999, true);
+
+        Thread[] threads = new Thread[8];
+        boolean[] found = new boolean[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                boolean ok = true;
+                for (int i = 0; i < 100; i++) {
+                    ok &= db.idExists("2222");
+                }
+                found[index] = ok;
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (boolean ok : found) {
+            assertTrue(ok, "Every thread should see the character");
+        }
+    }
+
+    @Test
+    public void testInvalidPoolSizeThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new PCharacters(TEST_DB_PATH, 0));
+    }
+
+    @Test
+    public void testInsertBatch() {
+        List<PCharacter> batch = List.of(
+                new PCharacter("1234", "Cloud", "Warrior", 50, 9999, 9500, true),
+                new PCharacter("3333", "Tifa", "Monk", 48, 8800, 5500, true),
+                new PCharacter("5555", "Barrett", "Dragoon", 48, 8800, 5500, false)
+        );
+
+        // Chunk size smaller than the batch so more than one executeBatch runs
+        assertEquals(3, db.insertBatch(batch, 2));
+
+        assertEquals(3, db.selectAll().size());
+        assertEquals("Tifa", db.selectById("3333").getName());
+        assertFalse(db.selectById("5555").isActive());
+    }
+
+    @Test
+    public void testInsertBatchRollsBackOnDuplicateId() {
+        db.insert("1111", "Cloud", "Warrior", 50, 9999, 9999, true);
+
+        List<PCharacter> batch = List.of(
+                new PCharacter("2222", "Tifa", "Monk", 48, 8800, 5500, true),
+                new PCharacter("1111", "Barrett", "Dragoon", 48, 8800, 5500, true)
+        );
+
+        assertThrows(RuntimeException.class, () -> db.insertBatch(batch));
+        assertFalse(db.idExists("2222"), "Nothing from a failed batch should be committed");
+        assertEquals("Cloud", db.selectById("1111").getName());
+    }
+
+    @Test
+    public void testProfileEnablesWal() throws SQLException {
+        db.close();
+        db = new PCharacters(TEST_DB_PATH, SQLiteProfile.forName("bulk-load"));
+        assertSame(SQLiteProfile.BULK_LOAD, db.getProfile());
+        db.insert("2222", "Cloud", "Warrior", 50, 9999, 9999, true);
+
+        // journal_mode=WAL is persistent, so a plain connection sees it too
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH);
+             ResultSet rs = conn.createStatement().executeQuery("PRAGMA journal_mode")) {
+            assertTrue(rs.next());
+            assertEquals("wal", rs.getString(1).toLowerCase());
+        }
+    }
+
+    @Test
+    public void testProfilePresetsAndValidation() {
+        assertSame(SQLiteProfile.DURABLE, SQLiteProfile.forName("Durable"));
+        assertSame(SQLiteProfile.BALANCED, SQLiteProfile.forName("balanced"));
+        assertEquals("FULL", SQLiteProfile.DURABLE.getSynchronous());
+        assertEquals("OFF", SQLiteProfile.BULK_LOAD.getSynchronous());
+        assertThrows(IllegalArgumentException.class, () -> SQLiteProfile.forName("turbo"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SQLiteProfile("bad", "WAL; DROP TABLE characters", "OFF", 0, 0, "MEMORY", 0));
+    }
+
+    @Test
+    public void testNumericIdAccess() {
+        db.insert(2222L, "Cloud", "Warrior", 50, 9999, 9999, true);
+
+        assertTrue(db.idExists(2222L));
+        assertTrue(db.idExists("2222"));
+        assertFalse(db.idExists("not-an-id"));
+        assertNull(db.selectById("abc"));
+
+        PCharacter cloud = db.selectById(2222L);
+        assertEquals("2222", cloud.getId());
+        assertEquals(2222L, cloud.getNumericId());
+
+        assertTrue(db.deleteById(2222L));
+        assertFalse(db.deleteById(2222L));
+    }
+
+    @Test
+    public void testMigratesLegacyTextIds() throws SQLException {
+        db.close();
+        new File(TEST_DB_PATH).delete();
+        createLegacyDatabase("9530", "5755");
+
+        db = new PCharacters(TEST_DB_PATH);
+
+        assertEquals("Test1", db.selectById(9530L).getName());
+        assertEquals(2, db.selectAll().size());
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH);
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+                assertEquals(PCharacters.SCHEMA_VERSION, rs.getInt(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT typeof(id), typeof(job) FROM characters")) {
+                assertTrue(rs.next());
+                assertEquals("integer", rs.getString(1));
+                assertEquals("integer", rs.getString(2), "Jobs are stored as codes");
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT job FROM characters_view WHERE id = 9530")) {
+                assertEquals("Ninja", rs.getString(1));
+            }
+        }
+        assertEquals("Ninja", db.selectById(5755L).getJob());
+        assertEquals(2, db.select(new CharacterFilter().job("ninja")).size());
+    }
+
+    @Test
+    public void testMigrationRejectsNonNumericIds() throws SQLException {
+        db.close();
+        new File(TEST_DB_PATH).delete();
+        createLegacyDatabase("9530", "abc");
+
+        assertThrows(RuntimeException.class, () -> new PCharacters(TEST_DB_PATH));
+
+        // The failed migration must leave the legacy table untouched
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH);
+             ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM characters WHERE id = 'abc'")) {
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    // Writes a database in the original layout (id TEXT PRIMARY KEY, user_version 0)
+    private void createLegacyDatabase(String... ids) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE characters (id TEXT PRIMARY KEY, name TEXT NOT NULL, job TEXT NOT NULL, " +
+                    "level INTEGER NOT NULL, hp INTEGER NOT NULL, mp INTEGER NOT NULL, isActive INTEGER NOT NULL)");
+            int n = 1;
+            for (String id : ids) {
+                stmt.execute("INSERT INTO characters VALUES ('" + id + "', 'Test" + n++ + "', 'Ninja', 50, 5000, 500, 1)");
+            }
+        }
+    }
+
+    @Test
+    public void testPatchUpdatesSeveralColumnsAtOnce() throws SQLException {
+        db.insert(2222L, "Cloud", "Warrior", 50, 9999, 9999, true);
+
+        assertTrue(db.update(2222L, new CharacterPatch().level(51).hp(10250).active(false)));
+        assertFalse(db.update(3333L, new CharacterPatch().level(51)), "Unknown ID updates nothing");
+        assertFalse(db.update(2222L, new CharacterPatch()), "Empty patch updates nothing");
+
+        PCharacter cloud = db.selectById(2222L);
+        assertEquals("Cloud", cloud.getName(), "Unset fields must not change");
+        assertEquals(51, cloud.getLevel());
+        assertEquals(10250, cloud.getHp());
+        assertFalse(cloud.isActive());
+
+        // Values are bound natively, so INTEGER columns really hold integers
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH);
+             ResultSet rs = conn.createStatement().executeQuery("SELECT typeof(hp) FROM characters WHERE id = 2222")) {
+            assertEquals("integer", rs.getString(1));
+        }
+    }
+
+    @Test
+    public void testPatchSqlIsSharedPerColumnCombination() {
+        String sql = new CharacterPatch().level(1).hp(2).toSql();
+        assertEquals("UPDATE characters SET level=?, hp=? WHERE id=?", sql);
+        assertSame(sql, new CharacterPatch().hp(5).level(9).toSql());
+    }
+
+    @Test
+    public void testForEachAndStream() {
+        assertTrue(db.isEmpty());
+        db.insert("5555", "Barrett", "Dragoon", 48, 8800, 5500, false);
+        db.insert("1234", "Cloud", "Warrior", 50, 9999, 9500, true);
+        db.insert("3333", "Tifa", "Monk", 48, 8800, 5500, true);
+        assertFalse(db.isEmpty());
+
+        List<String> seen = new ArrayList<>();
+        db.forEach(c -> seen.add(c.getId()));
+        assertEquals(List.of("1234", "3333", "5555"), seen, "Rows should arrive in ID order");
+
+        try (Stream<PCharacter> characters = db.stream()) {
+            List<String> active = characters.filter(PCharacter::isActive)
+                    .map(PCharacter::getName)
+                    .collect(Collectors.toList());
+            assertEquals(List.of("Cloud", "Tifa"), active);
+        }
+    }
+
+    @Test
+    public void testClosingPartialStreamReleasesConnection() {
+        db.close();
+        db = new PCharacters(TEST_DB_PATH, 1);
+        db.insert("1234", "Cloud", "Warrior", 50, 9999, 9500, true);
+        db.insert("3333", "Tifa", "Monk", 48, 8800, 5500, true);
+
+        // Stop after one row; closing must still hand the only connection back
+        for (int i = 0; i < 5; i++) {
+            try (Stream<PCharacter> characters = db.stream()) {
+                assertTrue(characters.findFirst().isPresent());
+            }
+        }
+        assertTrue(db.idExists("3333"));
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        db.insert("5555", "Barrett", "Dragoon", 48, 8800, 5500, false);
+        db.insert("1234", "Cloud", "Warrior", 50, 9999, 9500, true);
+        db.insert("3333", "Tifa", "Monk", 48, 8800, 5500, true);
+        db.insert("4444", "Aerith", "White Mage", 45, 6000, 9999, true);
+        db.insert("2222", "Yuffie", "Thief", 42, 5000, 4000, false);
+
+        // Walk every ordering two rows at a time
+        assertEquals(List.of("Cloud", "Yuffie", "Tifa", "Aerith", "Barrett"), walk(SortColumn.ID));
+        assertEquals(List.of("Aerith", "Barrett", "Cloud", "Tifa", "Yuffie"), walk(SortColumn.NAME));
+        // Ties on level fall back to ID order (3333 before 5555)
+        assertEquals(List.of("Yuffie", "Aerith", "Tifa", "Barrett", "Cloud"), walk(SortColumn.LEVEL));
+
+        assertTrue(db.selectPage(db.selectById("5555"), 10, SortColumn.ID).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> db.selectPage(null, 0, SortColumn.ID));
+    }
+
+    @Test
+    public void testPaginationUsesIndexSeek() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH);
+             ResultSet rs = conn.createStatement().executeQuery(
+                     "EXPLAIN QUERY PLAN SELECT * FROM characters WHERE (level, id) > (10, 1) "
+                             + "ORDER BY level, id LIMIT 10")) {
+            assertTrue(rs.next());
+            String plan = rs.getString("detail");
+            assertTrue(plan.contains("idx_characters_level"), plan);
+            assertFalse(plan.contains("TEMP B-TREE"), "Ordering should come from the index: " + plan);
+        }
+    }
+
+    @Test
+    public void testFilterQueriesUseIndexes() throws SQLException {
+        db.insert("1001", "Kain", "Dragoon", 60, 7000, 100, true);
+        db.insert("1002", "Freya", "Dragoon", 70, 6000, 300, false);
+        db.insert("1003", "Rosa", "White Mage", 55, 4000, 900, true);
+
+        assertEquals(2, db.selectByJob("Dragoon").size());
+        assertEquals(2, db.selectByLevelRange(56, 99).size());
+        assertEquals(2, db.selectActiveParty().size());
+        assertEquals(3, db.select(new CharacterFilter()).size(), "An empty filter matches everything");
+        assertEquals("SELECT * FROM characters WHERE job = ? AND isActive = ? AND level >= ? ORDER BY id",
+                new CharacterFilter().minLevel(1).job("x").active(true).toSql());
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH);
+             ResultSet rs = conn.createStatement().executeQuery("EXPLAIN QUERY PLAN "
+                     + new CharacterFilter().job("Dragoon").active(true).minLevel(50).toSql())) {
+            assertTrue(rs.next());
+            String plan = rs.getString("detail");
+            assertTrue(plan.contains("idx_characters_job_active_level"), plan);
+        }
+    }
+
+    @Test
+    public void testReadPoolIsReadOnly() throws SQLException {
+        try (ConnectionPool readers = new ConnectionPool("jdbc:sqlite:" + TEST_DB_PATH, 1, SQLiteProfile.BALANCED, true);
+             PooledConnection conn = readers.borrow()) {
+            assertTrue(readers.isReadOnly());
+            assertThrows(SQLException.class,
+                    () -> conn.connection().createStatement().execute("DELETE FROM characters"));
+        }
+    }
+
+    @Test
+    public void testReadsDoNotWaitForOpenWriteTransaction() throws SQLException {
+        db.insert("1234", "Cloud", "Warrior", 50, 9999, 9500, true);
+
+        try (Connection writer = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_PATH)) {
+            writer.setAutoCommit(false);
+            writer.createStatement().execute("UPDATE characters SET level = 99 WHERE id = 1234");
+
+            // The write lock is held and uncommitted; readers keep seeing the last snapshot
+            assertEquals(50, db.selectById("1234").getLevel());
+            assertEquals(1, db.selectAll().size());
+
+            writer.commit();
+        }
+        assertEquals(99, db.selectById("1234").getLevel());
+    }
+
+    @Test
+    public void testSelectByIds() {
+        List<PCharacter> batch = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            batch.add(new PCharacter(String.valueOf(10_000 + i), "Hero" + i, "Knight", 1 + i % 99, 100, 10, true));
+        }
+        db.insertBatch(batch);
+
+        List<String> wanted = new ArrayList<>();
+        for (int i = 1199; i >= 0; i -= 2) {
+            wanted.add(String.valueOf(10_000 + i));
+        }
+        wanted.add("99");          // unknown
+        wanted.add("abc");         // not numeric
+        wanted.add("11199");       // duplicate of the first entry
+
+        Map<String, PCharacter> found = db.selectByIds(wanted);
+        assertEquals(600, found.size());
+        assertEquals("11199", found.keySet().iterator().next(), "Keys keep the requested order");
+        assertEquals("Hero1199", found.get("11199").getName());
+        assertTrue(db.selectByIds(List.of()).isEmpty());
+
+        // Every chunk size is used, including a padded one
+        assertEquals(3, db.selectByIds(List.of("10000", "10001", "10002")).size());
+        assertEquals(1, db.selectByIds(List.of("10005")).size());
+    }
+
+    @Test
+    public void testMissingIdsAndExistsAll() {
+        db.insert("1234", "Cloud", "Warrior", 50, 9999, 9500, true);
+        db.insert("3333", "Tifa", "Monk", 48, 8800, 5500, true);
+
+        assertTrue(db.existsAll(List.of("1234", "3333", "1234")));
+        assertTrue(db.existsAll(List.of()));
+        assertFalse(db.existsAll(List.of("1234", "4444")));
+        assertEquals(Set.of("4444", "x"), db.missingIds(List.of("3333", "4444", "x", "1234")));
+    }
+
+    @Test
+    public void testMultiGetFailsInsteadOfReportingMissing() {
+        db.close();
+        assertThrows(RuntimeException.class, () -> db.missingIds(List.of("1234")),
+                "A failed query is not the same as every ID missing");
+        assertThrows(RuntimeException.class, () -> db.existsAll(List.of("1234")));
+        assertThrows(RuntimeException.class, () -> db.selectByIds(List.of("1234")));
+        db = new PCharacters(TEST_DB_PATH);
+    }
+
+    @Test
+    public void testSelectByIdsUsesCache() {
+        db.insert("1234", "Cloud", "Warrior", 50, 9999, 9500, true);
+        db.insert("3333", "Tifa", "Monk", 48, 8800, 5500, true);
+        CharacterCache cache = new CharacterCache(10, 0);
+        db.setCache(cache);
+
+        db.selectById(1234L);
+        Map<String, PCharacter> found = db.selectByIds(List.of("1234", "3333"));
+        assertEquals(2, found.size());
+        assertEquals(1, cache.getHits(), "The cached character is not queried again");
+        db.selectById(3333L);
+        assertEquals(2, cache.getHits(), "Rows loaded in bulk are cached too");
+    }
+
+    @Test
+    public void testUpsertBatchPolicies() {
+        db.insert("1234", "Cloud", "Warrior", 50, 9999, 9500, true);
+        db.insert("3333", "Tifa", "Monk", 48, 8800, 5500, true);
+        CharacterCache cache = new CharacterCache(10, 0);
+        db.setCache(cache);
+        db.selectById(1234L);
+
+        List<PCharacter> roster = List.of(
+                new PCharacter("1234", "Cloud", "Warrior", 40, 9999, 9500, false),
+                new PCharacter("3333", "Tifa", "Monk", 48, 8800, 5500, true),
+                new PCharacter("5555", "Aerith", "White Mage", 45, 7500, 900, true));
+
+        assertEquals(1, db.upsertBatch(roster, ConflictPolicy.SKIP), "Only the new ID is written");
+        assertEquals(50, db.selectById("1234").getLevel());
+        assertTrue(db.selectById("1234").isActive());
+
+        assertEquals(1, db.upsertBatch(roster, ConflictPolicy.MERGE_MAX_LEVEL), "Unchanged rows are not written");
+        PCharacter merged = db.selectById("1234");
+        assertEquals(50, merged.getLevel(), "Merge keeps the higher level");
+        assertFalse(merged.isActive(), "Other columns come from the import");
+
+        assertEquals(1, db.upsertBatch(roster, ConflictPolicy.OVERWRITE));
+        assertEquals(40, db.selectById("1234").getLevel(), "Overwrite takes the imported level");
+        assertEquals(0, db.upsertBatch(roster, ConflictPolicy.OVERWRITE), "Re-importing the same roster writes nothing");
+        assertEquals(0, db.upsertBatch(List.of(), ConflictPolicy.OVERWRITE));
+        assertEquals(ConflictPolicy.MERGE_MAX_LEVEL, ConflictPolicy.forName("merge-max-level"));
+    }
+
+    @Test
+    public void testInsertBatchWithCheckpointIsAtomic() {
+        assertNull(db.getImportCheckpoint("roster"));
+
+        db.insertBatch(List.of(new PCharacter("1234", "Cloud", "Warrior", 50, 9999, 9500, true)),
+                new ImportCheckpoint("roster", 100, 2));
+        ImportCheckpoint stored = db.getImportCheckpoint("roster");
+        assertEquals(100, stored.getByteOffset());
+        assertEquals(2, stored.getLineNumber());
+
+        // A failing batch leaves the previous checkpoint in place
+        List<PCharacter> clash = List.of(
+                new PCharacter("3333", "Tifa", "Monk", 48, 8800, 5500, true),
+                new PCharacter("1234", "Cloud", "Warrior", 50, 9999, 9500, true));
+        assertThrows(RuntimeException.class, () -> db.insertBatch(clash, new ImportCheckpoint("roster", 200, 4)));
+        assertEquals(100, db.getImportCheckpoint("roster").getByteOffset());
+        assertFalse(db.idExists("3333"));
+
+        db.insertBatch(List.of(), new ImportCheckpoint("roster", 300, 6));
+        assertEquals(300, db.getImportCheckpoint("roster").getByteOffset());
+        db.deleteImportCheckpoint("roster");
+        assertNull(db.getImportCheckpoint("roster"));
+    }
+
+    private List<String> walk(SortColumn sort) {
+        List<String> names = new ArrayList<>();
+        List<PCharacter> page = db.selectPage(null, 2, sort);
+        while (!page.isEmpty()) {
+            page.forEach(c -> names.add(c.getName()));
+            page = db.selectPage(page.get(page.size() - 1), 2, sort);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,87 @@
+package DBHelper;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequenceIdAllocatorTest {
+
+    @TempDir
+    Path dir;
+
+    private PCharacters db;
+
+    @BeforeEach
+    public void setUp() {
+        db = new PCharacters(dir.resolve("ids.db").toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testIdsAreUniqueAcrossBlocks() {
+        SequenceIdAllocator ids = new SequenceIdAllocator(db, 1000, 1_000_000, 10);
+
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(seen.add(ids.nextId()), "IDs must never repeat");
+        }
+    }
+
+    @Test
+    public void testSequenceIsPersisted() {
+        SequenceIdAllocator first = new SequenceIdAllocator(db, 1000, 1_000_000, 10);
+        long a = first.nextId();
+
+        // A second allocator (e.g. after a restart) must start after the first one's block
+        SequenceIdAllocator second = new SequenceIdAllocator(db, 1000, 1_000_000, 10);
+        long b = second.nextId();
+
+        assertEquals(1000, a);
+        assertTrue(b >= a + 10, "New block should start after the reserved one");
+    }
+
+    @Test
+    public void testSkipsExistingAndObservedIds() {
+        db.insert("5000", "Cloud", "Warrior", 50, 9999, 9999, true);
+        SequenceIdAllocator ids = new SequenceIdAllocator(db, 1000, 1_000_000, 10);
+
+        long first = ids.nextId();
+        assertEquals(5001, first, "Allocation should start after the highest stored ID");
+
+        // An explicit insert inside the current block must not be handed out again
+        db.insert("5005", "Tifa", "Monk", 48, 8800, 5500, true);
+        ids.observe(5005);
+        assertTrue(ids.nextId() > 5005);
+    }
+
+    @Test
+    public void testExplicitIdBeyondRangeIsIgnored() {
+        db.insert(10_000_000_000L, "Far", "Monk", 1, 100, 10, true);
+        SequenceIdAllocator ids = new SequenceIdAllocator(db);
+
+        assertEquals(SequenceIdAllocator.DEFAULT_MIN_ID, ids.nextId(),
+                "An ID above the maximum must not exhaust the generated range");
+    }
+
+    @Test
+    public void testExhaustedRangeThrows() {
+        SequenceIdAllocator ids = new SequenceIdAllocator(db, 1, 3, 2);
+        ids.nextId();
+        ids.nextId();
+        ids.nextId();
+        assertThrows(IllegalStateException.class, ids::nextId);
+        assertThrows(IllegalStateException.class, ids::nextId);
+
+        // Failed reservations must not have moved the sequence further
+        assertEquals(4, new SequenceIdAllocator(db, 1, 10, 2).nextId());
+    }
+}
@@ -0,0 +1,159 @@
+package DBHelper;
+
+import FFPackage.PCharacter;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private PCharacters db;
+
+    @BeforeEach
+    public void setUp() {
+        db = new PCharacters(dir.resolve("writer.db").toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testConcurrentWritersDoNotFail() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                results.add(callers.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        long id = 10_000 + thread * 100 + i;
+                        db.insert(id, "Hero" + id, "Warrior", 1, 100, 10, true);
+                        assertTrue(db.update(id, new CharacterPatch().level(2)));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            callers.shutdown();
+        }
+
+        assertEquals(400, db.selectByLevelRange(2, 2).size());
+    }
+
+    @Test
+    public void testFailedWriteOnlyRollsBackItself() throws Exception {
+        // Hold the writer so the next writes are committed as one group
+        CountDownLatch release = new CountDownLatch(1);
+        SingleWriter writer = new SingleWriter("jdbc:sqlite:" + dir.resolve("writer.db"), SQLiteProfile.BALANCED);
+        try {
+            CompletableFuture<Object> blocker = writer.submit(conn -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return null;
+            });
+
+            CompletableFuture<Integer> first = writer.submit(conn -> insert(conn, 1));
+            CompletableFuture<Integer> duplicate = writer.submit(conn -> insert(conn, 1));
+            CompletableFuture<Integer> second = writer.submit(conn -> insert(conn, 2));
+            release.countDown();
+
+            blocker.get();
+            assertEquals(1, first.get());
+            assertEquals(1, second.get());
+            ExecutionException e = assertThrows(ExecutionException.class, duplicate::get);
+            assertInstanceOf(SQLException.class, e.getCause());
+        } finally {
+            writer.close();
+        }
+
+        assertTrue(db.idExists(1L));
+        assertTrue(db.idExists(2L));
+    }
+
+    @Test
+    public void testErrorInWriteDoesNotStopWriter() throws Exception {
+        SingleWriter writer = new SingleWriter("jdbc:sqlite:" + dir.resolve("writer.db"), SQLiteProfile.BALANCED);
+        try {
+            CompletableFuture<Integer> broken = writer.submit(conn -> {
+                throw new AssertionError("broken write");
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, broken::get);
+            assertInstanceOf(AssertionError.class, e.getCause());
+
+            assertEquals(1, writer.submit(conn -> insert(conn, 3)).get(), "The writer keeps running");
+        } finally {
+            writer.close();
+        }
+        assertTrue(db.idExists(3L));
+    }
+
+    @Test
+    public void testAsyncVariants() throws Exception {
+        CompletableFuture<Void> insert = db.insertAsync(new PCharacter("4242", "Vivi", "Black Mage", 10, 300, 90, true));
+        CompletableFuture<Boolean> update = db.updateAsync(4242L, new CharacterPatch().level(11));
+        insert.get();
+        assertTrue(update.get(), "Writes are applied in submission order");
+        assertEquals(11, db.selectById(4242L).getLevel());
+
+        assertTrue(db.deleteByIdAsync(4242L).get());
+        assertFalse(db.deleteByIdAsync(4242L).get());
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> db.updateAsync(4242L, new CharacterPatch().level(1))
+                        .thenCompose(ignored -> db.insertAsync(new PCharacter("1", "A", "Monk", 1, 1, 1, true)))
+                        .thenCompose(ignored -> db.insertAsync(new PCharacter("1", "A", "Monk", 1, 1, 1, true)))
+                        .get());
+        assertInstanceOf(SQLException.class, e.getCause());
+    }
+
+    @Test
+    public void testCallbacksRunOffTheWriter() throws Exception {
+        CompletableFuture<String> callbackThread = new CompletableFuture<>();
+        db.insertAsync(new PCharacter("5001", "Cloud", "Warrior", 10, 300, 30, true))
+                .thenRun(() -> {
+                    callbackThread.complete(Thread.currentThread().getName());
+                    // A synchronous write from a callback used to wait on the writer forever
+                    db.insert(5002L, "Tifa", "Monk", 10, 300, 30, true);
+                })
+                .get(10, TimeUnit.SECONDS);
+
+        assertNotEquals("characters-writer", callbackThread.get());
+        assertTrue(db.idExists(5002L));
+    }
+
+    @Test
+    public void testWritesAfterCloseFail() {
+        db.close();
+        assertThrows(RuntimeException.class, () -> db.insert(1L, "A", "Monk", 1, 1, 1, true));
+        db = new PCharacters(dir.resolve("writer.db").toString());
+    }
+
+    private static int insert(PooledConnection conn, long id) throws SQLException {
+        var pstmt = conn.prepare("INSERT INTO characters (id,name,job,level,hp,mp,isActive) VALUES (?,'x','Monk',1,1,1,1)");
+        pstmt.setLong(1, id);
+        return pstmt.executeUpdate();
+    }
+}
@@ -0,0 +1,145 @@
+package DBHelper;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindBufferTest {
+
+    @TempDir
+    Path dir;
+
+    private String path;
+
+    private PCharacters db;
+
+    @BeforeEach
+    public void setUp() {
+        path = dir.resolve("write-behind.db").toString();
+        db = new PCharacters(path);
+        db.insert(1001L, "Cloud", "Warrior", 1, 100, 10, true);
+        db.insert(1002L, "Tifa", "Monk", 1, 100, 10, true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testEditsAreCoalescedUntilFlush() throws SQLException {
+        db.enableWriteBehind(60_000, 1000);
+
+        for (int level = 2; level <= 50; level++) {
+            assertTrue(db.update(1001L, new CharacterPatch().level(level)));
+        }
+        db.update(1001L, new CharacterPatch().hp(4242));
+
+        assertEquals(50, db.selectById(1001L).getLevel(), "Reads see buffered edits");
+        assertEquals(4242, db.selectById(1001L).getHp());
+        assertEquals(1, storedLevel(1001L), "Nothing is written before the flush");
+
+        assertEquals(1, db.flush(), "Fifty edits of one character are one write");
+        assertEquals(50, storedLevel(1001L));
+        assertEquals(0, db.flush());
+    }
+
+    @Test
+    public void testScansAndOtherWritesFlushFirst() throws SQLException {
+        db.enableWriteBehind(60_000, 1000);
+
+        db.update(1002L, new CharacterPatch().level(30));
+        assertEquals(30, db.selectByLevelRange(30, 30).get(0).getLevel());
+        assertEquals(30, storedLevel(1002L));
+
+        // A later direct write must not be overwritten by an older buffered one
+        db.update(1002L, new CharacterPatch().level(31));
+        db.update("level", "7", "id", "1002");
+        db.flush();
+        assertEquals(7, storedLevel(1002L));
+    }
+
+    @Test
+    public void testSizeThresholdAndTimerTriggerFlush() throws Exception {
+        db.enableWriteBehind(60_000, 2);
+        db.update(1001L, new CharacterPatch().level(11));
+        db.update(1002L, new CharacterPatch().level(12));
+        waitForLevel(1002L, 12);
+        assertEquals(11, storedLevel(1001L));
+
+        db.enableWriteBehind(20, 1000);
+        db.update(1001L, new CharacterPatch().level(21));
+        waitForLevel(1001L, 21);
+    }
+
+    @Test
+    public void testCloseWritesPendingEdits() throws SQLException {
+        db.enableWriteBehind(60_000, 1000);
+        db.update(1001L, new CharacterPatch().name("Cloud Strife").level(99));
+        db.close();
+
+        db = new PCharacters(path);
+        assertEquals("Cloud Strife", db.selectById(1001L).getName());
+        assertEquals(99, storedLevel(1001L));
+    }
+
+    @Test
+    public void testCacheSeesFlushedValues() {
+        db.setCache(new CharacterCache(10, 0));
+        db.enableWriteBehind(60_000, 1000);
+
+        db.selectById(1001L);
+        db.update(1001L, new CharacterPatch().level(40));
+        assertEquals(40, db.selectById(1001L).getLevel());
+        db.disableWriteBehind();
+        assertEquals(40, db.selectById(1001L).getLevel());
+        assertFalse(db.isWriteBehindEnabled());
+    }
+
+    @Test
+    public void testRejectedPatchIsDroppedNotRetried() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + path)) {
+            conn.createStatement().execute("CREATE TRIGGER no_level_66 BEFORE UPDATE OF level ON characters "
+                    + "WHEN NEW.level = 66 BEGIN SELECT RAISE(ABORT, 'cursed level'); END");
+        }
+        db.enableWriteBehind(60_000, 1000);
+        assertEquals(0, db.getDroppedWriteBehindPatches());
+
+        assertThrows(IllegalArgumentException.class, () -> new CharacterPatch().job("Plumber"),
+                "Invalid jobs are refused before they reach the buffer");
+        assertThrows(IllegalArgumentException.class, () -> new CharacterPatch().level(666));
+        assertThrows(IllegalArgumentException.class, () -> new CharacterPatch().hp(-1));
+        assertThrows(IllegalArgumentException.class, () -> new CharacterPatch().mp(-1));
+
+        db.update(1001L, new CharacterPatch().level(66));
+        db.update(1002L, new CharacterPatch().level(20));
+        assertEquals(1, db.flush(), "The rejected patch does not hold back the other one");
+        assertEquals(20, storedLevel(1002L));
+        assertEquals(1, storedLevel(1001L));
+        assertEquals(1, db.getDroppedWriteBehindPatches(), "The rejected patch is counted");
+        assertEquals(0, db.flush(), "The rejected patch is not queued again");
+        assertEquals(1, db.getDroppedWriteBehindPatches());
+    }
+
+    private int storedLevel(long id) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + path);
+             ResultSet rs = conn.createStatement().executeQuery("SELECT level FROM characters WHERE id = " + id)) {
+            return rs.getInt(1);
+        }
+    }
+
+    private void waitForLevel(long id, int level) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (storedLevel(id) != level) {
+            assertTrue(System.currentTimeMillis() < deadline, "Flush did not happen in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package FFPackage;
+
+import DBHelper.PCharacters;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncFFTest {
+
+    @TempDir
+    Path dir;
+
+    private FF ff;
+
+    private AsyncFF async;
+
+    @BeforeEach
+    public void setUp() {
+        ff = new FF(new PCharacters(dir.resolve("async.db").toString()));
+        async = new AsyncFF(ff);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        async.close();
+        ff.close();
+    }
+
+    @Test
+    public void testFanOutReadsAndWrites() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(String.valueOf(5000 + i));
+            async.addCharacter(new PCharacter(String.valueOf(5000 + i), "Hero" + i, "Knight", 10, 100, 10, true)).get();
+        }
+
+        async.levelUpAll(ids, 5).get(30, TimeUnit.SECONDS);
+
+        List<String> wanted = new ArrayList<>(ids);
+        wanted.add("9999");
+        Map<String, PCharacter> found = async.getCharacters(wanted).get(30, TimeUnit.SECONDS);
+        assertEquals(200, found.size(), "Missing IDs are left out");
+        assertEquals(ids, new ArrayList<>(found.keySet()), "Results keep the requested order");
+        assertTrue(found.values().stream().allMatch(c -> c.getLevel() == 15));
+    }
+
+    @Test
+    public void testFailureCancelsSiblings() {
+        int siblings = 20;
+        CountDownLatch interrupted = new CountDownLatch(siblings);
+
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i <= siblings; i++) {
+            keys.add(i);
+        }
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> async.fanOut(keys, key -> {
+            if (key == 0) {
+                throw new IllegalStateException("boom");
+            }
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException stopped) {
+                interrupted.countDown();
+            }
+            return key;
+        }).get(10, TimeUnit.SECONDS));
+
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertDoesNotThrow(() -> assertTrue(interrupted.await(10, TimeUnit.SECONDS),
+                "Every sibling should have been interrupted"));
+    }
+
+    @Test
+    public void testMissingIdFailsLevelUpAndCancelsSiblings() throws Exception {
+        String id = async.addCharacter(new PCharacter("", "Quina", "Blue Mage", 10, 100, 10, true)).get();
+
+        ExecutionException missing = assertThrows(ExecutionException.class,
+                () -> async.levelUpAll(List.of(id, "404404"), 1).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(NoSuchElementException.class, missing.getCause());
+
+        int siblings = 10;
+        CountDownLatch interrupted = new CountDownLatch(siblings);
+        List<String> keys = new ArrayList<>();
+        keys.add("404404");
+        for (int i = 0; i < siblings; i++) {
+            keys.add(id);
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> async.fanOut(keys, key -> {
+            if (!key.equals(id)) {
+                return ff.levelUp(key, 1);
+            }
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException stopped) {
+                interrupted.countDown();
+            }
+            return null;
+        }).get(10, TimeUnit.SECONDS));
+
+        assertInstanceOf(NoSuchElementException.class, e.getCause());
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS), "The other level-ups should have been cancelled");
+    }
+
+    @Test
+    public void testSingleCalls() throws Exception {
+        String id = async.addCharacter(new PCharacter("", "Zidane", "Thief", 1, 100, 10, true)).get();
+        assertEquals("Zidane", async.getCharacter(id).get().getName());
+        assertEquals(1, async.submit(FF::getActiveParty).get().size());
+
+        async.removeCharacterById(id).get();
+        assertNull(async.getCharacter(id).get());
+    }
+}
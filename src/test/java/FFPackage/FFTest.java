@@ -1,7 +1,23 @@
 package FFPackage;
 
+import DBHelper.CharacterFilter;
+import DBHelper.CharacterPatch;
+import DBHelper.ConflictPolicy;
+import DBHelper.PCharacters;
 import FFPackage.*;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FFTest {
@@ -62,4 +78,205 @@ public class FFTest {
         // Assert
         assertFalse(ff.characterExists("1234"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAddCharactersFromFile(@TempDir Path dir) throws IOException {
+        Path roster = dir.resolve("roster.csv");
+        Files.write(roster, List.of(
+                "Cloud Strife,Warrior,50,9999,500,true",
+                "Aerith,White Mage,45,7500,900,true",
+                "not,a,valid,line",
+                "Tifa,Monk,120,8800,300,false"
+        ));
+
+        try (FF fileFf = new FF(new PCharacters(dir.resolve("import.db").toString()))) {
+            fileFf.addCharactersFromFile(roster.toString());
+
+            List<PCharacter> imported = fileFf.getCharacters();
+            assertEquals(3, imported.size(), "Only the valid lines should be imported");
+            for (PCharacter c : imported) {
+                if (c.getName().equals("Tifa")) {
+                    assertEquals(99, c.getLevel(), "Level should be clamped on import");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReimportWithIds(@TempDir Path dir) throws IOException {
+        Path roster = dir.resolve("roster.csv");
+        Files.write(roster, List.of(
+                "7001,Cloud Strife,Warrior,50,9999,500,true",
+                "7002,Tifa,Monk,48,8800,300,false",
+                "-4,Bad,Monk,1,1,1,true",
+                "Aerith,White Mage,45,7500,900,true"
+        ));
+
+        try (FF fileFf = new FF(new PCharacters(dir.resolve("sync.db").toString()))) {
+            fileFf.addCharactersFromFile(roster.toString());
+            assertEquals(3, fileFf.getCharacters().size());
+            assertEquals("Tifa", fileFf.getCharacter("7002").getName());
+
+            Files.write(roster, List.of(
+                    "7001,Cloud Strife,Warrior,40,9999,500,true",
+                    "7002,Tifa,Monk,60,8800,300,true"
+            ));
+            fileFf.addCharactersFromFile(roster.toString(), ConflictPolicy.MERGE_MAX_LEVEL);
+            assertEquals(3, fileFf.getCharacters().size(), "Rows with an ID update instead of adding");
+            assertEquals(50, fileFf.getCharacter("7001").getLevel());
+            assertEquals(60, fileFf.getCharacter("7002").getLevel());
+            assertTrue(fileFf.getCharacter("7002").isActive());
+
+            String next = fileFf.addCharacter(new PCharacter("", "Barret", "Machinist", 52, 10500, 200, true));
+            assertFalse(next.equals("7001") || next.equals("7002"), "Imported IDs are never allocated again");
+        }
+    }
+
+    @Test
+    public void testImportPipelineKeepsFileOrder(@TempDir Path dir) throws IOException {
+        // Large enough to be cut into several blocks and parsed in parallel
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            lines.add((100_000 + i % 1000) + ",Hero" + i + ",Knight," + (1 + i % 99) + ",100,10,true");
+        }
+        lines.add("broken line");
+        lines.add("");
+        lines.add("Aerith,White Mage,45,7500,900,true\r");
+        Path roster = dir.resolve("big.csv");
+        Files.write(roster, lines);
+
+        List<Long> errorLines = new ArrayList<>();
+        List<ImportProgress> finished = new ArrayList<>();
+        try (FF fileFf = new FF(new PCharacters(dir.resolve("pipeline.db").toString()))) {
+            ImportProgress result = fileFf.importCharacters(roster, ConflictPolicy.OVERWRITE,
+                    new ImportProgressListener() {
+                        @Override
+                        public void onProgress(ImportProgress progress) {
+                            assertFalse(progress.isDone());
+                        }
+
+                        @Override
+                        public void onError(long lineNumber, String line, String reason) {
+                            errorLines.add(lineNumber);
+                        }
+
+                        @Override
+                        public void onComplete(ImportProgress progress) {
+                            finished.add(progress);
+                        }
+                    });
+
+            assertEquals(List.of(40_001L), errorLines, "Errors report their line in the file");
+            assertEquals(1, finished.size());
+            assertTrue(result.isDone());
+            assertEquals(40_001, result.getRows());
+            assertEquals(1, result.getAdded());
+            assertEquals(1, result.getErrors());
+            assertEquals(Files.size(roster), result.getBytesRead());
+            assertEquals(1.0, result.getFraction());
+            assertEquals(1001, fileFf.getCharacters().size());
+            assertEquals("Hero39999", fileFf.getCharacter("100999").getName(), "The last row for an ID wins");
+        }
+    }
+
+    @Test
+    public void testExportRoundTrips(@TempDir Path dir) throws IOException {
+        try (FF source = new FF(new PCharacters(dir.resolve("source.db").toString()))) {
+            source.addCharacter(new PCharacter("5001", "Cid, the \"Engineer\"", "Dragoon", 42, 6100, 80, true));
+            source.addCharacter(new PCharacter("5002", "Rydia", "Summoner", 55, 4300, 950, false));
+
+            Path csv = dir.resolve("roster.csv");
+            assertEquals(2, source.exportCharacters(csv, ExportFormat.CSV));
+            assertEquals("5002,Rydia,Summoner,55,4300,950,false", Files.readAllLines(csv).get(1));
+
+            try (FF target = new FF(new PCharacters(dir.resolve("target.db").toString()))) {
+                ImportProgress result = target.importCharacters(csv, ConflictPolicy.OVERWRITE, ImportProgressListener.NONE);
+                assertEquals(0, result.getErrors());
+                assertEquals("Cid, the \"Engineer\"", target.getCharacter("5001").getName());
+                assertFalse(target.getCharacter("5002").isActive());
+            }
+
+            Path jsonl = dir.resolve("roster.jsonl.gz");
+            assertEquals(2, source.exportCharacters(jsonl, ExportFormat.JSON_LINES));
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(jsonl)), StandardCharsets.UTF_8))) {
+                assertEquals("{\"id\":5001,\"name\":\"Cid, the \\\"Engineer\\\"\",\"job\":\"Dragoon\","
+                        + "\"level\":42,\"hp\":6100,\"mp\":80,\"active\":true}", in.readLine());
+                assertTrue(in.readLine().startsWith("{\"id\":5002,"));
+                assertNull(in.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testAddCharacterReplacesTakenId(@TempDir Path dir) {
+        try (FF idFf = new FF(new PCharacters(dir.resolve("ids.db").toString()))) {
+            assertEquals("4321", idFf.addCharacter(new PCharacter("4321", "Cloud", "Warrior", 50, 9999, 999, true)));
+
+            String second = idFf.addCharacter(new PCharacter("4321", "Tifa", "Monk", 48, 8800, 999, true));
+            assertNotEquals("4321", second, "A taken ID should be replaced by an allocated one");
+            assertTrue(idFf.characterExists(second));
+
+            String generated = idFf.addCharacter(new PCharacter("", "Aerith", "White Mage", 45, 7500, 999, true));
+            assertNotEquals(second, generated);
+            assertEquals(3, idFf.getCharacters().size());
+        }
+    }
+
+    @Test
+    public void testLevelUpAndHpUpdateWithPatches(@TempDir Path dir) {
+        try (FF patchFf = new FF(new PCharacters(dir.resolve("patch.db").toString()))) {
+            String id = patchFf.addCharacter(new PCharacter("", "Tifa", "Monk", 98, 9999, 4444, true));
+
+            patchFf.levelUpById(id, 5);
+            patchFf.updateCharacterHp(id, 1234);
+
+            PCharacter tifa = patchFf.getCharacters().get(0);
+            assertEquals(99, tifa.getLevel(), "Level should be clamped at 99");
+            assertEquals(1234, tifa.getHp());
+        }
+    }
+
+    @Test
+    public void testLevelUpIgnoresStaleCache(@TempDir Path dir) {
+        String path = dir.resolve("shared.db").toString();
+        try (FF cached = new FF(new PCharacters(path));
+             PCharacters otherProcess = new PCharacters(path)) {
+            cached.enableCache();
+            String id = cached.addCharacter(new PCharacter("", "Steiner", "Knight", 50, 4000, 50, true));
+            cached.getCharacter(id);
+
+            // Another writer (e.g. an import) changes the row behind the cache's back
+            otherProcess.update(Long.parseLong(id), new CharacterPatch().level(60));
+            cached.levelUpById(id, 1);
+
+            assertEquals(61, otherProcess.selectById(Long.parseLong(id)).getLevel(),
+                    "The level-up starts from the stored level, not the cached one");
+        }
+    }
+
+    @Test
+    public void testFilteredQueries(@TempDir Path dir) {
+        try (FF filterFf = new FF(new PCharacters(dir.resolve("filter.db").toString()))) {
+            filterFf.addCharacter(new PCharacter("1001", "Kain", "Dragoon", 60, 7000, 100, true));
+            filterFf.addCharacter(new PCharacter("1002", "Ricard", "Dragoon", 45, 5000, 100, true));
+            filterFf.addCharacter(new PCharacter("1003", "Freya", "Dragoon", 70, 6000, 300, false));
+            filterFf.addCharacter(new PCharacter("1004", "Rosa", "White Mage", 55, 4000, 900, true));
+            filterFf.updateCharacterJob("1004", "white mage");
+
+            assertEquals(3, filterFf.getCharactersByJob("DRAGOON").size());
+            assertTrue(filterFf.getCharactersByJob("Plumber").isEmpty());
+            assertEquals(1, filterFf.getCharactersByJob("White Mage").size(), "Updated jobs are stored normalized");
+            assertEquals(List.of("1001", "1004"), ids(filterFf.getCharactersByLevelRange(50, 65)));
+            assertEquals(List.of("1001", "1002", "1004"), ids(filterFf.getActiveParty()));
+
+            List<PCharacter> veterans = filterFf.findCharacters(
+                    new CharacterFilter().job("Dragoon").active(true).minLevel(51));
+            assertEquals(List.of("1001"), ids(veterans));
+        }
+    }
+
+    private static List<String> ids(List<PCharacter> characters) {
+        return characters.stream().map(PCharacter::getId).toList();
+    }
+}
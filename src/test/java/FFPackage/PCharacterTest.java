@@ -40,6 +40,23 @@ public class PCharacterTest {
         ff.singleCharacterDisplay("5555");
     }
 
+    @Test
+    public void testJobLookup() {
+        assertSame(Job.DARK_KNIGHT, Job.lookup("  dark KNIGHT "));
+        assertNull(Job.lookup("Dark  Knight"));
+        assertNull(Job.lookup("Plumber"));
+        assertNull(Job.lookup(null));
+        assertFalse(PCharacter.isValidJob(null));
+
+        for (Job job : Job.values()) {
+            assertSame(job, Job.fromCode(job.getCode()));
+            assertSame(job, Job.lookup(job.getDisplayName().toLowerCase()));
+        }
+        assertNull(Job.fromCode(0), "Code 0 is never used");
+        assertEquals(Job.values().length, PCharacter.getValidJobs().size());
+        assertSame(Job.TIME_MAGE.getDisplayName(), PCharacter.normalizeJob("time mage"));
+    }
+
     @Test
     public void testLevelBoundaries() {
         // Test level too low
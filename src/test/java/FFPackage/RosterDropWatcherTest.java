@@ -0,0 +1,113 @@
+package FFPackage;
+
+import DBHelper.ConflictPolicy;
+import DBHelper.PCharacters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RosterDropWatcherTest {
+
+    @Test
+    public void testDroppedFilesAreImportedAndMoved(@TempDir Path dir) throws Exception {
+        Path inbox = Files.createDirectories(dir.resolve("inbox"));
+        Files.write(inbox.resolve("early.csv"), List.of("8001,Cloud,Warrior,50,9999,500,true"));
+
+        BlockingQueue<RosterDropWatcher.DropResult> results = new LinkedBlockingQueue<>();
+        try (FF ff = new FF(new PCharacters(dir.resolve("drop.db").toString()));
+             RosterDropWatcher watcher = new RosterDropWatcher(
+                     ff, inbox, ConflictPolicy.OVERWRITE, 2, results::add, 50)) {
+
+            // Written under a temporary name, then renamed into place
+            Path partial = inbox.resolve("late.csv.part");
+            Files.write(partial, List.of("8002,Tifa,Monk,48,8800,300,true", "broken", "Aerith,White Mage,45,7500,900,true"));
+            Files.move(partial, inbox.resolve("late.csv"));
+            Files.write(inbox.resolve("packed.zst"), new byte[]{0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 1, 2, 3});
+
+            Map<String, RosterDropWatcher.DropResult> byName = new HashMap<>();
+            for (int i = 0; i < 3; i++) {
+                RosterDropWatcher.DropResult result = results.poll(20, TimeUnit.SECONDS);
+                assertNotNull(result, "Every dropped file is processed");
+                byName.put(result.getFile().getFileName().toString(), result);
+            }
+
+            assertTrue(byName.get("early.csv").isImported(), "Files present at start-up are picked up");
+            RosterDropWatcher.DropResult late = byName.get("late.csv");
+            assertTrue(late.isImported());
+            assertEquals(2, late.getProgress().getRows());
+            assertEquals(1, late.getProgress().getErrors(), "Invalid lines are counted, not fatal");
+            assertEquals(inbox.resolve(RosterDropWatcher.DONE_DIR).resolve("late.csv"), late.getMovedTo());
+            assertFalse(byName.get("packed.zst").isImported());
+            assertTrue(Files.exists(inbox.resolve(RosterDropWatcher.FAILED_DIR).resolve("packed.zst")));
+
+            assertEquals(3, ff.getCharacters().size());
+            assertEquals(2, watcher.getFilesImported());
+            assertEquals(1, watcher.getFilesFailed());
+            assertEquals(3, watcher.getRowsImported());
+            try (var left = Files.list(inbox)) {
+                assertEquals(2, left.count(), "Only the done and failed folders remain");
+            }
+        }
+    }
+
+    @Test
+    public void testSameNameDroppedTwiceKeepsBothFiles(@TempDir Path dir) throws IOException, InterruptedException {
+        Path inbox = dir.resolve("inbox");
+        BlockingQueue<RosterDropWatcher.DropResult> results = new LinkedBlockingQueue<>();
+        try (FF ff = new FF(new PCharacters(dir.resolve("twice.db").toString()));
+             RosterDropWatcher watcher = new RosterDropWatcher(
+                     ff, inbox, ConflictPolicy.OVERWRITE, 1, results::add, 50)) {
+            Files.write(inbox.resolve("roster.csv"), List.of("9001,Zidane,Thief,30,3000,100,true"));
+            RosterDropWatcher.DropResult first = results.poll(20, TimeUnit.SECONDS);
+            Files.write(inbox.resolve("roster.csv"), List.of("9001,Zidane,Thief,31,3000,100,true"));
+            RosterDropWatcher.DropResult second = results.poll(20, TimeUnit.SECONDS);
+
+            assertNotNull(first);
+            assertNotNull(second);
+            assertNotEquals(first.getMovedTo(), second.getMovedTo());
+            assertTrue(Files.exists(first.getMovedTo()) && Files.exists(second.getMovedTo()));
+            assertEquals(31, ff.getCharacter("9001").getLevel());
+        }
+    }
+
+    @Test
+    public void testFileThatCannotBeMovedIsImportedOnce(@TempDir Path dir) throws IOException, InterruptedException {
+        Path inbox = dir.resolve("inbox");
+        BlockingQueue<RosterDropWatcher.DropResult> results = new LinkedBlockingQueue<>();
+        try (FF ff = new FF(new PCharacters(dir.resolve("stuck.db").toString()));
+             RosterDropWatcher watcher = new RosterDropWatcher(
+                     ff, inbox, ConflictPolicy.OVERWRITE, 1, results::add, 50)) {
+            // A dangling link where the done folder should be makes every move fail
+            Path done = inbox.resolve(RosterDropWatcher.DONE_DIR);
+            Files.delete(done);
+            Files.createSymbolicLink(done, dir.resolve("missing"));
+
+            Path roster = inbox.resolve("roster.csv");
+            Files.write(roster, List.of("9101,Steiner,Knight,40,4000,50,true"));
+            RosterDropWatcher.DropResult result = results.poll(20, TimeUnit.SECONDS);
+
+            assertNotNull(result);
+            assertTrue(result.isImported(), "A move failure is not an import failure");
+            assertNull(result.getMovedTo());
+            assertNotNull(result.getMoveFailure());
+            assertEquals(1, watcher.getFilesImported());
+            assertEquals(0, watcher.getFilesFailed());
+            assertEquals(1, watcher.getRowsImported());
+
+            Files.write(roster, List.of("9101,Steiner,Knight,41,4000,50,true"));
+            assertNull(results.poll(500, TimeUnit.MILLISECONDS), "The file left behind is not imported again");
+            assertEquals(40, ff.getCharacter("9101").getLevel());
+        }
+    }
+}
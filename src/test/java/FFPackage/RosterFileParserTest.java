@@ -0,0 +1,100 @@
+package FFPackage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RosterFileParserTest {
+
+    private final List<PCharacter> rows = new ArrayList<>();
+    private final List<String> skipped = new ArrayList<>();
+
+    private int parse(ByteBuffer data) {
+        return new RosterFileParser().parse(data, new RosterFileParser.RowHandler() {
+            @Override
+            public void row(PCharacter pc) {
+                rows.add(pc);
+            }
+
+            @Override
+            public void skipped(int lineNumber, String line, String reason) {
+                skipped.add(lineNumber + ": " + reason);
+            }
+        });
+    }
+
+    private int parse(String text) {
+        return parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testPlainAndKeyedLines() {
+        assertEquals(2, parse("Cloud Strife, warrior ,50,9999,500,TRUE\r\n42,Tifa,dark KNIGHT,120,8800,300,false\n"));
+
+        assertEquals(2, rows.size());
+        PCharacter cloud = rows.get(0);
+        assertTrue(cloud.hasGeneratedId());
+        assertEquals("Cloud Strife", cloud.getName());
+        assertEquals("Warrior", cloud.getJob());
+        assertEquals(9999, cloud.getHp());
+        assertTrue(cloud.isActive());
+
+        PCharacter tifa = rows.get(1);
+        assertEquals("42", tifa.getId());
+        assertEquals("Dark Knight", tifa.getJob());
+        assertEquals(99, tifa.getLevel(), "Level is clamped");
+        assertFalse(tifa.isActive());
+        assertTrue(skipped.isEmpty());
+    }
+
+    @Test
+    public void testQuotedFieldsAndUtf8() {
+        parse("﻿\"Strife, Cloud\",Warrior,50,9999,500,true\n"
+                + "\"Aerith \"\"Flower Girl\"\"\",\"White Mage\",45,7500,900,true\n"
+                + "Zoë Ærendil,Summoner,30,4000,800,false");
+
+        assertEquals(3, rows.size());
+        assertEquals("Strife, Cloud", rows.get(0).getName());
+        assertEquals("Aerith \"Flower Girl\"", rows.get(1).getName());
+        assertEquals("White Mage", rows.get(1).getJob());
+        assertEquals("Zoë Ærendil", rows.get(2).getName());
+    }
+
+    @Test
+    public void testInvalidLinesAreReported() {
+        assertEquals(7, parse("not,a,valid,line\n"
+                + "\n"
+                + "Cloud,Gunner,50,9999,500,true\n"
+                + "Tifa,Monk,4x,8800,300,false\n"
+                + "-3,Barret,Knight,40,100,10,true\n"
+                + "Vincent,Ninja,40,-5,10,true\n"
+                + "Yuffie,Ninja,30,2000,-1,true\n"));
+
+        assertTrue(rows.isEmpty());
+        assertEquals(List.of(
+                "1: Skipping invalid line: not,a,valid,line",
+                "3: Invalid job in file, skipping: Gunner",
+                "4: Invalid number in line: Tifa,Monk,4x,8800,300,false -> For input string: \"4x\"",
+                "5: Invalid ID in file, skipping: -3,Barret,Knight,40,100,10,true",
+                "6: Invalid character data: Vincent,Ninja,40,-5,10,true -> HP cannot be negative",
+                "7: Invalid character data: Yuffie,Ninja,30,2000,-1,true -> MP cannot be negative"), skipped);
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        byte[] bytes = "7,Cid,Machinist,60,6000,100,true\n".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        direct.position(5);  // the position is ignored
+
+        parse(direct);
+        assertEquals(1, rows.size());
+        assertEquals("Cid", rows.get(0).getName());
+        assertEquals(5, direct.position());
+    }
+}
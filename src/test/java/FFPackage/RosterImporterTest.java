@@ -0,0 +1,210 @@
+package FFPackage;
+
+import DBHelper.ConflictPolicy;
+import DBHelper.PCharacters;
+import DBHelper.SequenceIdAllocator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RosterImporterTest {
+
+    /** Writes a roster of {@code count} new characters with one broken line at {@code badLine}. */
+    private static Path writeRoster(Path dir, int count, int badLine) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            lines.add(i == badLine ? "broken" : "Hero" + i + ",Knight," + (1 + i % 99) + ",100,10,true");
+        }
+        Path roster = dir.resolve("roster.csv");
+        Files.write(roster, lines);
+        return roster;
+    }
+
+    /** A listener that interrupts the import at the first invalid line, as a shutdown would. */
+    private static ImportProgressListener interruptOnError() {
+        return new ImportProgressListener() {
+            @Override
+            public void onProgress(ImportProgress progress) {
+            }
+
+            @Override
+            public void onError(long lineNumber, String line, String reason) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted");
+            }
+        };
+    }
+
+    @Test
+    public void testInterruptedImportResumes(@TempDir Path dir) throws IOException {
+        // About 3 blocks; the broken line is in the second one
+        Path roster = writeRoster(dir, 90_000, 45_000);
+
+        try (PCharacters db = new PCharacters(dir.resolve("resume.db").toString())) {
+            SequenceIdAllocator ids = new SequenceIdAllocator(db);
+
+            // Interrupting the import on the broken line stands in for a crash mid-import
+            ImportProgressListener crashing = interruptOnError();
+            assertThrows(IllegalStateException.class,
+                    () -> new RosterImporter(db, ids, ConflictPolicy.OVERWRITE, crashing, 2, 1000).run(roster));
+            assertTrue(Thread.interrupted());
+            int committed = db.selectAll().size();
+            assertTrue(committed > 0 && committed < 45_000, "Only the first block was committed");
+
+            List<Long> errorLines = new ArrayList<>();
+            long[] resumedAt = new long[1];
+            ImportProgress result = new RosterImporter(db, ids, ConflictPolicy.OVERWRITE, new ImportProgressListener() {
+                @Override
+                public void onProgress(ImportProgress progress) {
+                }
+
+                @Override
+                public void onError(long lineNumber, String line, String reason) {
+                    errorLines.add(lineNumber);
+                }
+
+                @Override
+                public void onResume(long byteOffset, long lineNumber) {
+                    resumedAt[0] = lineNumber;
+                }
+            }, 2, 1000).run(roster);
+
+            assertEquals(committed, resumedAt[0], "Resumes right after the committed lines");
+            assertEquals(List.of(45_000L), errorLines, "Line numbers still count from the start of the file");
+            assertEquals(89_999 - committed, result.getRows());
+            assertTrue(result.getResumedFrom() > 0);
+            assertEquals(89_999, db.selectAll().size(), "No line is imported twice");
+
+            try (FileChannel channel = FileChannel.open(roster)) {
+                assertNull(db.getImportCheckpoint(RosterImporter.fingerprint(channel, channel.size())),
+                        "A finished import leaves no checkpoint");
+            }
+        }
+    }
+
+    @Test
+    public void testStaleOrFailedCheckpointIsNotResumed(@TempDir Path dir) throws IOException {
+        Path roster = writeRoster(dir, 90_000, 45_000);
+
+        try (PCharacters db = new PCharacters(dir.resolve("stale.db").toString())) {
+            SequenceIdAllocator ids = new SequenceIdAllocator(db);
+            assertThrows(IllegalStateException.class,
+                    () -> new RosterImporter(db, ids, ConflictPolicy.OVERWRITE, interruptOnError(), 2, 1000).run(roster));
+            assertTrue(Thread.interrupted());
+            String fingerprint;
+            try (FileChannel channel = FileChannel.open(roster)) {
+                fingerprint = RosterImporter.fingerprint(channel, channel.size());
+            }
+            assertNotNull(db.getImportCheckpoint(fingerprint));
+
+            // Edit a committed row in the middle without changing the size or the sampled ends
+            List<String> lines = Files.readAllLines(roster);
+            lines.set(20_000, lines.get(20_000).replace("Hero", "Hera"));
+            Files.write(roster, lines);
+            Files.setLastModifiedTime(roster, FileTime.fromMillis(Files.getLastModifiedTime(roster).toMillis() + 60_000));
+            try (FileChannel channel = FileChannel.open(roster)) {
+                assertEquals(fingerprint, RosterImporter.fingerprint(channel, channel.size()));
+            }
+
+            // A failure that is not an interruption does not leave a checkpoint behind
+            ImportProgressListener failing = new ImportProgressListener() {
+                @Override
+                public void onProgress(ImportProgress progress) {
+                }
+
+                @Override
+                public void onResume(long byteOffset, long lineNumber) {
+                    fail("A checkpoint of the unmodified file must not be resumed from");
+                }
+
+                @Override
+                public void onError(long lineNumber, String line, String reason) {
+                    throw new IllegalStateException("listener failed");
+                }
+            };
+            assertThrows(IllegalStateException.class,
+                    () -> new RosterImporter(db, ids, ConflictPolicy.OVERWRITE, failing, 2, 1000).run(roster));
+            assertNull(db.getImportCheckpoint(fingerprint), "A failed import starts over next time");
+            assertTrue(db.selectAll().stream().anyMatch(c -> c.getName().equals("Hera20001")),
+                    "The edited row was read again");
+        }
+    }
+
+    @Test
+    public void testCompressedInput(@TempDir Path dir) throws IOException {
+        Path plain = writeRoster(dir, 30_000, 10);
+        Path gz = dir.resolve("roster.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            Files.copy(plain, out);
+        }
+
+        try (FF ff = new FF(new PCharacters(dir.resolve("gz.db").toString()))) {
+            // From a file: recognized by content, not by name
+            Path renamed = Files.move(gz, dir.resolve("roster.dat"));
+            ImportProgress fromFile = ff.importCharacters(renamed, ConflictPolicy.OVERWRITE, ImportProgressListener.NONE);
+            assertEquals(29_999, fromFile.getRows());
+            assertEquals(1, fromFile.getErrors());
+
+            // From a stream, plain and compressed
+            try (InputStream in = Files.newInputStream(renamed)) {
+                assertEquals(29_999, ff.importCharacters(in, ConflictPolicy.OVERWRITE, ImportProgressListener.NONE).getAdded());
+            }
+            try (InputStream in = Files.newInputStream(plain)) {
+                assertEquals(29_999, ff.importCharacters(in, ConflictPolicy.OVERWRITE, ImportProgressListener.NONE).getAdded());
+            }
+            assertEquals(3 * 29_999, ff.getCharacters().size());
+
+            byte[] zstd = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD, 0, 0, 0, 0};
+            IOException e = assertThrows(IOException.class, () -> ff.importCharacters(
+                    new ByteArrayInputStream(zstd), ConflictPolicy.OVERWRITE, ImportProgressListener.NONE));
+            assertTrue(e.getMessage().startsWith("Zstandard"));
+        }
+    }
+
+    @Test
+    public void testInterruptedGzipImportResumes(@TempDir Path dir) throws IOException {
+        Path plain = writeRoster(dir, 90_000, 45_000);
+        Path gz = dir.resolve("roster.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            Files.copy(plain, out);
+        }
+
+        try (PCharacters db = new PCharacters(dir.resolve("gzresume.db").toString())) {
+            SequenceIdAllocator ids = new SequenceIdAllocator(db);
+            ImportProgressListener crashing = interruptOnError();
+            assertThrows(IllegalStateException.class,
+                    () -> new RosterImporter(db, ids, ConflictPolicy.OVERWRITE, crashing, 2, 1000).run(gz));
+            assertTrue(Thread.interrupted());
+            assertTrue(db.selectAll().size() > 0);
+
+            new RosterImporter(db, ids, ConflictPolicy.OVERWRITE, ImportProgressListener.NONE, 2, 1000).run(gz);
+            assertEquals(89_999, db.selectAll().size(), "No line is imported twice");
+        }
+    }
+
+    @Test
+    public void testFingerprintDependsOnContentOnly(@TempDir Path dir) throws IOException {
+        Path a = Files.writeString(dir.resolve("a.csv"), "Cloud,Warrior,50,9999,500,true\n");
+        Path b = Files.writeString(dir.resolve("b.csv"), "Cloud,Warrior,50,9999,500,true\n");
+        Path c = Files.writeString(dir.resolve("c.csv"), "Cloud,Warrior,51,9999,500,true\n");
+
+        try (FileChannel ca = FileChannel.open(a); FileChannel cb = FileChannel.open(b); FileChannel cc = FileChannel.open(c)) {
+            String fa = RosterImporter.fingerprint(ca, ca.size());
+            assertEquals(fa, RosterImporter.fingerprint(cb, cb.size()));
+            assertNotEquals(fa, RosterImporter.fingerprint(cc, cc.size()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package FFPackage;
+
+import DBHelper.PCharacters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RosterSnapshotTest {
+
+    @Test
+    public void testAggregatesMatchTheRoster(@TempDir Path dir) {
+        try (FF ff = new FF(new PCharacters(dir.resolve("snapshot.db").toString()))) {
+            List<PCharacter> roster = new ArrayList<>();
+            Job[] jobs = {Job.DRAGOON, Job.MONK, Job.WHITE_MAGE};
+            for (int i = 0; i < 200; i++) {
+                roster.add(new PCharacter(String.valueOf(1000 + i), "Hero " + i, jobs[i % 3].getDisplayName(),
+                        1 + i % 99, 100 * i, i % 7, i % 2 == 0));
+            }
+            roster.add(new PCharacter("5000", "Ærith Gainsborough", "White Mage", 45, 7500, 900, true));
+            for (PCharacter pc : roster) {
+                ff.addCharacter(pc);
+            }
+
+            RosterSnapshot snapshot = ff.snapshot();
+            assertEquals(roster.size(), snapshot.size());
+            assertEquals(roster.stream().mapToLong(PCharacter::getHp).sum(), snapshot.sum(RosterSnapshot.Stat.HP));
+            assertEquals(OptionalInt.of(1), snapshot.min(RosterSnapshot.Stat.LEVEL));
+            assertEquals(OptionalInt.of(99), snapshot.max(RosterSnapshot.Stat.LEVEL));
+
+            BitSet veterans = snapshot.between(RosterSnapshot.Stat.LEVEL, 50, 99);
+            veterans.and(snapshot.active());
+            long expected = roster.stream().filter(pc -> pc.isActive() && pc.getLevel() >= 50)
+                    .mapToLong(PCharacter::getMp).sum();
+            assertEquals(expected, snapshot.sum(RosterSnapshot.Stat.MP, veterans));
+            assertEquals(roster.stream().filter(pc -> pc.isActive() && pc.getLevel() >= 50).count(),
+                    veterans.cardinality());
+
+            Map<Job, Integer> byJob = snapshot.countByJob();
+            assertEquals(List.of(Job.MONK, Job.WHITE_MAGE, Job.DRAGOON), List.copyOf(byJob.keySet()));
+            assertEquals(67, byJob.get(Job.WHITE_MAGE));
+            assertEquals(OptionalInt.of(45), snapshot.min(RosterSnapshot.Stat.LEVEL,
+                    maskOf(snapshot, snapshot.rowOf(5000))));
+            assertEquals(snapshot.withJob(Job.MONK).cardinality(), (int) byJob.get(Job.MONK));
+            assertEquals(snapshot.sumByJob(RosterSnapshot.Stat.HP, snapshot.all()).values().stream()
+                    .mapToLong(Long::longValue).sum(), snapshot.sum(RosterSnapshot.Stat.HP));
+
+            int aerith = snapshot.rowOf(5000);
+            assertEquals("Ærith Gainsborough", snapshot.getName(aerith));
+            assertEquals(Job.WHITE_MAGE, snapshot.getJob(aerith));
+            assertEquals(roster.get(roster.size() - 1).toString(), snapshot.getCharacter(aerith).toString());
+            assertEquals(-1, snapshot.rowOf(4999));
+        }
+    }
+
+    @Test
+    public void testEmptySnapshot(@TempDir Path dir) {
+        try (FF ff = new FF(new PCharacters(dir.resolve("empty.db").toString()))) {
+            RosterSnapshot snapshot = ff.snapshot();
+            assertEquals(0, snapshot.size());
+            assertEquals(0, snapshot.sum(RosterSnapshot.Stat.LEVEL));
+            assertTrue(snapshot.max(RosterSnapshot.Stat.HP).isEmpty());
+            assertTrue(snapshot.countByJob().isEmpty());
+            assertThrows(IndexOutOfBoundsException.class, () -> snapshot.getName(0));
+        }
+    }
+
+    private static BitSet maskOf(RosterSnapshot snapshot, int row) {
+        BitSet mask = new BitSet(snapshot.size());
+        mask.set(row);
+        return mask;
+    }
+}